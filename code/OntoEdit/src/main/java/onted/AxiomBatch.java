@@ -0,0 +1,114 @@
+/* A batch of axioms built apart from the ontology, so that independent parts of a build can be prepared on several threads at once. A batch offers the
+ * same individual, labelling, typing and property assertion methods as MyOntology, but collects the resulting axioms (and a log of what it did) instead
+ * of adding them. Lookups see the ontology plus the axioms already in the batch; the ontology must not change while batches are being built.
+ * Finished batches are handed to MyOntology.applyBatch() one after the other, in whatever order the caller wants the changes to appear in.
+ */
+
+package onted;
+
+import org.apache.commons.lang3.StringUtils;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class AxiomBatch {
+	private final MyOntology ontology;
+	private final OWLDataFactory factory;
+	private final String basePrefix;
+	private final String name;
+	private final List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+	private final Set<IRI> classes = new HashSet<IRI>();
+	private final Set<IRI> individuals = new HashSet<IRI>();
+	private final StringBuilder log = new StringBuilder();
+
+	AxiomBatch(MyOntology ontology, OWLDataFactory factory, String basePrefix, String name) {
+		this.ontology = ontology;
+		this.factory = factory;
+		this.basePrefix = basePrefix;
+		this.name = name;
+	}
+
+	public List<OWLAxiom> getAxioms() {
+		return axioms;
+	}
+
+	public String getLog() {
+		return log.toString();
+	}
+
+	public void log(String line) {
+		log.append(line).append(System.lineSeparator());
+	}
+
+	private void add(OWLAxiom axiom) {
+		axioms.add(axiom);
+		axiom.classesInSignature().forEach(owlClass -> classes.add(owlClass.getIRI()));
+		axiom.individualsInSignature().forEach(individual -> individuals.add(individual.getIRI()));
+	}
+
+	private boolean containsClass(IRI iri) {
+		return classes.contains(iri) || ontology.isClass(iri);
+	}
+
+	private boolean containsIndividual(IRI iri) {
+		return individuals.contains(iri) || ontology.isIndividual(iri);
+	}
+
+	private IRI generateUniqueIRI(String prefix) {
+		// Same shape of IRI as MyOntology.generateUniqueIRI, also unique among the IRIs minted by this batch
+		OntologyEvents.IRIMinted event = new OntologyEvents.IRIMinted();
+		event.begin();
+		IRI uniqueIRI;
+		do {
+			uniqueIRI = IRI.create(prefix + UUID.randomUUID().toString());
+			event.entities++;
+		} while (classes.contains(uniqueIRI) || individuals.contains(uniqueIRI) || ontology.isInSignature(uniqueIRI));
+		event.prefix = prefix;
+		event.commit();
+		return uniqueIRI;
+	}
+
+	public String addIndividual(String myTypeIRI, String myIndividual) {
+		IRI typeIRI = IRI.create(myTypeIRI);
+		if (!containsClass(typeIRI)) {
+			throw new RuntimeException("Error: Type not found in the ontology.");
+		}
+		// A named batch mints the stable IRIs of the ontology when it has them, an unnamed one always random ones
+		IRI individualIRI = name != null && ontology.hasStableIRIs() ? ontology.mintIRI("individual", "batch " + name + "\t" + myTypeIRI, myIndividual)
+				: generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+		OWLNamedIndividual individual = factory.getOWLNamedIndividual(individualIRI);
+		add(factory.getOWLDeclarationAxiom(individual));
+		add(factory.getOWLClassAssertionAxiom(factory.getOWLClass(typeIRI), individual));
+		OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(myIndividual));
+		add(factory.getOWLAnnotationAssertionAxiom(individualIRI, labelAnnotation));
+		return individualIRI.toString();
+	}
+
+	public void assertObjectPropertyAxiom(String subjectIRIString, String objectIRIString, String propertyIRIString) {
+		OWLNamedIndividual individual1 = factory.getOWLNamedIndividual(subjectIRIString);
+		OWLNamedIndividual individual2 = factory.getOWLNamedIndividual(objectIRIString);
+		OWLObjectProperty property = factory.getOWLObjectProperty(propertyIRIString);
+		add(factory.getOWLObjectPropertyAssertionAxiom(property, individual1, individual2));
+	}
+
+	public void labelEntity(String entityIRIString, String myLabel, boolean allowAccents) {
+		String label = allowAccents ? myLabel : StringUtils.stripAccents(myLabel);
+		OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(label));
+		add(factory.getOWLAnnotationAssertionAxiom(IRI.create(entityIRIString), labelAnnotation));
+	}
+
+	public void setType(String entityIRIString, String myTypeIRI) {
+		OWLClass parentClass = factory.getOWLClass(IRI.create(myTypeIRI));
+		IRI entityIRI = IRI.create(entityIRIString);
+		if (containsIndividual(entityIRI)) {
+			add(factory.getOWLClassAssertionAxiom(parentClass, factory.getOWLNamedIndividual(entityIRI)));
+		}
+		else if (containsClass(entityIRI)) {
+			add(factory.getOWLSubClassOfAxiom(factory.getOWLClass(entityIRI), parentClass));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,473 @@
+/* Compact binary encoding of OWL axioms, used wherever axioms are written to disk by this library: the change journal and its checkpoints, and the
+ * cache of ImportResolver, which keeps the axioms of every parsed import document and, in a file of their own, the entities it declares.
+ * The axiom types produced by MyOntology (declarations, subclass and class assertion axioms with simple restrictions, property assertions, annotation
+ * assertions, domain and range axioms) are written field by field. IRIs are interned per stream, so the first use of an IRI writes the string and every
+ * later use writes a small varint id. Anything else, which includes the richer axioms of some imported ontologies, falls back to OWL functional
+ * syntax text, which is slower to read back but never loses information.
+ * An encoder and a decoder must see the same sequence of axioms, so one codec instance is used for a whole stream in one direction.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.io.StringDocumentSource;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class AxiomCodec {
+	private static final int DECLARATION = 1;
+	private static final int SUBCLASS_OF = 2;
+	private static final int CLASS_ASSERTION = 3;
+	private static final int OBJECT_PROPERTY_ASSERTION = 4;
+	private static final int DATA_PROPERTY_ASSERTION = 5;
+	private static final int ANNOTATION_ASSERTION = 6;
+	private static final int OBJECT_PROPERTY_DOMAIN = 7;
+	private static final int OBJECT_PROPERTY_RANGE = 8;
+	private static final int DATA_PROPERTY_DOMAIN = 9;
+	private static final int DATA_PROPERTY_RANGE = 10;
+	private static final int EQUIVALENT_CLASSES = 11;
+	private static final int FUNCTIONAL_SYNTAX = 99;
+
+	private static final int NAMED_CLASS = 1;
+	private static final int SOME_VALUES_FROM = 2;
+	private static final int ALL_VALUES_FROM = 3;
+	private static final int HAS_VALUE = 4;
+	private static final int DATA_HAS_VALUE = 5;
+	private static final int UNION_OF = 6;
+	private static final int INTERSECTION_OF = 7;
+	private static final int COMPLEMENT_OF = 8;
+
+	private final OWLDataFactory factory;
+	private final Map<IRI, Integer> writeTable = new HashMap<IRI, Integer>();
+	private final List<IRI> readTable = new ArrayList<IRI>();
+	private OWLOntologyManager parseManager;
+
+	public AxiomCodec(OWLDataFactory factory) {
+		this.factory = factory;
+	}
+
+	// Thrown internally when an axiom uses a construct without a binary form
+	private static class UnsupportedConstructException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	public void continueFrom(AxiomCodec decoder) {
+		// Lets a writer append to a stream that was just read back by the given decoder
+		writeTable.clear();
+		for (int i = 0; i < decoder.readTable.size(); i++) {
+			writeTable.put(decoder.readTable.get(i), i);
+		}
+	}
+
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	public static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public void writeIRI(DataOutput out, IRI iri) throws IOException {
+		Integer id = writeTable.get(iri);
+		if (id != null) {
+			writeVarInt(out, id + 1);
+		} else {
+			// 0 introduces a new IRI, which takes the next id on both sides
+			writeVarInt(out, 0);
+			writeString(out, iri.toString());
+			writeTable.put(iri, writeTable.size());
+		}
+	}
+
+	public IRI readIRI(DataInput in) throws IOException {
+		int id = readVarInt(in);
+		if (id == 0) {
+			IRI iri = IRI.create(readString(in));
+			readTable.add(iri);
+			return iri;
+		}
+		return readTable.get(id - 1);
+	}
+
+	public void writeAxiom(DataOutput out, OWLAxiom axiom) throws IOException {
+		// Encode into a scratch buffer first, so that a fallback does not leave a half written axiom or stray IRI ids behind
+		ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+		DataOutputStream scratchOut = new DataOutputStream(scratch);
+		Map<IRI, Integer> saved = new HashMap<IRI, Integer>(writeTable);
+		try {
+			writeStructured(scratchOut, axiom);
+			scratchOut.flush();
+			out.write(scratch.toByteArray());
+		} catch (UnsupportedConstructException e) {
+			writeTable.clear();
+			writeTable.putAll(saved);
+			out.writeByte(FUNCTIONAL_SYNTAX);
+			writeString(out, toFunctionalSyntax(Collections.singletonList(axiom)));
+		}
+	}
+
+	public OWLAxiom readAxiom(DataInput in) throws IOException {
+		int tag = in.readUnsignedByte();
+		if (tag == FUNCTIONAL_SYNTAX) {
+			List<OWLAxiom> axioms = fromFunctionalSyntax(readString(in));
+			if (axioms.size() != 1)
+				throw new IOException("Error: Expected a single axiom in functional syntax record.");
+			return axioms.get(0);
+		}
+		List<OWLAnnotation> annotations = readAnnotations(in);
+		switch (tag) {
+		case DECLARATION:
+			return factory.getOWLDeclarationAxiom(readEntity(in), annotations);
+		case SUBCLASS_OF:
+			return factory.getOWLSubClassOfAxiom(readClassExpression(in), readClassExpression(in), annotations);
+		case CLASS_ASSERTION: {
+			OWLClassExpression type = readClassExpression(in);
+			return factory.getOWLClassAssertionAxiom(type, factory.getOWLNamedIndividual(readIRI(in)), annotations);
+		}
+		case OBJECT_PROPERTY_ASSERTION: {
+			OWLObjectProperty property = factory.getOWLObjectProperty(readIRI(in));
+			OWLNamedIndividual subject = factory.getOWLNamedIndividual(readIRI(in));
+			return factory.getOWLObjectPropertyAssertionAxiom(property, subject, factory.getOWLNamedIndividual(readIRI(in)), annotations);
+		}
+		case DATA_PROPERTY_ASSERTION: {
+			OWLDataProperty property = factory.getOWLDataProperty(readIRI(in));
+			OWLNamedIndividual subject = factory.getOWLNamedIndividual(readIRI(in));
+			return factory.getOWLDataPropertyAssertionAxiom(property, subject, readLiteral(in), annotations);
+		}
+		case ANNOTATION_ASSERTION: {
+			OWLAnnotationProperty property = factory.getOWLAnnotationProperty(readIRI(in));
+			IRI subject = readIRI(in);
+			return factory.getOWLAnnotationAssertionAxiom(property, subject, readAnnotationValue(in), annotations);
+		}
+		case OBJECT_PROPERTY_DOMAIN:
+			return factory.getOWLObjectPropertyDomainAxiom(factory.getOWLObjectProperty(readIRI(in)), readClassExpression(in), annotations);
+		case OBJECT_PROPERTY_RANGE:
+			return factory.getOWLObjectPropertyRangeAxiom(factory.getOWLObjectProperty(readIRI(in)), readClassExpression(in), annotations);
+		case DATA_PROPERTY_DOMAIN:
+			return factory.getOWLDataPropertyDomainAxiom(factory.getOWLDataProperty(readIRI(in)), readClassExpression(in), annotations);
+		case DATA_PROPERTY_RANGE:
+			return factory.getOWLDataPropertyRangeAxiom(factory.getOWLDataProperty(readIRI(in)), factory.getOWLDatatype(readIRI(in)), annotations);
+		case EQUIVALENT_CLASSES:
+			return factory.getOWLEquivalentClassesAxiom(readClassExpressions(in), annotations);
+		default:
+			throw new IOException("Error: Unknown axiom tag " + tag + ".");
+		}
+	}
+
+	private void writeStructured(DataOutput out, OWLAxiom axiom) throws IOException, UnsupportedConstructException {
+		if (axiom instanceof OWLDeclarationAxiom) {
+			out.writeByte(DECLARATION);
+			writeAnnotations(out, axiom);
+			writeEntity(out, ((OWLDeclarationAxiom) axiom).getEntity());
+		} else if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			out.writeByte(SUBCLASS_OF);
+			writeAnnotations(out, axiom);
+			writeClassExpression(out, subClassOf.getSubClass());
+			writeClassExpression(out, subClassOf.getSuperClass());
+		} else if (axiom instanceof OWLClassAssertionAxiom) {
+			OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+			out.writeByte(CLASS_ASSERTION);
+			writeAnnotations(out, axiom);
+			writeClassExpression(out, assertion.getClassExpression());
+			writeIRI(out, named(assertion.getIndividual()));
+		} else if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+			OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+			out.writeByte(OBJECT_PROPERTY_ASSERTION);
+			writeAnnotations(out, axiom);
+			writeIRI(out, named(assertion.getProperty()));
+			writeIRI(out, named(assertion.getSubject()));
+			writeIRI(out, named(assertion.getObject()));
+		} else if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+			OWLDataPropertyAssertionAxiom assertion = (OWLDataPropertyAssertionAxiom) axiom;
+			out.writeByte(DATA_PROPERTY_ASSERTION);
+			writeAnnotations(out, axiom);
+			writeIRI(out, assertion.getProperty().asOWLDataProperty().getIRI());
+			writeIRI(out, named(assertion.getSubject()));
+			writeLiteral(out, assertion.getObject());
+		} else if (axiom instanceof OWLAnnotationAssertionAxiom) {
+			OWLAnnotationAssertionAxiom assertion = (OWLAnnotationAssertionAxiom) axiom;
+			if (!assertion.getSubject().isIRI())
+				throw new UnsupportedConstructException();
+			out.writeByte(ANNOTATION_ASSERTION);
+			writeAnnotations(out, axiom);
+			writeIRI(out, assertion.getProperty().getIRI());
+			writeIRI(out, (IRI) assertion.getSubject());
+			writeAnnotationValue(out, assertion.getValue());
+		} else if (axiom instanceof OWLObjectPropertyDomainAxiom) {
+			OWLObjectPropertyDomainAxiom domain = (OWLObjectPropertyDomainAxiom) axiom;
+			out.writeByte(OBJECT_PROPERTY_DOMAIN);
+			writeAnnotations(out, axiom);
+			writeIRI(out, named(domain.getProperty()));
+			writeClassExpression(out, domain.getDomain());
+		} else if (axiom instanceof OWLObjectPropertyRangeAxiom) {
+			OWLObjectPropertyRangeAxiom range = (OWLObjectPropertyRangeAxiom) axiom;
+			out.writeByte(OBJECT_PROPERTY_RANGE);
+			writeAnnotations(out, axiom);
+			writeIRI(out, named(range.getProperty()));
+			writeClassExpression(out, range.getRange());
+		} else if (axiom instanceof OWLDataPropertyDomainAxiom) {
+			OWLDataPropertyDomainAxiom domain = (OWLDataPropertyDomainAxiom) axiom;
+			out.writeByte(DATA_PROPERTY_DOMAIN);
+			writeAnnotations(out, axiom);
+			writeIRI(out, domain.getProperty().asOWLDataProperty().getIRI());
+			writeClassExpression(out, domain.getDomain());
+		} else if (axiom instanceof OWLDataPropertyRangeAxiom) {
+			OWLDataPropertyRangeAxiom range = (OWLDataPropertyRangeAxiom) axiom;
+			if (!range.getRange().isOWLDatatype())
+				throw new UnsupportedConstructException();
+			out.writeByte(DATA_PROPERTY_RANGE);
+			writeAnnotations(out, axiom);
+			writeIRI(out, range.getProperty().asOWLDataProperty().getIRI());
+			writeIRI(out, range.getRange().asOWLDatatype().getIRI());
+		} else if (axiom instanceof OWLEquivalentClassesAxiom) {
+			out.writeByte(EQUIVALENT_CLASSES);
+			writeAnnotations(out, axiom);
+			writeClassExpressions(out, ((OWLEquivalentClassesAxiom) axiom).classExpressions().collect(Collectors.toList()));
+		} else {
+			throw new UnsupportedConstructException();
+		}
+	}
+
+	private static IRI named(OWLIndividual individual) throws UnsupportedConstructException {
+		if (!individual.isNamed())
+			throw new UnsupportedConstructException();
+		return individual.asOWLNamedIndividual().getIRI();
+	}
+
+	private static IRI named(OWLObjectPropertyExpression property) throws UnsupportedConstructException {
+		if (property.isAnonymous())
+			throw new UnsupportedConstructException();
+		return property.asOWLObjectProperty().getIRI();
+	}
+
+	private void writeAnnotations(DataOutput out, OWLAxiom axiom) throws IOException, UnsupportedConstructException {
+		List<OWLAnnotation> annotations = axiom.annotationsAsList();
+		writeVarInt(out, annotations.size());
+		for (OWLAnnotation annotation : annotations) {
+			// Annotations on annotations are rare enough to go through functional syntax
+			if (annotation.annotations().count() > 0)
+				throw new UnsupportedConstructException();
+			writeIRI(out, annotation.getProperty().getIRI());
+			writeAnnotationValue(out, annotation.getValue());
+		}
+	}
+
+	private List<OWLAnnotation> readAnnotations(DataInput in) throws IOException {
+		int count = readVarInt(in);
+		List<OWLAnnotation> annotations = new ArrayList<OWLAnnotation>(count);
+		for (int i = 0; i < count; i++) {
+			OWLAnnotationProperty property = factory.getOWLAnnotationProperty(readIRI(in));
+			annotations.add(factory.getOWLAnnotation(property, readAnnotationValue(in)));
+		}
+		return annotations;
+	}
+
+	private void writeAnnotationValue(DataOutput out, OWLAnnotationValue value) throws IOException, UnsupportedConstructException {
+		if (value.isIRI()) {
+			out.writeByte(0);
+			writeIRI(out, (IRI) value);
+		} else if (value.isLiteral()) {
+			out.writeByte(1);
+			writeLiteral(out, (OWLLiteral) value);
+		} else {
+			throw new UnsupportedConstructException();
+		}
+	}
+
+	private OWLAnnotationValue readAnnotationValue(DataInput in) throws IOException {
+		if (in.readUnsignedByte() == 0)
+			return readIRI(in);
+		return readLiteral(in);
+	}
+
+	private void writeLiteral(DataOutput out, OWLLiteral literal) throws IOException {
+		writeString(out, literal.getLiteral());
+		if (literal.hasLang()) {
+			out.writeByte(1);
+			writeString(out, literal.getLang());
+		} else if (literal.getDatatype().isString()) {
+			out.writeByte(0);
+		} else {
+			out.writeByte(2);
+			writeIRI(out, literal.getDatatype().getIRI());
+		}
+	}
+
+	private OWLLiteral readLiteral(DataInput in) throws IOException {
+		String lexical = readString(in);
+		int kind = in.readUnsignedByte();
+		if (kind == 0)
+			return factory.getOWLLiteral(lexical);
+		if (kind == 1)
+			return factory.getOWLLiteral(lexical, readString(in));
+		return factory.getOWLLiteral(lexical, factory.getOWLDatatype(readIRI(in)));
+	}
+
+	private void writeEntity(DataOutput out, OWLEntity entity) throws IOException {
+		out.writeByte(EntityType.values().indexOf(entity.getEntityType()));
+		writeIRI(out, entity.getIRI());
+	}
+
+	private OWLEntity readEntity(DataInput in) throws IOException {
+		EntityType<?> type = EntityType.values().get(in.readUnsignedByte());
+		return factory.getOWLEntity(type, readIRI(in));
+	}
+
+	private void writeClassExpressions(DataOutput out, Collection<? extends OWLClassExpression> expressions) throws IOException, UnsupportedConstructException {
+		writeVarInt(out, expressions.size());
+		for (OWLClassExpression expression : expressions) {
+			writeClassExpression(out, expression);
+		}
+	}
+
+	private List<OWLClassExpression> readClassExpressions(DataInput in) throws IOException {
+		int count = readVarInt(in);
+		List<OWLClassExpression> expressions = new ArrayList<OWLClassExpression>(count);
+		for (int i = 0; i < count; i++) {
+			expressions.add(readClassExpression(in));
+		}
+		return expressions;
+	}
+
+	private void writeClassExpression(DataOutput out, OWLClassExpression expression) throws IOException, UnsupportedConstructException {
+		if (!expression.isAnonymous()) {
+			out.writeByte(NAMED_CLASS);
+			writeIRI(out, expression.asOWLClass().getIRI());
+		} else if (expression instanceof OWLObjectSomeValuesFrom) {
+			OWLObjectSomeValuesFrom restriction = (OWLObjectSomeValuesFrom) expression;
+			out.writeByte(SOME_VALUES_FROM);
+			writeIRI(out, named(restriction.getProperty()));
+			writeClassExpression(out, restriction.getFiller());
+		} else if (expression instanceof OWLObjectAllValuesFrom) {
+			OWLObjectAllValuesFrom restriction = (OWLObjectAllValuesFrom) expression;
+			out.writeByte(ALL_VALUES_FROM);
+			writeIRI(out, named(restriction.getProperty()));
+			writeClassExpression(out, restriction.getFiller());
+		} else if (expression instanceof OWLObjectHasValue) {
+			OWLObjectHasValue restriction = (OWLObjectHasValue) expression;
+			out.writeByte(HAS_VALUE);
+			writeIRI(out, named(restriction.getProperty()));
+			writeIRI(out, named(restriction.getFiller()));
+		} else if (expression instanceof OWLDataHasValue) {
+			OWLDataHasValue restriction = (OWLDataHasValue) expression;
+			out.writeByte(DATA_HAS_VALUE);
+			writeIRI(out, restriction.getProperty().asOWLDataProperty().getIRI());
+			writeLiteral(out, restriction.getFiller());
+		} else if (expression instanceof OWLObjectUnionOf) {
+			out.writeByte(UNION_OF);
+			writeClassExpressions(out, ((OWLObjectUnionOf) expression).getOperandsAsList());
+		} else if (expression instanceof OWLObjectIntersectionOf) {
+			out.writeByte(INTERSECTION_OF);
+			writeClassExpressions(out, ((OWLObjectIntersectionOf) expression).getOperandsAsList());
+		} else if (expression instanceof OWLObjectComplementOf) {
+			out.writeByte(COMPLEMENT_OF);
+			writeClassExpression(out, ((OWLObjectComplementOf) expression).getOperand());
+		} else {
+			throw new UnsupportedConstructException();
+		}
+	}
+
+	private OWLClassExpression readClassExpression(DataInput in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case NAMED_CLASS:
+			return factory.getOWLClass(readIRI(in));
+		case SOME_VALUES_FROM: {
+			OWLObjectProperty property = factory.getOWLObjectProperty(readIRI(in));
+			return factory.getOWLObjectSomeValuesFrom(property, readClassExpression(in));
+		}
+		case ALL_VALUES_FROM: {
+			OWLObjectProperty property = factory.getOWLObjectProperty(readIRI(in));
+			return factory.getOWLObjectAllValuesFrom(property, readClassExpression(in));
+		}
+		case HAS_VALUE: {
+			OWLObjectProperty property = factory.getOWLObjectProperty(readIRI(in));
+			return factory.getOWLObjectHasValue(property, factory.getOWLNamedIndividual(readIRI(in)));
+		}
+		case DATA_HAS_VALUE: {
+			OWLDataProperty property = factory.getOWLDataProperty(readIRI(in));
+			return factory.getOWLDataHasValue(property, readLiteral(in));
+		}
+		case UNION_OF:
+			return factory.getOWLObjectUnionOf(readClassExpressions(in));
+		case INTERSECTION_OF:
+			return factory.getOWLObjectIntersectionOf(readClassExpressions(in));
+		case COMPLEMENT_OF:
+			return factory.getOWLObjectComplementOf(readClassExpression(in));
+		default:
+			throw new IOException("Error: Unknown class expression tag " + tag + ".");
+		}
+	}
+
+	public String toFunctionalSyntax(Collection<? extends OWLAxiom> axioms) throws IOException {
+		try {
+			OWLOntologyManager manager = getParseManager();
+			OWLOntology tmp = manager.createOntology();
+			manager.addAxioms(tmp, axioms.stream());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			manager.saveOntology(tmp, new FunctionalSyntaxDocumentFormat(), out);
+			manager.removeOntology(tmp);
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} catch (OWLOntologyCreationException | OWLOntologyStorageException e) {
+			throw new IOException("Error: Could not render axioms in functional syntax.", e);
+		}
+	}
+
+	public List<OWLAxiom> fromFunctionalSyntax(String text) throws IOException {
+		try {
+			OWLOntologyManager manager = getParseManager();
+			OWLOntology tmp = manager.loadOntologyFromOntologyDocument(new StringDocumentSource(text));
+			// Declarations are always written in binary form, the ones found here were added by the renderer
+			List<OWLAxiom> axioms = tmp.axioms().filter(axiom -> !axiom.isOfType(AxiomType.DECLARATION)).collect(Collectors.toList());
+			manager.removeOntology(tmp);
+			return axioms;
+		} catch (OWLOntologyCreationException e) {
+			throw new IOException("Error: Could not parse functional syntax axioms.", e);
+		}
+	}
+
+	private OWLOntologyManager getParseManager() {
+		if (parseManager == null)
+			parseManager = OWLManager.createOWLOntologyManager();
+		return parseManager;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+/* Receives the axioms added to and removed from a MyOntology, after the change has been applied. Used by the indexes which are kept up to date as
+ * the ontology changes. Removals are rare (a rolled back job, for instance), so an index may handle them by rebuilding itself when next used.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+public interface AxiomListener {
+	void axiomAdded(OWLAxiom axiom);
+
+	void axiomRemoved(OWLAxiom axiom);
+}
\ No newline at end of file
@@ -9,24 +9,30 @@
 
 package onted;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
 
 public class BatchUpdate_final_paper {
 
@@ -43,42 +49,11 @@ public class BatchUpdate_final_paper {
 	    return fileSet;
 	}
 
-    public static void splitFile(String path, String inputFilename, String splitOn) {
-        String firstHalfFilePath = path + "1_" + inputFilename;
-        String secondHalfFilePath = path + "2_" + inputFilename;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(path + inputFilename));
-             PrintWriter writerFirstHalf = new PrintWriter(new FileWriter(firstHalfFilePath));
-             PrintWriter writerSecondHalf = new PrintWriter(new FileWriter(secondHalfFilePath))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(splitOn, 2);  // Split the line at the first occurrence of splitOn
-
-                if (parts.length == 2) {  // Ensure the line has two parts
-                    writerFirstHalf.println(parts[0].trim());
-                    writerSecondHalf.println(parts[1].trim());
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-	
 	public static String getCleanString(String myString, String remove) {
 		Pattern myPattern = Pattern.compile("(?i)" + remove);
 		return myString.replaceFirst(myPattern.toString(), "").strip();
 	}
 	
-	public static ArrayList<String> createEntitiesWithDef(String parentIRI, String entityFile, String defFile) throws IOException {
-		ArrayList<String> entityIRIs = myOnt.addSubClass(parentIRI, myOnt.entitiesFromFile(entityFile, "", ""));
-		ArrayList<String> entityDefs = myOnt.entitiesFromFile(defFile, "", "");
-		for (int i=0; i<entityIRIs.size(); i++) {
-			myOnt.addSKOSDefinitionAnnotation(entityIRIs.get(i), entityDefs.get(i));
-		}
-		return entityIRIs;
-	}
-	
 	public static <V, K> Map<V, K> invertMap(Map<K, V> map) {
 	    Map<V, K> inversedMap = new HashMap<V, K>();
 	    for (Entry<K, V> entry : map.entrySet()) {
@@ -87,22 +62,86 @@ public class BatchUpdate_final_paper {
 	    return inversedMap;
 	}
 
+	private static String jurisdictionType(Map<String, String> jurisdictionTypes, String label) {
+		String iri = jurisdictionTypes.get(label);
+		if (iri == null) {
+			throw new RuntimeException("Error: Jurisdictions.txt has no jurisdiction type " + label + ".");
+		}
+		return iri;
+	}
+
 	private static MyOntology myOnt;
 	//@SuppressWarnings("unchecked")
 	public static void main(String[] args) throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
 		// TODO Auto-generated method stub
-		myOnt = new MyOntology("LMSS.owl", "http://lmss.sali.org/");
+		String journalDirectory = null;
+		String importsDirectory = null;
+		String profileFile = null;
+		boolean modular = false;
+		String modulesDirectory = null;
+		String judgmentsDirectory = null;
+		String changesDirectory = null;
+		String partitionsDirectory = null;
+		boolean demo = false;
+		for (String arg : args) {
+			if (arg.startsWith("--journal="))
+				journalDirectory = arg.substring("--journal=".length());
+			else if (arg.startsWith("--imports="))
+				importsDirectory = arg.substring("--imports=".length());
+			else if (arg.equals("--profile"))
+				profileFile = "IndiLegalOnt.jfr";
+			else if (arg.startsWith("--profile="))
+				profileFile = arg.substring("--profile=".length());
+			else if (arg.equals("--modular"))
+				modular = true;
+			else if (arg.startsWith("--modules="))
+				modulesDirectory = arg.substring("--modules=".length());
+			else if (arg.startsWith("--judgments="))
+				judgmentsDirectory = arg.substring("--judgments=".length());
+			else if (arg.startsWith("--changes="))
+				changesDirectory = arg.substring("--changes=".length());
+			else if (arg.startsWith("--partitions="))
+				partitionsDirectory = arg.substring("--partitions=".length());
+			else if (arg.equals("--demo"))
+				demo = true;
+		}
+		// Flight recording of the whole build, summarised by build phase when it ends
+		BuildProfiler profiler = profileFile != null ? new BuildProfiler(profileFile) : null;
+		// In modular mode the additions go to an extension module importing LMSS, and only the extension is saved
+		OntologyWorkspace workspace = modular ? new OntologyWorkspace() : null;
+		if (modular)
+			myOnt = workspace.openExtension("LMSS.owl", "http://lmss.sali.org/IndiLegalOnt", "http://lmss.sali.org/");
+		else
+			myOnt = new MyOntology("LMSS.owl", "http://lmss.sali.org/");
+		
+		// With a journal every change is durable as soon as it is applied, and the journal is retired once the build is saved. If an earlier run
+		// was interrupted, its changes are replayed and the build goes on from them: with stable IRIs it mints the same IRIs again, so the changes
+		// it had already made are found in place instead of being duplicated under new IRIs
+		if (journalDirectory != null) {
+			myOnt.enableStableIRIs();
+			long recovered = myOnt.enableJournal(journalDirectory);
+			if (recovered > 0)
+				System.out.println("Resuming an interrupted run from " + recovered + " journaled changes");
+		}
+		
+		// Every change of the build is logged for the external indexes to apply as deltas, after those of the earlier builds
+		ChangeFeed changeFeed = changesDirectory != null ? myOnt.enableChangeFeed(changesDirectory) : null;
+		long firstChange = changeFeed != null ? changeFeed.getLastOffset() + 1 : 0;
+		
+		// Faceted index of the courts, tribunals and places, built over what the ontology holds (a resumed run included) and filled in as they are added
+		CourtFacetIndex courtIndex = myOnt.getCourtFacetIndex();
 		
 		// Updating laws relating to NIA and Check Bounce cases
 		
+		OntologyEvents.Phase phase = OntologyEvents.Phase.begin("NIA and check bounce laws", myOnt);
 		String checkPaymentIRI = "http://lmss.sali.org/R54wZIS4Qj7j9089Oe2xh5";
 		
 		String checkTransType = myOnt.addSubClass("http://lmss.sali.org/RhBgnef56iLBXYfPqWQE41", "Check Transaction Type");
 		//String checkTransType = myOnt.addSubClass("http://lmss.sali.org/R54wZIS4Qj7j9089Oe2xh5", "Check Transaction Type");
-		ArrayList<String> checkTransTypeSubClasses = createEntitiesWithDef(checkTransType, "Litigation Criminal Claims 1.txt", "Litigation Criminal Claims 2.txt");
+		ArrayList<String> checkTransTypeSubClasses = myOnt.addSubClassesFromRecords(checkTransType, "Litigation Criminal Claims.tsv");
 		
 		String transactionStatus = myOnt.addSubClass("http://lmss.sali.org/RhBgnef56iLBXYfPqWQE41", "Transaction Status");
-		ArrayList<String> transactionStatusSubClasses = createEntitiesWithDef(transactionStatus, "Transaction Status 1.txt", "Transaction Status 2.txt");
+		ArrayList<String> transactionStatusSubClasses = myOnt.addSubClassesFromRecords(transactionStatus, "Transaction Status.tsv");
 		
 		String hasStatus = myOnt.addNewObjectProperty("hasStatus", checkPaymentIRI, transactionStatus);
 		String hasTransaction = myOnt.addNewObjectProperty("hasTransaction", checkPaymentIRI, checkTransType);
@@ -110,10 +149,10 @@ public class BatchUpdate_final_paper {
 		String badCheck = myOnt.addSubClass(checkPaymentIRI, "Bad Check");
 		
 		String checkBounceCriminalClaims = myOnt.addSubClass("http://lmss.sali.org/R7u1GstOpfAmZ3mI7yFcbgU", "Check Bounce Criminal Claim");
-		ArrayList<String> checkBounceCriminalClaimsList = createEntitiesWithDef(checkBounceCriminalClaims, "checkBounceCriminalClaims1.txt", "checkBounceCriminalClaims2.txt");
+		ArrayList<String> checkBounceCriminalClaimsList = myOnt.addSubClassesFromRecords(checkBounceCriminalClaims, "checkBounceCriminalClaims.tsv");
 		
 		String badCheckCrimeDefenses = myOnt.addSubClass("http://lmss.sali.org/R8mREFTbCVNHGAdqneLSd0d", "Check Bounce Criminal Defense");
-		ArrayList<String> badCheckCrimeDefencesSubClasses = createEntitiesWithDef(badCheckCrimeDefenses, "Litigation Criminal Defenses 1.txt", "Litigation Criminal Defenses 2.txt");
+		ArrayList<String> badCheckCrimeDefencesSubClasses = myOnt.addSubClassesFromRecords(badCheckCrimeDefenses, "Litigation Criminal Defenses.tsv");
 		
 		String hasClaim = myOnt.addNewObjectProperty("hasClaim", badCheck, checkBounceCriminalClaims);
 		String hasDefense = myOnt.addNewObjectProperty("hasDefense", badCheck, badCheckCrimeDefenses);
@@ -122,14 +161,55 @@ public class BatchUpdate_final_paper {
 //		String hasTransaction = myOnt.addNewObjectProperty("hasTransaction", badCheckClaims, checkTransType);
 		
 		String specialRulesOfEvidence = myOnt.addSubClass("http://lmss.sali.org/RDqvTdg5IFDf2Oyf3zT3z50", "Special Rules of Evidence for Bad Check Crime");
-		ArrayList<String> specialRulesOfEvidenceSubClasses = createEntitiesWithDef(specialRulesOfEvidence, "Special Rules of Evidence 1.txt", "Special Rules of Evidence 2.txt");
+		ArrayList<String> specialRulesOfEvidenceSubClasses = myOnt.addSubClassesFromRecords(specialRulesOfEvidence, "Special Rules of Evidence.tsv");
 		
-		ArrayList<String> ruleOfPresumptionSubClasses = createEntitiesWithDef(specialRulesOfEvidenceSubClasses.get(0), "Rule of Presumption 1.txt", "Rule of Presumption 2.txt");
+		ArrayList<String> ruleOfPresumptionSubClasses = myOnt.addSubClassesFromRecords(specialRulesOfEvidenceSubClasses.get(0), "Rule of Presumption.tsv");
 		
 		String metropolitanMagistrate = myOnt.addSubClass("http://lmss.sali.org/RihNVfYYtmWzQWciwxquKe", "Metropolitan Magistrate or Judicial Magistrate of First Class");
+		phase.finish();
+		
+		// Subsumption checks over the new classes, answered from the hierarchy index
+		
+		if (demo)
+			System.out.println("Cheque bounce claims classified: " + checkBounceCriminalClaimsList.stream().filter(claim -> myOnt.isSubClassOf(claim, checkBounceCriminalClaims)).count()
+					+ ", depth " + myOnt.getDepth(checkBounceCriminalClaims) + ", common ancestors with the defenses: " + myOnt.lowestCommonAncestors(checkBounceCriminalClaims, badCheckCrimeDefenses));
+		
+		// Judgments linked (rdfs:seeAlso) to the legislation, the rules of evidence and the cheque bounce claims they cite, found by label
+		
+		if (judgmentsDirectory != null) {
+			phase = OntologyEvents.Phase.begin("Citation linking", myOnt);
+			// Typed, so that the class based queries and the indexes find them like the courts
+			String indianLegislation = myOnt.addSubClass("http://www.w3.org/2002/07/owl#Thing", "Indian Legislation");
+			String indianJudgment = myOnt.addSubClass("http://www.w3.org/2002/07/owl#Thing", "Indian Judgment");
+			ArrayList<String> legislationList = myOnt.addIndividuals(indianLegislation, myOnt.entitiesFromFile("legislationDocument.txt", "", ""));
+			List<String> citable = new ArrayList<String>(legislationList);
+			citable.add(specialRulesOfEvidence);
+			citable.addAll(specialRulesOfEvidenceSubClasses);
+			citable.addAll(ruleOfPresumptionSubClasses);
+			citable.add(checkBounceCriminalClaims);
+			citable.addAll(checkBounceCriminalClaimsList);
+			CitationLinker linker = myOnt.newCitationLinker(citable);
+			Map<String, String> judgments = new LinkedHashMap<String, String>();
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(judgmentsDirectory), "*.txt")) {
+				for (Path file : files)
+					judgments.put(myOnt.addIndividual(indianJudgment, file.getFileName().toString().replaceFirst("\\.txt$", "")), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			}
+			long start = System.nanoTime();
+			Map<String, Set<String>> citations = myOnt.linkCitations(linker, judgments);
+			double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+			System.out.println(String.format("Linked %d judgments to %d citations (%d labels) at %.0f documents/s", judgments.size(),
+					citations.values().stream().mapToInt(Set::size).sum(), linker.size(), judgments.size() / seconds));
+			phase.finish();
+		}
 
-		//myOnt.importOntology("https://www.geonames.org/ontology");
-		//myOnt.importOntology("https://schema.org/docs/schemaorg.owl");
+		// The imports need local copies (catalog-v001.xml or the mirror directory), they are never fetched over the network
+		if (importsDirectory != null) {
+			phase = OntologyEvents.Phase.begin("Offline imports", myOnt);
+			myOnt.enableOfflineImports("catalog-v001.xml", importsDirectory, importsDirectory + "/cache");
+			myOnt.importOntology("https://www.geonames.org/ontology");
+			myOnt.importOntology("https://schema.org/docs/schemaorg.owl");
+			phase.finish();
+		}
 		
 		// Constructing properties
 //		String partOf = myOnt.addNewObjectProperty("partOf", "http://www.w3.org/2002/07/owl#Thing", "http://www.w3.org/2002/07/owl#Thing");
@@ -137,28 +217,48 @@ public class BatchUpdate_final_paper {
 
 		// Updating Ministries and Departments
 		
+		phase = OntologyEvents.Phase.begin("Ministries and departments", myOnt);
 		String indianGovernment = myOnt.addSubClass("http://lmss.sali.org/RBQGborh1CfXanGZipDL0Qo", "Indian Government");
 		String indianCentralGovernment = myOnt.addSubClass(indianGovernment, "Indian Central Government");
 		String indianCentralMinistries = myOnt.addSubClass(indianCentralGovernment, "Indian Central Ministry");
 		String indianCentralDepartments = myOnt.addSubClass(indianCentralGovernment, "Indian Central Department");
 		ArrayList<String> centralMinistriesList = myOnt.addIndividuals(indianCentralMinistries, myOnt.entitiesFromFile("Ministries.txt", "", ""));
 		ArrayList<String> centralDepartmentsList = myOnt.addIndividuals(indianCentralDepartments, myOnt.entitiesFromFile("Departments.txt", "", ""));
+		phase.finish();
 		
 		//Updating forums and tribunals
 		
+		phase = OntologyEvents.Phase.begin("Tribunals and jurisdiction types", myOnt);
 		String parentTribunal = "http://lmss.sali.org/R85OMPBjCJJv2cpg2RCwYim";
 		String indianTribunals = myOnt.addSubClass(parentTribunal, "India Tribunal");
 		String indianAppellateTribunals = myOnt.addSubClass(parentTribunal, "India Appellate Tribunal");
-		ArrayList<String> tribunalsList = myOnt.addIndividuals(indianTribunals, myOnt.entitiesFromFile("India Tribunal.txt", "", ""));
-		ArrayList<String> appelateTribunalsList = myOnt.addIndividuals(indianAppellateTribunals, myOnt.entitiesFromFile("India Appellate Tribunal.txt", "", ""));
-		
-		ArrayList<String> courtForumJurisdictionTypes = myOnt.addIndividuals("http://lmss.sali.org/R9sbuHkJC9aqDlHAgw58VSB", myOnt.entitiesFromFile("Jurisdictions.txt", "", ""));
+		ArrayList<String> tribunalNames = myOnt.entitiesFromFile("India Tribunal.txt", "", "");
+		ArrayList<String> appellateTribunalNames = myOnt.entitiesFromFile("India Appellate Tribunal.txt", "", "");
+		ArrayList<String> tribunalsList = myOnt.addIndividuals(indianTribunals, tribunalNames);
+		ArrayList<String> appelateTribunalsList = myOnt.addIndividuals(indianAppellateTribunals, appellateTribunalNames);
+		// Tribunal IRIs by label, a label listed twice stands for every individual created for it
+		Map<String, List<String>> tribunalIRIs = new HashMap<String, List<String>>();
+		for (int i = 0; i < tribunalNames.size(); i++)
+			tribunalIRIs.computeIfAbsent(tribunalNames.get(i), key -> new ArrayList<String>()).add(tribunalsList.get(i));
+		for (int i = 0; i < appellateTribunalNames.size(); i++)
+			tribunalIRIs.computeIfAbsent(appellateTribunalNames.get(i), key -> new ArrayList<String>()).add(appelateTribunalsList.get(i));
+		
+		courtIndex.defineCourtLevel(indianTribunals, "Tribunal");
+		courtIndex.defineCourtLevel(indianAppellateTribunals, "Appellate Tribunal");
+		
+		ArrayList<String> jurisdictionTypeNames = myOnt.entitiesFromFile("Jurisdictions.txt", "", "");
+		ArrayList<String> courtForumJurisdictionTypes = myOnt.addIndividuals("http://lmss.sali.org/R9sbuHkJC9aqDlHAgw58VSB", jurisdictionTypeNames);
+		Map<String, String> jurisdictionTypes = new HashMap<String, String>();
+		for (int i = 0; i < jurisdictionTypeNames.size(); i++)
+			jurisdictionTypes.put(jurisdictionTypeNames.get(i), courtForumJurisdictionTypes.get(i));
 		
 		String summaryCourtTrial = myOnt.addSubClass("http://lmss.sali.org/RpNOHS1FAVVJkNXIN6L6y7", "Summary Court Trial");
 		myOnt.assertSomeValuesFromAxiom("http://lmss.sali.org/RBSewRxgjTh2VhFX6itIoFA", summaryCourtTrial, "http://www.w3.org/2000/01/rdf-schema#seeAlso");
+		phase.finish();
 		
 		// Updating forums and venues
 		
+		phase = OntologyEvents.Phase.begin("Supreme Court and high courts", myOnt);
 		String indianCourt = myOnt.addSubClass("http://lmss.sali.org/R9v17ZYsnDkNSEZkvD36nhT", "Indian court");
 		String supremeCourt = myOnt.addSubClass(indianCourt, "Supreme Court of India");
 		String theSupremeCourt = myOnt.addIndividual(supremeCourt, "Supreme Court of India");
@@ -168,26 +268,43 @@ public class BatchUpdate_final_paper {
 		String districtCourt = myOnt.addSubClass(indianCourt, "District Court");
 		String precededBy = myOnt.addNewObjectPropertyWithDR("precededBy", "http://lmss.sali.org/RBjHwNNG2ASVmasLFU42otk", "http://lmss.sali.org/RBjHwNNG2ASVmasLFU42otk");
 		String hasPrecedenceOver = myOnt.addNewObjectPropertyWithDR("hasPrecedenceOver", "http://lmss.sali.org/RBjHwNNG2ASVmasLFU42otk", "http://lmss.sali.org/RBjHwNNG2ASVmasLFU42otk");
+		courtIndex.defineCourtLevel(supremeCourt, "Supreme Court");
+		courtIndex.defineCourtLevel(highCourt, "High Court");
+		courtIndex.defineCourtLevel(districtCourt, "District Court");
+		courtIndex.setPrecededByProperty(precededBy);
 		myOnt.assertSomeValuesFromAxiom(highCourt, supremeCourt, precededBy);
 		myOnt.assertSomeValuesFromAxiom(districtCourt, highCourt, precededBy);
 		myOnt.assertSomeValuesFromAxiom(supremeCourt, highCourt, hasPrecedenceOver);
 		myOnt.assertSomeValuesFromAxiom(highCourt, districtCourt, hasPrecedenceOver);
 		ArrayList<String> highCourtsList = myOnt.addIndividuals(highCourt, myOnt.entitiesFromFile("HC.txt", "", ""));
-		BatchUpdate_final.splitFile("", "city-state_pairs.txt", ",");
-		ArrayList<String> hc_cities = myOnt.entitiesFromFile("1_city-state_pairs.txt", "", "");
-		ArrayList<String> hc_states = myOnt.entitiesFromFile("2_city-state_pairs.txt", "", "");
+		ArrayList<String> hc_cities = new ArrayList<String>();
+		ArrayList<String> hc_states = new ArrayList<String>();
+		try (DelimitedRecordReader pairs = new DelimitedRecordReader("city-state_pairs.txt", ',', false).expectColumns(2, 2)) {
+			for (DelimitedRecordReader.Record pair : pairs) {
+				hc_cities.add(pair.get(0));
+				hc_states.add(pair.get(1));
+			}
+		}
+		// The high courts and their seats are matched by position
+		if (hc_cities.size() != highCourtsList.size()) {
+			throw new RuntimeException("Error: HC.txt lists " + highCourtsList.size() + " high courts but city-state_pairs.txt has " + hc_cities.size() + " seats.");
+		}
 		System.out.println(hc_cities.size());
-		HashMap<String, String> cityIDMap = (HashMap<String, String>) BatchUpdate_final.invertMap((HashMap<String, String>) GeoNamesHandler.getObject("CityID.txt"));
+		HashMap<String, String> cityIDMap = (HashMap<String, String>) invertMap((HashMap<String, String>) GeoNamesHandler.getObject("CityID.txt"));
 		//System.out.println(cityIDMap.get("Prayagraj"));
 
+		phase.finish();
+
 		// Creating region classes for India
 		
+		phase = OntologyEvents.Phase.begin("Regions and high court seats", myOnt);
 		String geoRegion = myOnt.addSubClass("http://www.w3.org/2002/07/owl#Thing", "Geographical Region");
 //		myOnt.assertObjectPropertyAxiom("http://lmss.sali.org/R9v17ZYsnDkNSEZkvD36nhT", "http://lmss.sali.org/d3a15d62-1772-4c67-8531-cfb91393b2b041f02855-1617-4a29-b696-e062c25f1e69", "http://www.geonames.org/ontology#locatedIn");
 		myOnt.assertSomeValuesFromAxiom("http://lmss.sali.org/R9v17ZYsnDkNSEZkvD36nhT", geoRegion, "http://www.geonames.org/ontology#locatedIn");
 		myOnt.setType(geoRegion, "http://www.geonames.org/ontology#Feature");
 		String country = myOnt.addSubClass(geoRegion, "Country");
 		String state = myOnt.addSubClass(geoRegion, "State and Union Territory");
+		courtIndex.setStateClass(state);
 		String district = myOnt.addSubClass(geoRegion, "District");
 		String city = myOnt.addSubClass(geoRegion, "City");
 		myOnt.assertSomeValuesFromAxiom(country, state, "http://schema.org/containsPlace");
@@ -197,7 +314,7 @@ public class BatchUpdate_final_paper {
 
 		// Creating and linking high courts and asserting location data and types
 		
-		HashMap<String, String> stateUTGeoID = (HashMap<String, String>) BatchUpdate_final.invertMap((HashMap<String, String>) GeoNamesHandler.getObject("stateUT.txt"));
+		HashMap<String, String> stateUTGeoID = (HashMap<String, String>) invertMap((HashMap<String, String>) GeoNamesHandler.getObject("stateUT.txt"));
 		HashMap<String, String> stateHC = new HashMap<String, String>();
 		for (int i = 0; i<highCourtsList.size(); i++) {
 			String cityIRI = GeoNamesHandler.getGeoIRI(cityIDMap.get(hc_cities.get(i)));
@@ -240,46 +357,152 @@ public class BatchUpdate_final_paper {
 //			ArrayList<String> districtCourtsList = myOnt.addIndividuals(districtCourt, myOnt.entitiesFromFile(dcName, "", " District Court"));
 //			}
 		
-		// Connecting Indian courts with jurisdiction types
-		
-		myOnt.addNewObjectProperty("hasJurisdictionType", indianCourt, "http://lmss.sali.org/R9sbuHkJC9aqDlHAgw58VSB");
+		phase.finish();
+
+		// Connecting Indian courts and tribunals with jurisdiction types: the Supreme Court, the high courts and the district courts hear civil and
+		// criminal matters, the tribunals those listed for them in Tribunal Jurisdictions.tsv
+		
+		String hasJurisdictionType = myOnt.addNewObjectProperty("hasJurisdictionType", indianCourt, "http://lmss.sali.org/R9sbuHkJC9aqDlHAgw58VSB");
+		courtIndex.setJurisdictionTypeProperty(hasJurisdictionType);
+		String civilJurisdiction = jurisdictionType(jurisdictionTypes, "Civil Court");
+		String criminalJurisdiction = jurisdictionType(jurisdictionTypes, "Criminal Court");
+		List<String> regularCourts = new ArrayList<String>(highCourtsList);
+		regularCourts.add(theSupremeCourt);
+		for (String court : regularCourts) {
+			myOnt.assertObjectPropertyAxiom(court, civilJurisdiction, hasJurisdictionType);
+			myOnt.assertObjectPropertyAxiom(court, criminalJurisdiction, hasJurisdictionType);
+		}
+		try (DelimitedRecordReader records = DelimitedRecordReader.forFile("Tribunal Jurisdictions.tsv")) {
+			for (DelimitedRecordReader.Record record : records) {
+				List<String> tribunals = tribunalIRIs.get(record.get("tribunal"));
+				if (tribunals == null) {
+					throw new RuntimeException("Error: Tribunal Jurisdictions.tsv names an unknown tribunal " + record.get("tribunal") + ".");
+				}
+				for (String type : record.getList("jurisdictionTypes", '|')) {
+					for (String tribunal : tribunals)
+						myOnt.assertObjectPropertyAxiom(tribunal, jurisdictionType(jurisdictionTypes, type), hasJurisdictionType);
+				}
+			}
+		}
 		
 		// Random tests
 		
+		phase = OntologyEvents.Phase.begin("Hierarchy and label queries", myOnt);
 		System.out.println(myOnt.getSubclasses("http://lmss.sali.org/RF70104541ceaCF746bCCc18").size());
 		System.out.println(myOnt.getClassesByLabel("Haryana"));
 		System.out.println(myOnt.getSuperclasses("http://lmss.sali.org/R21A70108F1b04360b3508e1"));
+		phase.finish();
 		
 		// Creating and linking district courts and asserting location data and types
 		
+		phase = OntologyEvents.Phase.begin("District court batches", myOnt);
 		HashMap<String, String> stateUT = (HashMap<String, String>) GeoNamesHandler.getObject("stateUT.txt");
 		HashMap<String, HashMap<String, String>> district_by_stateUT = (HashMap<String, HashMap<String, String>>) GeoNamesHandler.getObject("district_by_stateUT.txt");
-		for (String geonameId : stateUT.keySet()) {
+		// Every state is prepared as an independent batch on the fork-join pool, the batches are then applied (and their logs printed) in order of geonameId
+		ArrayList<String> stateIDs = new ArrayList<String>(stateUT.keySet());
+		Collections.sort(stateIDs);
+		// The places and district courts of every state, which a partitioned save puts in the shard of the state
+		Map<String, List<String>> stateEntities = new ConcurrentHashMap<String, List<String>>();
+		List<AxiomBatch> stateBatches = stateIDs.parallelStream().map(geonameId -> {
+			AxiomBatch batch = myOnt.newBatch(geonameId);
 			String stateUTIRI = GeoNamesHandler.getGeoIRI(geonameId);
-			myOnt.assertObjectPropertyAxiom(countryIRI, stateUTIRI, "http://schema.org/containsPlace");
-			System.out.println("The state of " + stateUT.get(geonameId) + " has the following districts: ");
+			batch.assertObjectPropertyAxiom(countryIRI, stateUTIRI, "http://schema.org/containsPlace");
+			batch.log("The state of " + stateUT.get(geonameId) + " has the following districts: ");
 			HashMap<String, String> inner = district_by_stateUT.get(geonameId);
-	    	for (String geonameId_inner : inner.keySet()) {
-	    		String myDistrictCourt = myOnt.addIndividual(districtCourt, BatchUpdate_final.getCleanString(inner.get(geonameId_inner), "district") + " District Court");
-	    		myOnt.assertObjectPropertyAxiom(myDistrictCourt, GeoNamesHandler.getGeoIRI(geonameId_inner), "http://www.geonames.org/ontology#locatedIn");
+			ArrayList<String> districtIDs = new ArrayList<String>(inner.keySet());
+			Collections.sort(districtIDs);
+			List<String> entities = new ArrayList<String>();
+			entities.add(stateUTIRI);
+	    	for (String geonameId_inner : districtIDs) {
+	    		String myDistrictCourt = batch.addIndividual(districtCourt, getCleanString(inner.get(geonameId_inner), "district") + " District Court");
+	    		batch.assertObjectPropertyAxiom(myDistrictCourt, GeoNamesHandler.getGeoIRI(geonameId_inner), "http://www.geonames.org/ontology#locatedIn");
 	    		String districtIRI = GeoNamesHandler.getGeoIRI(geonameId_inner);
-				myOnt.labelEntity(districtIRI, inner.get(geonameId_inner), false);
-				myOnt.setType(districtIRI, district);
-				myOnt.assertObjectPropertyAxiom(stateUTIRI, districtIRI, "http://schema.org/containsPlace");
-	    		System.out.println(BatchUpdate_final.getCleanString(inner.get(geonameId_inner), "district") + " " + geonameId_inner);
-	    		myOnt.assertObjectPropertyAxiom(myDistrictCourt, stateHC.get(geonameId), precededBy);
-	    		myOnt.assertObjectPropertyAxiom(stateHC.get(geonameId), myDistrictCourt, hasPrecedenceOver);
+				batch.labelEntity(districtIRI, inner.get(geonameId_inner), false);
+				batch.setType(districtIRI, district);
+				batch.assertObjectPropertyAxiom(stateUTIRI, districtIRI, "http://schema.org/containsPlace");
+	    		batch.log(getCleanString(inner.get(geonameId_inner), "district") + " " + geonameId_inner);
+	    		batch.assertObjectPropertyAxiom(myDistrictCourt, stateHC.get(geonameId), precededBy);
+	    		batch.assertObjectPropertyAxiom(stateHC.get(geonameId), myDistrictCourt, hasPrecedenceOver);
+	    		batch.assertObjectPropertyAxiom(myDistrictCourt, civilJurisdiction, hasJurisdictionType);
+	    		batch.assertObjectPropertyAxiom(myDistrictCourt, criminalJurisdiction, hasJurisdictionType);
+	    		entities.add(districtIRI);
+	    		entities.add(myDistrictCourt);
 			}
-			myOnt.labelEntity(stateUTIRI, stateUT.get(geonameId), false);
+			stateEntities.put(stateUT.get(geonameId), entities);
+			batch.labelEntity(stateUTIRI, stateUT.get(geonameId), false);
 			//myOnt.addIndividualByIRI(stateUTIRI, stateUT.get(geonameId));
-			myOnt.setType(stateUTIRI, state);
+			batch.setType(stateUTIRI, state);
+			return batch;
+		}).collect(Collectors.toList());
+		phase.finish();
+		phase = OntologyEvents.Phase.begin("District courts applied", myOnt);
+		for (AxiomBatch batch : stateBatches) {
+			myOnt.applyBatch(batch);
+			System.out.print(batch.getLog());
 		}
 		myOnt.labelEntity(countryIRI, "India", false);
 		myOnt.setType(countryIRI, country);
+		phase.finish();
+		
+		// Facet counts over the index: courts by level, and district courts under each high court
+		
+		if (demo) {
+			System.out.println("Courts by level: " + courtIndex.facetCounts(CourtFacetIndex.LEVEL, null));
+			System.out.println("District courts by high court: " + courtIndex.facetCounts(CourtFacetIndex.HIGH_COURT, courtIndex.matching(CourtFacetIndex.LEVEL, "District Court")));
+			System.out.println("District courts: " + myOnt.countIndividuals(districtCourt, true) + ", Indian courts of all levels: " + myOnt.countIndividuals(indianCourt, false));
+		}
+		
+		// Path queries over the court graph: the state containing the district of a district court, and the appeal chain above it
+		
+		if (demo) {
+			PropertyPath stateOfCourt = PropertyPath.of("http://www.geonames.org/ontology#locatedIn").then(PropertyPath.of("http://schema.org/containsPlace").inverse());
+			PropertyPath appealChain = PropertyPath.of(precededBy).oneOrMore();
+			List<String> districtCourts = myOnt.getIndividuals(districtCourt, true);
+			if (!districtCourts.isEmpty()) {
+				String firstCourt = districtCourts.get(0);
+				System.out.println(firstCourt + " is in " + myOnt.traverse(firstCourt, stateOfCourt) + ", appeals go to " + myOnt.traverse(firstCourt, appealChain));
+			}
+		}
+		
+		// Courts competent for every place, kept next to the ontology for the intake service routing filings by location
+		
+		JurisdictionResolver jurisdictions = myOnt.newJurisdictionResolver(districtCourt, highCourt, supremeCourt, precededBy);
+		jurisdictions.save(new File("IndiLegalOnt.jurisdictions"));
+		System.out.println("Jurisdictions of Haryana: " + jurisdictions.resolve("Haryana"));
+		
+		// Lightweight subsets for clients needing only one part: the courts with their places, and the cheque bounce (NIA) classes
+		
+		if (modulesDirectory != null) {
+			phase = OntologyEvents.Phase.begin("Module extraction", myOnt);
+			Map<String, List<String>> seedSets = new LinkedHashMap<String, List<String>>();
+			seedSets.put("courts", Arrays.asList(indianCourt, indianTribunals, indianAppellateTribunals, precededBy, hasPrecedenceOver, geoRegion,
+					"http://www.geonames.org/ontology#locatedIn", "http://schema.org/containsPlace"));
+			seedSets.put("cheque-bounce", Arrays.asList(checkTransType, transactionStatus, badCheck, checkBounceCriminalClaims, badCheckCrimeDefenses,
+					specialRulesOfEvidence, metropolitanMagistrate));
+			System.out.println("Modules (axioms): " + myOnt.extractModules(seedSets, modulesDirectory, ModuleType.TOP));
+			phase.finish();
+		}
 		
 		// Saving the ontology as an OWL file
 		
-    	myOnt.saveOntology("IndiLegalOnt.owl");
+		phase = OntologyEvents.Phase.begin("Save", myOnt);
+    	if (modular) {
+    		workspace.saveModule(myOnt, "IndiLegalOnt.owl");
+    		workspace.writeCatalog("catalog-v001.xml");
+    	}
+    	else
+    		myOnt.saveOntology("IndiLegalOnt.owl");
+    	// The same ontology as a core and a shard per state, for the clients working on a single state
+    	if (partitionsDirectory != null)
+    		System.out.println("Partitions (axioms): " + myOnt.savePartitioned(partitionsDirectory, new TreeMap<String, List<String>>(stateEntities)));
+    	if (journalDirectory != null)
+    		myOnt.retireJournal();
+    	myOnt.close();
+    	phase.finish();
+    	if (changeFeed != null)
+    		System.out.println("Changes " + firstChange + " to " + changeFeed.getLastOffset() + " logged to " + changesDirectory);
     	System.out.println("Creation of new ontology completed!");
+    	if (profiler != null)
+    		profiler.stop(10);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,454 @@
+/* End-to-end benchmark of the builder (BatchUpdate_final_paper) on fixed inputs, the files of the working directory (LMSS.owl, the text files and
+ * the serialized GeoNames data), none of which comes from the network. Without builder arguments the default build is measured.
+ *     java onted.BuildBenchmark [--iterations=5] [--warmup=1] [--baseline=<file>] [--report=<file>] [--tolerance=0.10] -- <builder arguments>
+ * With --imports=<directory> among the builder arguments the offline imports are measured too; if the directory does not exist, it is created with
+ * stand-ins for the GeoNames and schema.org ontologies declaring the terms the builder uses. These exercise the offline resolution and lazy loading,
+ * not the size of the real ontologies, whose local copies can be put in the directory instead.
+ * Every iteration runs the build in a JVM of its own (with the options of this one), as a real build would run, its output going to
+ * IndiLegalOnt.benchmark.log. For every build phase (OntologyEvents.Phase), for the time before the first phase (loading LMSS.owl) and for the
+ * whole build, the wall time, the bytes allocated by all threads and the peak heap are measured, together with the size of the files written. The
+ * heap is fullest just before a collection, so the peak heap is the largest heap in use (all pools at once) before a collection during the phase,
+ * or at its start or end. The warm-up iterations are left out, and the median, minimum and maximum of the others make a JSON
+ * report (IndiLegalOnt.benchmark.json by default). With a baseline, which is a report of an earlier run, the medians are compared with it and a
+ * metric more than the tolerance (and a small absolute margin, so that phases of a few milliseconds do not flap) above the baseline is reported as
+ * a regression; the exit status is then 1. If the baseline file does not exist yet, the report is also written there.
+ */
+
+package onted;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BuildBenchmark {
+	private static final String STARTUP = "Startup";
+	private static final String TOTAL = "Total";
+	private static final String LOG_FILE = "IndiLegalOnt.benchmark.log";
+	private static final String[] OUTPUT_FILES = { "IndiLegalOnt.owl", "IndiLegalOnt.jurisdictions" };
+	// Absolute margins below which a change is taken as noise
+	private static final double WALL_MARGIN_MILLIS = 5;
+	private static final double ALLOCATED_MARGIN_BYTES = 1 << 20;
+	private static final double HEAP_MARGIN_BYTES = 8 << 20;
+
+	// One phase of one iteration, as measured in the build JVM
+	static class Sample {
+		String name;
+		long entities;
+		long wallNanos;
+		long allocatedBytes;
+		long peakHeapBytes;
+	}
+
+	static class Iteration {
+		List<Sample> phases = new ArrayList<Sample>();
+		Map<String, Long> outputBytes = new LinkedHashMap<String, Long>();
+	}
+
+	static class Statistics {
+		double median;
+		double min;
+		double max;
+	}
+
+	static class PhaseReport {
+		String name;
+		long entities;
+		Statistics wallMillis;
+		Statistics allocatedBytes;
+		Statistics peakHeapBytes;
+	}
+
+	static class Comparison {
+		String phase;
+		String metric;
+		double baseline;
+		double current;
+		double change;
+		boolean regression;
+	}
+
+	static class Report {
+		List<String> builderArguments;
+		String javaVersion;
+		int iterations;
+		int warmup;
+		double tolerance;
+		List<PhaseReport> phases = new ArrayList<PhaseReport>();
+		Map<String, Statistics> outputBytes = new LinkedHashMap<String, Statistics>();
+		String baseline;
+		List<Comparison> comparisons = new ArrayList<Comparison>();
+		int regressions;
+	}
+
+	// Takes the measurements at the phase boundaries, in the build JVM
+	static class PhaseMeter implements OntologyEvents.PhaseObserver {
+		private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		private final Set<String> heapPools = new HashSet<String>();
+		// Start time, allocated bytes and peak heap so far of every phase begun and not finished
+		private final Map<String, long[]> started = new HashMap<String, long[]>();
+		private final Iteration iteration = new Iteration();
+		private long[] buildStart;
+		private boolean phaseSeen;
+
+		PhaseMeter() {
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP)
+					heapPools.add(pool.getName());
+			}
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				if (collector instanceof NotificationEmitter) {
+					((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+						if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+							heapSampled(usedBeforeCollection(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())));
+					}, null, null);
+				}
+			}
+		}
+
+		private long usedBeforeCollection(GarbageCollectionNotificationInfo collection) {
+			long used = 0;
+			for (Map.Entry<String, MemoryUsage> pool : collection.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+				if (heapPools.contains(pool.getKey()))
+					used += pool.getValue().getUsed();
+			}
+			return used;
+		}
+
+		private synchronized void heapSampled(long used) {
+			if (buildStart != null)
+				buildStart[2] = Math.max(buildStart[2], used);
+			for (long[] start : started.values())
+				start[2] = Math.max(start[2], used);
+		}
+
+		private long allocatedBytes() {
+			// Threads that ended since the last call are no longer counted; the builder's parallel work runs on the long-lived common pool
+			long total = 0;
+			for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+				total += Math.max(bytes, 0);
+			return total;
+		}
+
+		private long[] start() {
+			return new long[] { System.nanoTime(), allocatedBytes(), memory.getHeapMemoryUsage().getUsed() };
+		}
+
+		private void record(String name, long entities, long[] start) {
+			Sample sample = new Sample();
+			sample.name = name;
+			sample.entities = entities;
+			sample.wallNanos = System.nanoTime() - start[0];
+			sample.allocatedBytes = allocatedBytes() - start[1];
+			sample.peakHeapBytes = Math.max(start[2], memory.getHeapMemoryUsage().getUsed());
+			iteration.phases.add(sample);
+		}
+
+		synchronized void buildBegun() {
+			buildStart = start();
+		}
+
+		@Override
+		public synchronized void phaseBegun(String name) {
+			if (!phaseSeen) {
+				phaseSeen = true;
+				record(STARTUP, 0, buildStart);
+			}
+			started.put(name, start());
+		}
+
+		@Override
+		public synchronized void phaseFinished(String name, long entities) {
+			long[] start = started.remove(name);
+			if (start != null)
+				record(name, entities, start);
+		}
+
+		synchronized Iteration buildFinished() {
+			Sample total = new Sample();
+			total.name = TOTAL;
+			total.wallNanos = System.nanoTime() - buildStart[0];
+			total.allocatedBytes = allocatedBytes() - buildStart[1];
+			total.peakHeapBytes = Math.max(buildStart[2], memory.getHeapMemoryUsage().getUsed());
+			for (Sample phase : iteration.phases)
+				total.entities += phase.entities;
+			iteration.phases.add(total);
+			return iteration;
+		}
+	}
+
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].startsWith("--measure=")) {
+			measure(args[0].substring("--measure=".length()), Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		int iterations = 5;
+		int warmup = 1;
+		String baselineFile = null;
+		String reportFile = "IndiLegalOnt.benchmark.json";
+		double tolerance = 0.10;
+		List<String> builderArgs = new ArrayList<String>();
+		boolean builder = false;
+		for (String arg : args) {
+			if (builder)
+				builderArgs.add(arg);
+			else if (arg.equals("--"))
+				builder = true;
+			else if (arg.startsWith("--iterations="))
+				iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+			else if (arg.startsWith("--warmup="))
+				warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+			else if (arg.startsWith("--baseline="))
+				baselineFile = arg.substring("--baseline=".length());
+			else if (arg.startsWith("--report="))
+				reportFile = arg.substring("--report=".length());
+			else if (arg.startsWith("--tolerance="))
+				tolerance = Double.parseDouble(arg.substring("--tolerance=".length()));
+			else
+				throw new RuntimeException("Error: Unknown option " + arg + ", the builder arguments go after --.");
+		}
+		if (iterations < 1 || warmup < 0)
+			throw new RuntimeException("Error: At least one iteration is needed.");
+		for (String arg : builderArgs) {
+			if (arg.startsWith("--imports=") && !new File(arg.substring("--imports=".length())).exists())
+				writeImportsFixture(new File(arg.substring("--imports=".length())));
+		}
+
+		List<Iteration> measured = new ArrayList<Iteration>();
+		Files.deleteIfExists(Paths.get(LOG_FILE));
+		for (int i = 0; i < warmup + iterations; i++) {
+			Iteration iteration = runIteration(builderArgs);
+			System.out.println(String.format("%s iteration %d: %.0f ms", i < warmup ? "Warm-up" : "Measured", i + 1,
+					iteration.phases.get(iteration.phases.size() - 1).wallNanos / 1e6));
+			if (i >= warmup)
+				measured.add(iteration);
+		}
+
+		Report report = summarise(measured);
+		report.builderArguments = builderArgs;
+		report.javaVersion = System.getProperty("java.version");
+		report.iterations = iterations;
+		report.warmup = warmup;
+		report.tolerance = tolerance;
+		if (baselineFile != null) {
+			File baseline = new File(baselineFile);
+			if (baseline.exists()) {
+				report.baseline = baselineFile;
+				compare(report, readReport(baseline), tolerance);
+			}
+		}
+		writeReport(report, new File(reportFile));
+		if (baselineFile != null && !new File(baselineFile).exists()) {
+			writeReport(report, new File(baselineFile));
+			System.out.println("No baseline yet, this run was saved as " + baselineFile);
+		}
+		for (PhaseReport phase : report.phases)
+			System.out.println(String.format("%-36s %10.1f ms %12.1f MB allocated %10.1f MB peak heap", phase.name, phase.wallMillis.median,
+					phase.allocatedBytes.median / (1 << 20), phase.peakHeapBytes.median / (1 << 20)));
+		for (Comparison comparison : report.comparisons) {
+			if (comparison.regression)
+				System.out.println(String.format("Regression: %s %s %.1f -> %.1f (%+.1f%%)", comparison.phase, comparison.metric, comparison.baseline,
+						comparison.current, comparison.change * 100));
+		}
+		System.out.println("Report written to " + reportFile + (report.baseline != null ? ", " + report.regressions + " regressions" : ""));
+		if (report.regressions > 0)
+			System.exit(1);
+	}
+
+	private static void measure(String resultFile, String[] builderArgs) throws IOException {
+		// In the build JVM: run the builder once with the meter installed, then note the size of what it wrote
+		PhaseMeter meter = new PhaseMeter();
+		OntologyEvents.setPhaseObserver(meter);
+		meter.buildBegun();
+		try {
+			BatchUpdate_final_paper.main(builderArgs);
+		} catch (Exception e) {
+			throw new IOException("Error: The build failed.", e);
+		} finally {
+			OntologyEvents.setPhaseObserver(null);
+		}
+		Iteration iteration = meter.buildFinished();
+		for (String outputFile : outputFiles(builderArgs)) {
+			File file = new File(outputFile);
+			if (file.exists())
+				iteration.outputBytes.put(outputFile, file.length());
+		}
+		try (Writer out = Files.newBufferedWriter(Paths.get(resultFile), StandardCharsets.UTF_8)) {
+			GSON.toJson(iteration, out);
+		}
+	}
+
+	private static void writeImportsFixture(File directory) throws IOException {
+		// The ontology IRIs the builder imports, with the GeoNames and schema.org terms it uses declared
+		if (!directory.mkdirs())
+			throw new IOException("Error: Could not create the imports directory " + directory + ".");
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLDataFactory factory = manager.getOWLDataFactory();
+		try {
+			OWLOntology geoNames = manager.createOntology(IRI.create("https://www.geonames.org/ontology"));
+			geoNames.addAxiom(factory.getOWLDeclarationAxiom(factory.getOWLClass("http://www.geonames.org/ontology#Feature")));
+			geoNames.addAxiom(factory.getOWLDeclarationAxiom(factory.getOWLObjectProperty("http://www.geonames.org/ontology#locatedIn")));
+			manager.saveOntology(geoNames, IRI.create(new File(directory, "geonames.owl")));
+			OWLOntology schemaOrg = manager.createOntology(IRI.create("https://schema.org/docs/schemaorg.owl"));
+			schemaOrg.addAxiom(factory.getOWLDeclarationAxiom(factory.getOWLObjectProperty("http://schema.org/containsPlace")));
+			manager.saveOntology(schemaOrg, IRI.create(new File(directory, "schemaorg.owl")));
+		} catch (OWLOntologyCreationException | OWLOntologyStorageException e) {
+			throw new IOException("Error: Could not write the imports fixture to " + directory + ".", e);
+		}
+		System.out.println("No imports directory yet, stand-ins for GeoNames and schema.org were written to " + directory);
+	}
+
+	private static List<String> outputFiles(String[] builderArgs) {
+		List<String> files = new ArrayList<String>(Arrays.asList(OUTPUT_FILES));
+		for (String arg : builderArgs) {
+			if (arg.startsWith("--modules=")) {
+				String directory = arg.substring("--modules=".length());
+				files.add(directory + "/courts.owl");
+				files.add(directory + "/cheque-bounce.owl");
+			}
+		}
+		return files;
+	}
+
+	private static Iteration runIteration(List<String> builderArgs) throws IOException, InterruptedException {
+		// A fresh JVM with the options and class path of this one; the outputs of the previous iteration are removed so none is measured twice
+		for (String outputFile : outputFiles(builderArgs.toArray(new String[0])))
+			Files.deleteIfExists(Paths.get(outputFile));
+		File resultFile = File.createTempFile("benchmark", ".json");
+		try {
+			List<String> command = new ArrayList<String>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(BuildBenchmark.class.getName());
+			command.add("--measure=" + resultFile.getPath());
+			command.addAll(builderArgs);
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(new File(LOG_FILE)))
+					.start();
+			int status = process.waitFor();
+			if (status != 0)
+				throw new RuntimeException("Error: The build exited with status " + status + ", see " + LOG_FILE + ".");
+			try (Reader in = Files.newBufferedReader(resultFile.toPath(), StandardCharsets.UTF_8)) {
+				return GSON.fromJson(in, Iteration.class);
+			}
+		} finally {
+			Files.deleteIfExists(resultFile.toPath());
+		}
+	}
+
+	static Report summarise(List<Iteration> iterations) {
+		// Phases in the order of the first iteration; a phase missing from some iterations is summarised over those having it
+		Map<String, List<Sample>> byPhase = new LinkedHashMap<String, List<Sample>>();
+		Map<String, List<Long>> byOutput = new LinkedHashMap<String, List<Long>>();
+		for (Iteration iteration : iterations) {
+			for (Sample sample : iteration.phases)
+				byPhase.computeIfAbsent(sample.name, key -> new ArrayList<Sample>()).add(sample);
+			for (Map.Entry<String, Long> output : iteration.outputBytes.entrySet())
+				byOutput.computeIfAbsent(output.getKey(), key -> new ArrayList<Long>()).add(output.getValue());
+		}
+		Report report = new Report();
+		for (Map.Entry<String, List<Sample>> phase : byPhase.entrySet()) {
+			PhaseReport phaseReport = new PhaseReport();
+			phaseReport.name = phase.getKey();
+			phaseReport.entities = phase.getValue().get(0).entities;
+			phaseReport.wallMillis = statistics(phase.getValue().stream().mapToDouble(sample -> sample.wallNanos / 1e6).toArray());
+			phaseReport.allocatedBytes = statistics(phase.getValue().stream().mapToDouble(sample -> sample.allocatedBytes).toArray());
+			phaseReport.peakHeapBytes = statistics(phase.getValue().stream().mapToDouble(sample -> sample.peakHeapBytes).toArray());
+			report.phases.add(phaseReport);
+		}
+		for (Map.Entry<String, List<Long>> output : byOutput.entrySet())
+			report.outputBytes.put(output.getKey(), statistics(output.getValue().stream().mapToDouble(Long::doubleValue).toArray()));
+		return report;
+	}
+
+	private static Statistics statistics(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		Statistics statistics = new Statistics();
+		int middle = sorted.length / 2;
+		statistics.median = sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+		statistics.min = sorted[0];
+		statistics.max = sorted[sorted.length - 1];
+		return statistics;
+	}
+
+	static void compare(Report report, Report baseline, double tolerance) {
+		// Medians against medians, for the phases and outputs present in both
+		Map<String, PhaseReport> baselinePhases = new HashMap<String, PhaseReport>();
+		for (PhaseReport phase : baseline.phases)
+			baselinePhases.put(phase.name, phase);
+		for (PhaseReport phase : report.phases) {
+			PhaseReport before = baselinePhases.get(phase.name);
+			if (before == null)
+				continue;
+			addComparison(report, phase.name, "wallMillis", before.wallMillis, phase.wallMillis, tolerance, WALL_MARGIN_MILLIS);
+			addComparison(report, phase.name, "allocatedBytes", before.allocatedBytes, phase.allocatedBytes, tolerance, ALLOCATED_MARGIN_BYTES);
+			addComparison(report, phase.name, "peakHeapBytes", before.peakHeapBytes, phase.peakHeapBytes, tolerance, HEAP_MARGIN_BYTES);
+		}
+		for (Map.Entry<String, Statistics> output : report.outputBytes.entrySet()) {
+			Statistics before = baseline.outputBytes.get(output.getKey());
+			if (before != null)
+				addComparison(report, output.getKey(), "outputBytes", before, output.getValue(), tolerance, 0);
+		}
+	}
+
+	private static void addComparison(Report report, String phase, String metric, Statistics before, Statistics now, double tolerance, double margin) {
+		Comparison comparison = new Comparison();
+		comparison.phase = phase;
+		comparison.metric = metric;
+		comparison.baseline = before.median;
+		comparison.current = now.median;
+		comparison.change = before.median > 0 ? now.median / before.median - 1 : 0;
+		comparison.regression = now.median > before.median * (1 + tolerance) && now.median - before.median > margin;
+		if (comparison.regression)
+			report.regressions++;
+		report.comparisons.add(comparison);
+	}
+
+	private static Report readReport(File file) throws IOException {
+		try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			Report report = GSON.fromJson(in, Report.class);
+			if (report == null || report.phases == null)
+				throw new IOException("Error: " + file + " is not a benchmark report.");
+			if (report.outputBytes == null)
+				report.outputBytes = new LinkedHashMap<String, Statistics>();
+			return report;
+		}
+	}
+
+	private static void writeReport(Report report, File file) throws IOException {
+		try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			GSON.toJson(report, out);
+		}
+	}
+}
\ No newline at end of file
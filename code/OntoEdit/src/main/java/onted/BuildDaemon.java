@@ -0,0 +1,268 @@
+/* Long-running build process keeping one MyOntology loaded, with its indexes built, so that small edits do not pay for a JVM start and a reparse of
+ * LMSS. Jobs are read from standard input, or with --port=<port> from connections to that port on the loopback interface. A job is a list of
+ * commands, one per line with tab separated fields, ended by a line "end":
+ *     job           <name>                               (optional, names the job in the replies)
+ *     subclass      <parent IRI>  <label>  [$variable]   addSubClass
+ *     individual    <class IRI>   <label>  [$variable]   addIndividual
+ *     individuals   <class IRI>   <label>  <label> ...   addIndividuals
+ *     assert        <subject IRI> <object IRI> <property IRI>   assertObjectPropertyAxiom
+ *     label         <IRI>         <label>                labelEntity
+ *     save          <file>                               saveOntology, once all the other commands of the job have succeeded
+ * An argument $variable stands for the IRI bound to it earlier in the same job. Lines starting with # are ignored, "quit" ends the session and
+ * "shutdown" stops the daemon. Jobs run one at a time; if a command or a save fails, every axiom the job added is removed again, so a job is
+ * applied completely or not at all. The saves of a job are written to <file>.tmp first and renamed over the files only once all of them have been
+ * written, so a failed save leaves every file of the job as it was. Each rename is atomic, the set of them is not: a job saving several files that
+ * fails or is killed between two renames leaves the files renamed so far in their new state. The reply to a job is a line "$variable<TAB>IRI" for every variable bound, followed by
+ * "ok<TAB>job<TAB>axioms added<TAB>milliseconds", or by "error<TAB>job<TAB>message<TAB>axioms rolled back".
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BuildDaemon {
+	private static final String OWL_THING = "http://www.w3.org/2002/07/owl#Thing";
+
+	private final MyOntology ontology;
+	private int jobCount;
+	private volatile boolean shutdown;
+	private volatile ServerSocket server;
+
+	// Records the axioms a job adds, to remove them again if it fails. Only axioms that were new are reported, so one the ontology had before the
+	// job is never removed
+	private static class JobRecorder implements AxiomListener {
+		final List<OWLAxiom> added = new ArrayList<OWLAxiom>();
+
+		@Override
+		public void axiomAdded(OWLAxiom axiom) {
+			added.add(axiom);
+		}
+
+		@Override
+		public void axiomRemoved(OWLAxiom axiom) {
+		}
+	}
+
+	public BuildDaemon(MyOntology ontology) {
+		this.ontology = ontology;
+	}
+
+	public void warmUp() {
+		// Builds the type index before the first job needs it
+		ontology.countIndividuals(OWL_THING, false);
+	}
+
+	public synchronized List<String> runJob(String name, List<String[]> commands) {
+		List<String> reply = new ArrayList<String>();
+		Map<String, String> variables = new LinkedHashMap<String, String>();
+		Set<String> saves = new LinkedHashSet<String>();
+		List<File> written = new ArrayList<File>();
+		JobRecorder recorder = new JobRecorder();
+		long start = System.nanoTime();
+		OntologyEvents.Phase phase = OntologyEvents.Phase.begin("Job " + name, ontology);
+		Exception failure = null;
+		ontology.addAxiomListener(recorder);
+		try {
+			for (String[] command : commands)
+				execute(command, variables, saves);
+			for (String file : saves) {
+				File temp = new File(file + ".tmp");
+				written.add(temp);
+				ontology.saveOntology(temp.getPath());
+			}
+			// Every save succeeded, only now are the files replaced
+			for (String file : saves)
+				Files.move(new File(file + ".tmp").toPath(), new File(file).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (RuntimeException | IOException | OWLOntologyStorageException e) {
+			failure = e;
+		} finally {
+			ontology.removeAxiomListener(recorder);
+		}
+		if (failure != null) {
+			for (File temp : written)
+				temp.delete();
+			// Undone in reverse order, so nothing is left that depends on an axiom already removed
+			for (int i = recorder.added.size() - 1; i >= 0; i--)
+				ontology.removeAxiom(recorder.added.get(i));
+			phase.finish();
+			reply.add("error\t" + name + "\t" + String.valueOf(failure.getMessage()).replace('\t', ' ').replace('\n', ' ') + "\t" + recorder.added.size());
+			return reply;
+		}
+		phase.finish();
+		for (Map.Entry<String, String> variable : variables.entrySet())
+			reply.add(variable.getKey() + "\t" + variable.getValue());
+		reply.add("ok\t" + name + "\t" + recorder.added.size() + "\t" + (System.nanoTime() - start) / 1000000);
+		return reply;
+	}
+
+	private void execute(String[] command, Map<String, String> variables, Collection<String> saves) {
+		String[] args = new String[command.length - 1];
+		for (int i = 1; i < command.length; i++)
+			args[i - 1] = command[i].startsWith("$") && !(i == 3 && binds(command[0])) ? resolve(command[i], variables) : command[i];
+		switch (command[0]) {
+		case "subclass":
+			expect(command, 3, 4);
+			bind(command, 3, ontology.addSubClass(args[0], args[1]), variables);
+			break;
+		case "individual":
+			expect(command, 3, 4);
+			bind(command, 3, ontology.addIndividual(args[0], args[1]), variables);
+			break;
+		case "individuals":
+			if (command.length < 3)
+				throw new RuntimeException("Error: individuals needs a class and at least one label.");
+			ontology.addIndividuals(args[0], new ArrayList<String>(Arrays.asList(args).subList(1, args.length)));
+			break;
+		case "assert":
+			expect(command, 4, 4);
+			ontology.assertObjectPropertyAxiom(args[0], args[1], args[2]);
+			break;
+		case "label":
+			expect(command, 3, 3);
+			ontology.labelEntity(args[0], args[1], false);
+			break;
+		case "save":
+			expect(command, 2, 2);
+			saves.add(args[0]);
+			break;
+		default:
+			throw new RuntimeException("Error: Unknown command " + command[0] + ".");
+		}
+	}
+
+	private synchronized String nextJobName() {
+		return "job-" + (++jobCount);
+	}
+
+	private static boolean binds(String command) {
+		return command.equals("subclass") || command.equals("individual");
+	}
+
+	private static void expect(String[] command, int min, int max) {
+		if (command.length < min || command.length > max)
+			throw new RuntimeException("Error: Wrong number of fields for " + command[0] + ".");
+	}
+
+	private static String resolve(String argument, Map<String, String> variables) {
+		String value = variables.get(argument);
+		if (value == null)
+			throw new RuntimeException("Error: Unknown variable " + argument + ".");
+		return value;
+	}
+
+	private static void bind(String[] command, int index, String iri, Map<String, String> variables) {
+		if (command.length > index) {
+			if (!command[index].startsWith("$"))
+				throw new RuntimeException("Error: A variable name must start with $.");
+			variables.put(command[index], iri);
+		}
+	}
+
+	public boolean serve(BufferedReader in, PrintWriter out) throws IOException {
+		// Reads and runs jobs until the end of the input or "quit", returns whether "shutdown" was requested
+		List<String[]> commands = new ArrayList<String[]>();
+		String name = null;
+		String line;
+		while ((line = in.readLine()) != null) {
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#"))
+				continue;
+			if (trimmed.equals("quit"))
+				break;
+			if (trimmed.equals("shutdown")) {
+				shutdown = true;
+				break;
+			}
+			if (trimmed.equals("end")) {
+				for (String replyLine : runJob(name != null ? name : nextJobName(), commands))
+					out.println(replyLine);
+				out.flush();
+				commands = new ArrayList<String[]>();
+				name = null;
+				continue;
+			}
+			String[] fields = trimmed.split("\t");
+			for (int i = 0; i < fields.length; i++)
+				fields[i] = fields[i].trim();
+			if (fields[0].equals("job") && fields.length == 2)
+				name = fields[1];
+			else
+				commands.add(fields);
+		}
+		return shutdown;
+	}
+
+	public void listen(int port) throws IOException {
+		// One thread per connection, the jobs themselves still run one at a time
+		// "shutdown" closes the socket through the field, which ends the accept below
+		server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		try {
+			while (!shutdown) {
+				Socket socket = server.accept();
+				Thread session = new Thread(() -> {
+					try (Socket connection = socket;
+							BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+							PrintWriter out = new PrintWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+						if (serve(in, out))
+							server.close();
+					} catch (IOException e) {
+						System.err.println("Error: Session ended: " + e.getMessage());
+					}
+				}, "daemon-session");
+				session.setDaemon(true);
+				session.start();
+			}
+		} catch (IOException e) {
+			if (!shutdown)
+				throw e;
+		} finally {
+			server.close();
+		}
+	}
+
+	public static void main(String[] args) throws OWLOntologyCreationException, IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BuildDaemon <owl file> <IRI prefix> [--port=<port>]");
+			return;
+		}
+		int port = -1;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].startsWith("--port="))
+				port = Integer.parseInt(args[i].substring("--port=".length()));
+		}
+		long start = System.nanoTime();
+		MyOntology ontology = new MyOntology(args[0], args[1]);
+		BuildDaemon daemon = new BuildDaemon(ontology);
+		daemon.warmUp();
+		System.out.println("ready\t" + (System.nanoTime() - start) / 1000000);
+		System.out.flush();
+		if (port >= 0)
+			daemon.listen(port);
+		else
+			daemon.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), new PrintWriter(System.out, true));
+		ontology.close();
+	}
+}
\ No newline at end of file
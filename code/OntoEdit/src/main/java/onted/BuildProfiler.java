@@ -0,0 +1,162 @@
+/* Flight recording of a build, started by the --profile switch of the builder. The recording uses the JDK "profile" settings (method samples,
+ * allocation samples, GC) together with the events of OntologyEvents, and is written to a .jfr file which can be opened in JDK Mission Control.
+ * When the build ends, the recording is read back one event at a time and summarised in a text file next to it: the build phases by wall time, each with the axioms it
+ * added and the GC pauses and sampled allocations falling within it, followed by the ontology operations (minting, queries, ingestion, lookups, save
+ * and load) totalled by kind.
+ */
+
+package onted;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class BuildProfiler {
+	private final Recording recording;
+	private final Path recordingFile;
+
+	public BuildProfiler(String recordingFile) throws IOException {
+		this.recordingFile = Paths.get(recordingFile);
+		try {
+			recording = new Recording(Configuration.getConfiguration("profile"));
+		} catch (ParseException e) {
+			throw new IOException("Error: Could not read the JFR profile settings.", e);
+		}
+		recording.setName("ontology build");
+		recording.setDestination(this.recordingFile);
+		recording.start();
+	}
+
+	public void stop(int top) throws IOException {
+		// Stopping writes the recording to its destination, which is then read back for the summary (IndiLegalOnt.jfr is summarised in
+		// IndiLegalOnt.summary.txt)
+		recording.stop();
+		recording.close();
+		List<String> lines = summarise(recordingFile, top);
+		String summaryFile = recordingFile.toString().replaceFirst("\\.jfr$", "") + ".summary.txt";
+		Files.write(Paths.get(summaryFile), lines);
+		for (String line : lines)
+			System.out.println(line);
+	}
+
+	private static class Totals {
+		long count;
+		long nanos;
+		long entities;
+		long gcPauseNanos;
+		long allocatedBytes;
+	}
+
+	private static class Sample {
+		final Instant time;
+		final long value;
+
+		Sample(Instant time, long value) {
+			this.time = time;
+			this.value = value;
+		}
+	}
+
+	private static List<String> summarise(Path recordingFile, int top) throws IOException {
+		// The recording is streamed, only the phases and the time and size of every GC pause and allocation sample are kept
+		List<RecordedEvent> phases = new ArrayList<RecordedEvent>();
+		List<Sample> collections = new ArrayList<Sample>();
+		List<Sample> allocations = new ArrayList<Sample>();
+		Map<String, Totals> operations = new LinkedHashMap<String, Totals>();
+		try (RecordingFile recording = new RecordingFile(recordingFile)) {
+			while (recording.hasMoreEvents())
+				summariseEvent(recording.readEvent(), phases, collections, allocations, operations);
+		}
+		return summarise(phases, collections, allocations, operations, top);
+	}
+
+	private static void summariseEvent(RecordedEvent event, List<RecordedEvent> phases, List<Sample> collections, List<Sample> allocations,
+			Map<String, Totals> operations) {
+		String name = event.getEventType().getName();
+		if (name.equals(OntologyEvents.PREFIX + "Phase"))
+			phases.add(event);
+		else if (name.equals("jdk.GarbageCollection"))
+			collections.add(new Sample(event.getStartTime(), event.getDuration("sumOfPauses").toNanos()));
+		else if (name.equals("jdk.ObjectAllocationSample"))
+			allocations.add(new Sample(event.getStartTime(), event.getLong("weight")));
+		else if (name.startsWith(OntologyEvents.PREFIX)) {
+			String kind = event.getEventType().getLabel();
+			if (event.hasField("kind"))
+				kind += " (" + event.getString("kind") + ")";
+			else if (event.hasField("operation"))
+				kind += " (" + event.getString("operation") + ")";
+			Totals totals = operations.computeIfAbsent(kind, key -> new Totals());
+			totals.count++;
+			totals.nanos += event.getDuration().toNanos();
+			totals.entities += event.getLong("entities");
+		}
+	}
+
+	private static List<String> summarise(List<RecordedEvent> phases, List<Sample> collections, List<Sample> allocations, Map<String, Totals> operations,
+			int top) {
+		// Phases of the same name (a step repeated in a loop) are added up
+		Map<String, Totals> phaseTotals = new LinkedHashMap<String, Totals>();
+		long buildNanos = 0;
+		for (RecordedEvent phase : phases) {
+			Totals totals = phaseTotals.computeIfAbsent(phase.getString("name"), key -> new Totals());
+			totals.count++;
+			totals.nanos += phase.getDuration().toNanos();
+			totals.entities += phase.getLong("entities");
+			for (Sample collection : collections) {
+				if (within(collection.time, phase))
+					totals.gcPauseNanos += collection.value;
+			}
+			for (Sample allocation : allocations) {
+				if (within(allocation.time, phase))
+					totals.allocatedBytes += allocation.value;
+			}
+			buildNanos += phase.getDuration().toNanos();
+		}
+
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format("Top build phases by wall time (%d ms in all phases)", millis(buildNanos)));
+		lines.add(String.format("%-40s %10s %6s %10s %12s %14s", "phase", "ms", "%", "axioms", "GC pause ms", "allocated MB"));
+		List<Map.Entry<String, Totals>> sortedPhases = sortByTime(phaseTotals);
+		for (Map.Entry<String, Totals> phase : sortedPhases.subList(0, Math.min(top, sortedPhases.size()))) {
+			Totals totals = phase.getValue();
+			lines.add(String.format("%-40s %10d %6.1f %10d %12d %14.1f", phase.getKey(), millis(totals.nanos),
+					buildNanos == 0 ? 0.0 : 100.0 * totals.nanos / buildNanos, totals.entities, millis(totals.gcPauseNanos),
+					totals.allocatedBytes / (1024.0 * 1024.0)));
+		}
+		lines.add("");
+		lines.add("Ontology operations by total time");
+		lines.add(String.format("%-40s %10s %10s %12s", "operation", "count", "ms", "entities"));
+		for (Map.Entry<String, Totals> operation : sortByTime(operations)) {
+			Totals totals = operation.getValue();
+			lines.add(String.format("%-40s %10d %10d %12d", operation.getKey(), totals.count, millis(totals.nanos), totals.entities));
+		}
+		return lines;
+	}
+
+	private static boolean within(Instant time, RecordedEvent phase) {
+		return !time.isBefore(phase.getStartTime()) && !time.isAfter(phase.getEndTime());
+	}
+
+	private static List<Map.Entry<String, Totals>> sortByTime(Map<String, Totals> totals) {
+		List<Map.Entry<String, Totals>> sorted = new ArrayList<Map.Entry<String, Totals>>(totals.entrySet());
+		sorted.sort((a, b) -> Long.compare(b.getValue().nanos, a.getValue().nanos));
+		return sorted;
+	}
+
+	private static long millis(long nanos) {
+		return Duration.ofNanos(nanos).toMillis();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+/* One change to the ontology as published by ChangeFeed, in terms a downstream index can apply without the OWL API: the kind of change, the subject
+ * IRI, a property (the entity type for ENTITY_CREATED, the annotation, object or data property otherwise, unused for TYPE_SET and SUBCLASS_ADDED) and
+ * a value (the label, the class, the superclass, the object IRI or the literal). A removal of the axiom (a rolled back job, for instance) publishes
+ * the same event with retracted set. Offsets number the events of a feed from 1, and go on across runs when the feed has a log. MyOntology declares
+ * every class, individual and property it creates, so each new entity is published as ENTITY_CREATED ahead of its other changes.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+public class ChangeEvent {
+	public enum Kind {
+		ENTITY_CREATED, LABEL_ADDED, ANNOTATION_ADDED, TYPE_SET, SUBCLASS_ADDED, RELATION_ASSERTED
+	}
+
+	public final long offset;
+	public final Kind kind;
+	public final boolean retracted;
+	public final String subject;
+	public final String property;
+	public final String value;
+
+	public ChangeEvent(long offset, Kind kind, boolean retracted, String subject, String property, String value) {
+		this.offset = offset;
+		this.kind = kind;
+		this.retracted = retracted;
+		this.subject = subject;
+		this.property = property;
+		this.value = value;
+	}
+
+	static ChangeEvent of(long offset, OWLAxiom axiom, boolean retracted) {
+		// Null for the axioms that are none of the kinds (restrictions, domains and ranges, ...)
+		if (axiom instanceof OWLDeclarationAxiom) {
+			OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+			return new ChangeEvent(offset, Kind.ENTITY_CREATED, retracted, entity.getIRI().toString(), entity.getEntityType().getName(), "");
+		}
+		if (axiom instanceof OWLAnnotationAssertionAxiom) {
+			OWLAnnotationAssertionAxiom assertion = (OWLAnnotationAssertionAxiom) axiom;
+			if (!(assertion.getSubject() instanceof IRI))
+				return null;
+			String value = assertion.getValue() instanceof OWLLiteral ? ((OWLLiteral) assertion.getValue()).getLiteral() : assertion.getValue().toString();
+			boolean label = assertion.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_LABEL.getIRI());
+			return new ChangeEvent(offset, label ? Kind.LABEL_ADDED : Kind.ANNOTATION_ADDED, retracted, assertion.getSubject().toString(),
+					assertion.getProperty().getIRI().toString(), value);
+		}
+		if (axiom instanceof OWLClassAssertionAxiom) {
+			OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+			if (assertion.getClassExpression().isAnonymous() || !assertion.getIndividual().isNamed())
+				return null;
+			return new ChangeEvent(offset, Kind.TYPE_SET, retracted, assertion.getIndividual().asOWLNamedIndividual().getIRI().toString(), "",
+					assertion.getClassExpression().asOWLClass().getIRI().toString());
+		}
+		if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			if (subClassOf.getSubClass().isAnonymous() || subClassOf.getSuperClass().isAnonymous())
+				return null;
+			return new ChangeEvent(offset, Kind.SUBCLASS_ADDED, retracted, subClassOf.getSubClass().asOWLClass().getIRI().toString(), "",
+					subClassOf.getSuperClass().asOWLClass().getIRI().toString());
+		}
+		if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+			OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+			if (assertion.getProperty().isAnonymous() || !assertion.getSubject().isNamed() || !assertion.getObject().isNamed())
+				return null;
+			return new ChangeEvent(offset, Kind.RELATION_ASSERTED, retracted, assertion.getSubject().asOWLNamedIndividual().getIRI().toString(),
+					assertion.getProperty().asOWLObjectProperty().getIRI().toString(), assertion.getObject().asOWLNamedIndividual().getIRI().toString());
+		}
+		if (axiom instanceof OWLDataPropertyAssertionAxiom) {
+			OWLDataPropertyAssertionAxiom assertion = (OWLDataPropertyAssertionAxiom) axiom;
+			if (!assertion.getSubject().isNamed())
+				return null;
+			return new ChangeEvent(offset, Kind.RELATION_ASSERTED, retracted, assertion.getSubject().asOWLNamedIndividual().getIRI().toString(),
+					assertion.getProperty().asOWLDataProperty().getIRI().toString(), assertion.getObject().getLiteral());
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return offset + (retracted ? " -" : " ") + kind + " " + subject + (property.isEmpty() ? "" : " " + property) + (value.isEmpty() ? "" : " " + value);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,343 @@
+/* Feed of the changes made to a MyOntology, for the indexes kept outside of it (search, caches, exported graphs) to apply as deltas. The axioms
+ * added and removed are turned into ChangeEvents (those that are none of the kinds of ChangeEvent are left out), numbered with offsets, and
+ * published in batches of up to batchSize events, a batch being sent at the latest maxDelayMillis after its first event. The feed is a
+ * java.util.concurrent.Flow publisher: every subscriber gets the batches as it requests them, and when a subscriber lets bufferSize batches pile up
+ * the change that completes the next batch waits, so a slow consumer slows the build down instead of losing events. With a ChangeLog, every event is
+ * appended to it before being published, and subscribe(subscriber, fromOffset) first replays the log from that offset and then goes on with the
+ * live batches, without a gap or a duplicate. A subscriber sees the changes made from the moment it subscribes.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+public class ChangeFeed implements AxiomListener, Flow.Publisher<List<ChangeEvent>>, Closeable {
+	private final ChangeLog log;
+	private final int batchSize;
+	private final long maxDelayMillis;
+	private final ExecutorService deliveryExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "change-feed");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "change-feed-flush");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final SubmissionPublisher<List<ChangeEvent>> publisher;
+	private List<ChangeEvent> pending = new ArrayList<ChangeEvent>();
+	private ScheduledFuture<?> scheduledFlush;
+	private long lastOffset;
+	private boolean closed;
+
+	public ChangeFeed(ChangeLog log, int batchSize, long maxDelayMillis, int bufferSize) {
+		if (batchSize < 1 || bufferSize < 1)
+			throw new RuntimeException("Error: The batch and buffer sizes must be at least 1.");
+		this.log = log;
+		this.batchSize = batchSize;
+		this.maxDelayMillis = maxDelayMillis;
+		this.publisher = new SubmissionPublisher<List<ChangeEvent>>(deliveryExecutor, bufferSize);
+		this.lastOffset = log != null ? log.getLastOffset() : 0;
+	}
+
+	@Override
+	public void axiomAdded(OWLAxiom axiom) {
+		record(axiom, false);
+	}
+
+	@Override
+	public void axiomRemoved(OWLAxiom axiom) {
+		record(axiom, true);
+	}
+
+	private synchronized void record(OWLAxiom axiom, boolean retracted) {
+		if (closed)
+			return;
+		ChangeEvent event = ChangeEvent.of(lastOffset + 1, axiom, retracted);
+		if (event == null)
+			return;
+		if (log != null) {
+			try {
+				log.append(event);
+			} catch (IOException e) {
+				throw new RuntimeException("Error: Could not write the change to the change log.", e);
+			}
+		}
+		lastOffset = event.offset;
+		pending.add(event);
+		if (pending.size() >= batchSize)
+			flush();
+		else if (pending.size() == 1 && maxDelayMillis > 0)
+			scheduledFlush = flushExecutor.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void flush() {
+		// Publishes the events not yet sent; blocks while a subscriber's buffer is full
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (pending.isEmpty())
+			return;
+		if (log != null) {
+			try {
+				log.flush();
+			} catch (IOException e) {
+				throw new RuntimeException("Error: Could not write the change log.", e);
+			}
+		}
+		List<ChangeEvent> batch = pending;
+		pending = new ArrayList<ChangeEvent>();
+		publisher.submit(batch);
+	}
+
+	public synchronized long getLastOffset() {
+		return lastOffset;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super List<ChangeEvent>> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	public void subscribe(Flow.Subscriber<? super List<ChangeEvent>> subscriber, long fromOffset) {
+		// The events from fromOffset on: those already published are read back from the log, the later ones come live
+		if (log == null)
+			throw new RuntimeException("Error: Resuming from an offset needs a change log.");
+		ResumingSubscription subscription;
+		synchronized (this) {
+			flush();
+			ChangeLog.Cursor replay;
+			try {
+				replay = log.read(fromOffset);
+			} catch (IOException e) {
+				throw new RuntimeException("Error: Could not read the change log.", e);
+			}
+			subscription = new ResumingSubscription(subscriber, replay, lastOffset, batchSize);
+			publisher.subscribe(subscription);
+		}
+		subscriber.onSubscribe(subscription);
+	}
+
+	// Hands the replayed batches to the subscriber as it requests them, then passes its requests on to the live subscription
+	private static class ResumingSubscription implements Flow.Subscription, Flow.Subscriber<List<ChangeEvent>> {
+		private final Flow.Subscriber<? super List<ChangeEvent>> downstream;
+		private final long replayedUpTo;
+		private final int batchSize;
+		private ChangeLog.Cursor replay;
+		private Flow.Subscription upstream;
+		private long demand;
+		private boolean draining;
+		private boolean cancelled;
+		// The live subscription ended while the log was being replayed: null, or the error (a completion is a Throwable of its own)
+		private Throwable terminal;
+		private static final Throwable COMPLETE = new Throwable();
+
+		ResumingSubscription(Flow.Subscriber<? super List<ChangeEvent>> downstream, ChangeLog.Cursor replay, long replayedUpTo, int batchSize) {
+			this.downstream = downstream;
+			this.replay = replay;
+			this.replayedUpTo = replayedUpTo;
+			this.batchSize = batchSize;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				cancel();
+				downstream.onError(new IllegalArgumentException("Non-positive request " + n));
+				return;
+			}
+			synchronized (this) {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+				if (draining)
+					return;
+				draining = true;
+			}
+			drain();
+		}
+
+		private void drain() {
+			// Only one thread drains at a time; requests made meanwhile (from onNext, for instance) are served by the same loop
+			while (true) {
+				ChangeLog.Cursor cursor;
+				Flow.Subscription live;
+				long requested;
+				Throwable ended = null;
+				synchronized (this) {
+					cursor = replay;
+					live = upstream;
+					requested = demand;
+					if (cursor == null && terminal != null) {
+						ended = terminal;
+						terminal = null;
+						cancelled = true;
+					}
+					if (ended == null && (cancelled || requested == 0 || (cursor == null && live == null))) {
+						draining = false;
+						return;
+					}
+				}
+				if (ended != null) {
+					if (ended == COMPLETE)
+						downstream.onComplete();
+					else
+						downstream.onError(ended);
+					continue;
+				}
+				if (cursor != null) {
+					List<ChangeEvent> batch;
+					try {
+						batch = cursor.next(batchSize);
+					} catch (IOException e) {
+						closeReplay();
+						cancel();
+						downstream.onError(e);
+						return;
+					}
+					if (batch.isEmpty()) {
+						closeReplay();
+						continue;
+					}
+					synchronized (this) {
+						demand--;
+					}
+					downstream.onNext(batch);
+					continue;
+				}
+				// Replay done: the rest of the demand goes to the live subscription
+				synchronized (this) {
+					demand = 0;
+				}
+				live.request(requested);
+			}
+		}
+
+		private void closeReplay() {
+			ChangeLog.Cursor cursor;
+			synchronized (this) {
+				cursor = replay;
+				replay = null;
+			}
+			if (cursor != null) {
+				try {
+					cursor.close();
+				} catch (IOException e) {
+					// Nothing more is read from it
+				}
+			}
+		}
+
+		@Override
+		public void cancel() {
+			Flow.Subscription live;
+			synchronized (this) {
+				cancelled = true;
+				live = upstream;
+			}
+			if (live != null)
+				live.cancel();
+			boolean idle;
+			synchronized (this) {
+				idle = !draining;
+			}
+			if (idle)
+				closeReplay();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			boolean drainNow;
+			synchronized (this) {
+				upstream = subscription;
+				if (cancelled) {
+					subscription.cancel();
+					return;
+				}
+				drainNow = !draining && replay == null && demand > 0;
+				if (drainNow)
+					draining = true;
+			}
+			if (drainNow)
+				drain();
+		}
+
+		@Override
+		public void onNext(List<ChangeEvent> batch) {
+			// Events up to the replayed offset were sent from the log already
+			List<ChangeEvent> fresh = new ArrayList<ChangeEvent>(batch.size());
+			for (ChangeEvent event : batch) {
+				if (event.offset > replayedUpTo)
+					fresh.add(event);
+			}
+			if (!fresh.isEmpty())
+				downstream.onNext(fresh);
+			else
+				upstream.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			end(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			end(COMPLETE);
+		}
+
+		private void end(Throwable ended) {
+			// Passed on at once unless the log is still being replayed or requests forwarded, the drain loop then passes it on when done
+			boolean drainNow = false;
+			synchronized (this) {
+				if (cancelled)
+					return;
+				if (replay == null && !draining) {
+					cancelled = true;
+				}
+				else {
+					terminal = ended;
+					if (draining)
+						return;
+					draining = true;
+					drainNow = true;
+				}
+			}
+			if (drainNow) {
+				drain();
+				return;
+			}
+			if (ended == COMPLETE)
+				downstream.onComplete();
+			else
+				downstream.onError(ended);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The pending events are published, the subscribers complete once they have consumed them
+		synchronized (this) {
+			if (closed)
+				return;
+			flush();
+			closed = true;
+		}
+		flushExecutor.shutdownNow();
+		publisher.close();
+		if (log != null)
+			log.close();
+	}
+}
\ No newline at end of file
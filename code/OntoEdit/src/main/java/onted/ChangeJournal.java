@@ -0,0 +1,504 @@
+/* Write-ahead journal of the changes applied to a MyOntology. Every added or removed axiom and import is appended as a small binary record
+ * (length, CRC32, sequence number, operation, AxiomCodec payload) to the current journal segment. Appends only fill an in-memory buffer; a background
+ * thread writes the buffer and fsyncs it, so many records share one fsync (group commit). Callers that need a change on disk call sync().
+ * The journal keeps the net changes against the ontology it was started on (axioms and imports added, and those of the base removed), so a
+ * checkpoint only holds what this build changed, not the base it was loaded from. A checkpoint copies those changes in the calling thread, switches
+ * to a fresh journal segment and writes them on a background thread. Once the checkpoint is safely renamed into place, the segments it covers are
+ * deleted. On restart, recover() applies the last checkpoint (if any) to the freshly loaded base and replays the remaining segments on top of it; a
+ * record torn by a crash fails its CRC check and the segment is truncated there. Once the ontology has been saved for good, retire() marks the
+ * journal as retired before deleting it, so that only an interrupted run leaves changes to recover, and a crash while deleting leaves nothing.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class ChangeJournal implements Closeable {
+	private static final int SEGMENT_MAGIC = 0x4F454A31;
+	private static final int CHECKPOINT_MAGIC = 0x4F454332;
+	private static final String CHECKPOINT_FILE = "checkpoint.bin";
+	private static final String RETIRED_FILE = "retired";
+	private static final int GROUP_BYTES = 1 << 20;
+	private static final int MAX_BUFFERED_BYTES = 1 << 22;
+
+	private static final byte ADD_AXIOM = 1;
+	private static final byte REMOVE_AXIOM = 2;
+	private static final byte ADD_IMPORT = 3;
+	private static final byte REMOVE_IMPORT = 4;
+
+	private final File directory;
+	private final OWLDataFactory factory;
+	private final long syncIntervalMillis;
+	private final long checkpointBytes;
+	// Guards the buffer and counters; channelLock orders writes to the segment files and is always taken first
+	private final Object lock = new Object();
+	private final Object channelLock = new Object();
+	private final Thread syncThread;
+	private final ExecutorService checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-checkpoint");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private FileChannel channel;
+	private AxiomCodec codec;
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+	private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+	private long segmentBytes;
+	private long lastSequence;
+	private long durableSequence;
+	private boolean syncRequested;
+	private IOException syncFailure;
+	private Future<?> pendingCheckpoint;
+	private boolean closed;
+	// The net changes against the base, guarded by lock
+	private final Set<OWLAxiom> addedAxioms = new LinkedHashSet<OWLAxiom>();
+	private final Set<OWLAxiom> removedAxioms = new LinkedHashSet<OWLAxiom>();
+	private final Set<IRI> addedImports = new LinkedHashSet<IRI>();
+	private final Set<IRI> removedImports = new LinkedHashSet<IRI>();
+
+	public ChangeJournal(String journalDirectory, OWLDataFactory factory, long syncIntervalMillis, long checkpointBytes) throws IOException {
+		this.directory = new File(journalDirectory);
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Error: Could not create journal directory " + journalDirectory);
+		}
+		this.factory = factory;
+		this.syncIntervalMillis = syncIntervalMillis;
+		this.checkpointBytes = checkpointBytes;
+		this.syncThread = new Thread(this::syncLoop, "journal-sync");
+		this.syncThread.setDaemon(true);
+	}
+
+	public long recover(OWLOntologyManager manager, OWLOntology ontology) throws IOException {
+		// A journal retired by a run that crashed while deleting it has nothing left to recover
+		if (new File(directory, RETIRED_FILE).exists())
+			deleteFiles();
+
+		// Start from the last checkpoint, if one was completed
+		long checkpointSequence = 0;
+		File checkpoint = new File(directory, CHECKPOINT_FILE);
+		if (checkpoint.exists()) {
+			checkpointSequence = loadCheckpoint(checkpoint, manager, ontology);
+		}
+		lastSequence = checkpointSequence;
+
+		// Replay the segments in order, only the last one may end with a torn record
+		List<File> segments = listSegments();
+		AxiomCodec lastDecoder = null;
+		long validLength = 0;
+		for (File segment : segments) {
+			AxiomCodec decoder = new AxiomCodec(factory);
+			validLength = replaySegment(segment, decoder, checkpointSequence, manager, ontology);
+			lastDecoder = decoder;
+		}
+
+		// Continue appending to the last segment, or start the first one
+		if (segments.isEmpty() || validLength < 4) {
+			if (!segments.isEmpty())
+				Files.delete(segments.get(segments.size() - 1).toPath());
+			openSegment(lastSequence + 1);
+		} else {
+			File last = segments.get(segments.size() - 1);
+			RandomAccessFile file = new RandomAccessFile(last, "rw");
+			file.setLength(validLength);
+			channel = file.getChannel();
+			channel.position(validLength);
+			codec = new AxiomCodec(factory);
+			codec.continueFrom(lastDecoder);
+			segmentBytes = validLength;
+		}
+		durableSequence = lastSequence;
+		syncThread.start();
+		return lastSequence;
+	}
+
+	private List<File> listSegments() {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("journal-") && name.endsWith(".log"));
+		List<File> segments = new ArrayList<File>(Arrays.asList(files == null ? new File[0] : files));
+		segments.sort((a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+		return segments;
+	}
+
+	private static long segmentStart(File segment) {
+		String name = segment.getName();
+		return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+	}
+
+	private long replaySegment(File segment, AxiomCodec decoder, long skipUpTo, OWLOntologyManager manager, OWLOntology ontology) throws IOException {
+		long validLength = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+			try {
+				if (in.readInt() != SEGMENT_MAGIC)
+					throw new IOException("Error: " + segment + " is not a journal segment.");
+			} catch (EOFException e) {
+				// Crashed right after the segment was created
+				return 0;
+			}
+			validLength = 4;
+			CRC32 crc = new CRC32();
+			while (true) {
+				byte[] body;
+				try {
+					int length = in.readInt();
+					int checksum = in.readInt();
+					if (length < 9 || length > MAX_BUFFERED_BYTES)
+						break;
+					body = new byte[length];
+					in.readFully(body);
+					crc.reset();
+					crc.update(body, 0, length);
+					if ((int) crc.getValue() != checksum)
+						break;
+				} catch (EOFException e) {
+					break;
+				}
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+				long sequence = record.readLong();
+				byte operation = record.readByte();
+				// Records must always be decoded, so that the IRI table of the segment stays in step
+				if (operation == ADD_AXIOM || operation == REMOVE_AXIOM) {
+					OWLAxiom axiom = decoder.readAxiom(record);
+					if (sequence > skipUpTo) {
+						if (operation == ADD_AXIOM)
+							manager.addAxiom(ontology, axiom);
+						else
+							ontology.removeAxiom(axiom);
+						track(axiom, operation == ADD_AXIOM, addedAxioms, removedAxioms);
+					}
+				} else {
+					IRI importIRI = decoder.readIRI(record);
+					if (sequence > skipUpTo) {
+						OWLImportsDeclaration declaration = factory.getOWLImportsDeclaration(importIRI);
+						manager.applyChange(operation == ADD_IMPORT ? new AddImport(ontology, declaration) : new RemoveImport(ontology, declaration));
+						track(importIRI, operation == ADD_IMPORT, addedImports, removedImports);
+					}
+				}
+				lastSequence = Math.max(lastSequence, sequence);
+				validLength += 8 + body.length;
+			}
+		}
+		return validLength;
+	}
+
+	private void openSegment(long startSequence) throws IOException {
+		File segment = new File(directory, "journal-" + startSequence + ".log");
+		channel = new RandomAccessFile(segment, "rw").getChannel();
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(4);
+		header.putInt(SEGMENT_MAGIC).flip();
+		channel.write(header);
+		channel.force(true);
+		codec = new AxiomCodec(factory);
+		segmentBytes = 4;
+	}
+
+	public void appendAxiom(OWLAxiom axiom, boolean added) throws IOException {
+		synchronized (lock) {
+			beginRecord(added ? ADD_AXIOM : REMOVE_AXIOM);
+			codec.writeAxiom(recordOut, axiom);
+			endRecord();
+			track(axiom, added, addedAxioms, removedAxioms);
+		}
+	}
+
+	public void appendImport(IRI importIRI, boolean added) throws IOException {
+		synchronized (lock) {
+			beginRecord(added ? ADD_IMPORT : REMOVE_IMPORT);
+			codec.writeIRI(recordOut, importIRI);
+			endRecord();
+			track(importIRI, added, addedImports, removedImports);
+		}
+	}
+
+	private static <T> void track(T item, boolean added, Set<T> addedItems, Set<T> removedItems) {
+		// Only real changes are journaled, so adding back what was removed (or the reverse) cancels out
+		if (added) {
+			if (!removedItems.remove(item))
+				addedItems.add(item);
+		}
+		else if (!addedItems.remove(item)) {
+			removedItems.add(item);
+		}
+	}
+
+	private void beginRecord(byte operation) throws IOException {
+		if (closed)
+			throw new IOException("Error: The journal is closed.");
+		if (syncFailure != null)
+			throw new IOException("Error: The journal could not be written to disk.", syncFailure);
+		// Backpressure, the sync thread has fallen behind
+		while (buffer.size() > MAX_BUFFERED_BYTES && syncFailure == null) {
+			syncRequested = true;
+			lock.notifyAll();
+			try {
+				lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Error: Interrupted while waiting for the journal.", e);
+			}
+		}
+		recordBytes.reset();
+		recordOut.writeLong(lastSequence + 1);
+		recordOut.writeByte(operation);
+	}
+
+	private void endRecord() throws IOException {
+		recordOut.flush();
+		byte[] body = recordBytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(body, 0, body.length);
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(body.length);
+		out.writeInt((int) crc.getValue());
+		out.write(body);
+		lastSequence++;
+		segmentBytes += 8 + body.length;
+		// Wake the sync thread only when it is idle, an open group keeps collecting records until its deadline
+		if (buffer.size() == 8 + body.length)
+			lock.notifyAll();
+	}
+
+	private void syncLoop() {
+		while (true) {
+			synchronized (lock) {
+				try {
+					while (buffer.size() == 0 && !closed) {
+						lock.wait();
+					}
+					if (buffer.size() == 0)
+						return;
+					// Let more records join this group before paying for the fsync
+					long deadline = System.currentTimeMillis() + syncIntervalMillis;
+					long remaining;
+					while (!closed && !syncRequested && buffer.size() < GROUP_BYTES && (remaining = deadline - System.currentTimeMillis()) > 0) {
+						lock.wait(remaining);
+					}
+					syncRequested = false;
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			try {
+				synchronized (channelLock) {
+					writeBuffer();
+				}
+			} catch (IOException e) {
+				synchronized (lock) {
+					syncFailure = e;
+					lock.notifyAll();
+				}
+				return;
+			}
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		// Called with channelLock held, appends can continue while the group is written and forced
+		byte[] bytes;
+		long sequence;
+		synchronized (lock) {
+			bytes = buffer.toByteArray();
+			sequence = lastSequence;
+			buffer = new ByteArrayOutputStream();
+			lock.notifyAll();
+		}
+		if (bytes.length > 0) {
+			ByteBuffer data = ByteBuffer.wrap(bytes);
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+			channel.force(false);
+		}
+		synchronized (lock) {
+			durableSequence = Math.max(durableSequence, sequence);
+			lock.notifyAll();
+		}
+	}
+
+	public void sync() throws IOException {
+		synchronized (lock) {
+			long target = lastSequence;
+			syncRequested = true;
+			lock.notifyAll();
+			while (durableSequence < target) {
+				if (syncFailure != null)
+					throw new IOException("Error: The journal could not be written to disk.", syncFailure);
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Error: Interrupted while waiting for the journal.", e);
+				}
+			}
+		}
+	}
+
+	public long getLastSequence() {
+		synchronized (lock) {
+			return lastSequence;
+		}
+	}
+
+	public boolean shouldCheckpoint() {
+		synchronized (lock) {
+			return segmentBytes > checkpointBytes && (pendingCheckpoint == null || pendingCheckpoint.isDone());
+		}
+	}
+
+	public Future<?> checkpoint() throws IOException {
+		final long sequence;
+		synchronized (channelLock) {
+			synchronized (lock) {
+				sequence = lastSequence;
+				// The changes are copied under the lock, so they match the journal position exactly; their size is that of the build, not the base
+				final List<IRI> imports = new ArrayList<IRI>(addedImports);
+				final List<IRI> removed = new ArrayList<IRI>(removedImports);
+				final List<OWLAxiom> axioms = new ArrayList<OWLAxiom>(addedAxioms);
+				final List<OWLAxiom> removedFromBase = new ArrayList<OWLAxiom>(removedAxioms);
+				// Finish the current segment and switch to a fresh one before any further change is appended
+				writeBuffer();
+				channel.close();
+				openSegment(sequence + 1);
+				pendingCheckpoint = checkpointExecutor.submit(() -> {
+					writeCheckpoint(imports, removed, axioms, removedFromBase, sequence);
+					return null;
+				});
+				return pendingCheckpoint;
+			}
+		}
+	}
+
+	private void writeCheckpoint(List<IRI> imports, List<IRI> removedImports, List<OWLAxiom> axioms, List<OWLAxiom> removedAxioms, long sequence)
+			throws IOException {
+		File tmpFile = new File(directory, CHECKPOINT_FILE + ".tmp");
+		AxiomCodec encoder = new AxiomCodec(factory);
+		try (FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeLong(sequence);
+			for (List<IRI> importIRIs : Arrays.asList(imports, removedImports)) {
+				AxiomCodec.writeVarInt(out, importIRIs.size());
+				for (IRI importIRI : importIRIs) {
+					encoder.writeIRI(out, importIRI);
+				}
+			}
+			for (List<OWLAxiom> changed : Arrays.asList(axioms, removedAxioms)) {
+				AxiomCodec.writeVarInt(out, changed.size());
+				for (OWLAxiom axiom : changed) {
+					encoder.writeAxiom(out, axiom);
+				}
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		Files.move(tmpFile.toPath(), new File(directory, CHECKPOINT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		// Everything up to the checkpoint is now covered, drop the old segments
+		for (File segment : listSegments()) {
+			if (segmentStart(segment) <= sequence)
+				Files.deleteIfExists(segment.toPath());
+		}
+	}
+
+	private long loadCheckpoint(File checkpoint, OWLOntologyManager manager, OWLOntology ontology) throws IOException {
+		AxiomCodec decoder = new AxiomCodec(factory);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint), 1 << 16))) {
+			if (in.readInt() != CHECKPOINT_MAGIC)
+				throw new IOException("Error: " + checkpoint + " is not a journal checkpoint.");
+			long sequence = in.readLong();
+			// The checkpoint holds the changes of the build, applied on top of the base the ontology was loaded from
+			for (Set<IRI> importIRIs : Arrays.asList(addedImports, removedImports)) {
+				int importCount = AxiomCodec.readVarInt(in);
+				for (int i = 0; i < importCount; i++) {
+					importIRIs.add(decoder.readIRI(in));
+				}
+			}
+			for (Set<OWLAxiom> changed : Arrays.asList(addedAxioms, removedAxioms)) {
+				int axiomCount = AxiomCodec.readVarInt(in);
+				for (int i = 0; i < axiomCount; i++) {
+					changed.add(decoder.readAxiom(in));
+				}
+			}
+			for (IRI importIRI : addedImports) {
+				manager.applyChange(new AddImport(ontology, factory.getOWLImportsDeclaration(importIRI)));
+			}
+			for (IRI importIRI : removedImports) {
+				manager.applyChange(new RemoveImport(ontology, factory.getOWLImportsDeclaration(importIRI)));
+			}
+			ontology.removeAxioms(removedAxioms);
+			ontology.addAxioms(addedAxioms);
+			return sequence;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		sync();
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			syncThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		checkpointExecutor.shutdown();
+		try {
+			checkpointExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (channelLock) {
+			channel.close();
+		}
+	}
+
+	public void retire() throws IOException {
+		// The marker goes first: a crash while the files are deleted leaves a retired journal, which recover() finishes deleting
+		close();
+		File marker = new File(directory, RETIRED_FILE);
+		try (FileOutputStream out = new FileOutputStream(marker)) {
+			out.getFD().sync();
+		}
+		deleteFiles();
+	}
+
+	private void deleteFiles() throws IOException {
+		// The checkpoint before the segments, and the marker last
+		Files.deleteIfExists(new File(directory, CHECKPOINT_FILE).toPath());
+		Files.deleteIfExists(new File(directory, CHECKPOINT_FILE + ".tmp").toPath());
+		for (File segment : listSegments())
+			Files.delete(segment.toPath());
+		Files.deleteIfExists(new File(directory, RETIRED_FILE).toPath());
+	}
+}
\ No newline at end of file
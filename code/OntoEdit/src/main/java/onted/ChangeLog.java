@@ -0,0 +1,268 @@
+/* Append-only log of the ChangeEvents of a feed, so that a consumer which was stopped (or runs in another process, like the search service) can
+ * resume from the offset it last applied instead of reindexing the whole ontology. Events are appended as records (length, CRC32, offset, kind,
+ * retracted flag, subject, property, value) to segments named changes-<first offset>.log, a new segment being started every 64 MB; a reader
+ * looks for the segment holding its offset by name and scans from there. Records are written through a buffer which flush() pushes to the file,
+ * they are not fsynced: the log feeds indexes that can be rebuilt, the ontology itself is made durable by ChangeJournal. A record torn by a crash
+ * fails its CRC check, and the log is truncated there when it is next opened. Offsets go on from the last record of the log.
+ */
+
+package onted;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class ChangeLog implements Closeable {
+	private static final int SEGMENT_MAGIC = 0x4F45434C;
+	private static final long SEGMENT_BYTES = 64L << 20;
+	private static final int MAX_RECORD_BYTES = 1 << 24;
+
+	private final File directory;
+	private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+	private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+	private final CRC32 crc = new CRC32();
+	private DataOutputStream out;
+	private long segmentBytes;
+	private long lastOffset;
+
+	public ChangeLog(String logDirectory) throws IOException {
+		directory = new File(logDirectory);
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Error: Could not create change log directory " + logDirectory);
+		}
+		// Continue the last segment after its last complete record, or start the first one
+		List<File> segments = listSegments(directory);
+		if (segments.isEmpty()) {
+			openSegment(1);
+			return;
+		}
+		File last = segments.get(segments.size() - 1);
+		long[] scanned = scan(last);
+		if (scanned[0] < 4) {
+			lastOffset = segmentStart(last) - 1;
+			openSegment(segmentStart(last));
+			return;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+			file.setLength(scanned[0]);
+		}
+		lastOffset = scanned[1] > 0 ? scanned[1] : segmentStart(last) - 1;
+		segmentBytes = scanned[0];
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(last, true), 1 << 16));
+	}
+
+	private static List<File> listSegments(File directory) {
+		File[] files = directory.listFiles((dir, name) -> name.startsWith("changes-") && name.endsWith(".log"));
+		List<File> segments = new ArrayList<File>(Arrays.asList(files == null ? new File[0] : files));
+		segments.sort((a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+		return segments;
+	}
+
+	private static long segmentStart(File segment) {
+		String name = segment.getName();
+		return Long.parseLong(name.substring("changes-".length(), name.length() - ".log".length()));
+	}
+
+	private static long[] scan(File segment) throws IOException {
+		// The length of the segment up to its last complete record, and the offset of that record
+		long validLength = 0;
+		long offset = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment), 1 << 16))) {
+			if (in.readInt() != SEGMENT_MAGIC)
+				throw new IOException("Error: " + segment + " is not a change log segment.");
+			validLength = 4;
+			long[] length = new long[1];
+			ChangeEvent event;
+			while ((event = readRecord(in, length)) != null) {
+				validLength += length[0];
+				offset = event.offset;
+			}
+		} catch (EOFException e) {
+			// Crashed right after the segment was created
+		}
+		return new long[] { validLength, offset };
+	}
+
+	private void openSegment(long firstOffset) throws IOException {
+		if (out != null)
+			out.close();
+		File segment = new File(directory, "changes-" + firstOffset + ".log");
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment), 1 << 16));
+		out.writeInt(SEGMENT_MAGIC);
+		segmentBytes = 4;
+	}
+
+	public synchronized long getLastOffset() {
+		return lastOffset;
+	}
+
+	public synchronized void append(ChangeEvent event) throws IOException {
+		if (out == null)
+			throw new IOException("Error: The change log is closed.");
+		if (event.offset != lastOffset + 1)
+			throw new IOException("Error: Change " + event.offset + " does not follow " + lastOffset + " in the change log.");
+		if (segmentBytes >= SEGMENT_BYTES)
+			openSegment(event.offset);
+		recordBytes.reset();
+		recordOut.writeLong(event.offset);
+		recordOut.writeByte(event.kind.ordinal());
+		recordOut.writeBoolean(event.retracted);
+		writeString(recordOut, event.subject);
+		writeString(recordOut, event.property);
+		writeString(recordOut, event.value);
+		recordOut.flush();
+		crc.reset();
+		crc.update(recordBytes.toByteArray(), 0, recordBytes.size());
+		out.writeInt(recordBytes.size());
+		out.writeInt((int) crc.getValue());
+		recordBytes.writeTo(out);
+		segmentBytes += 8 + recordBytes.size();
+		lastOffset = event.offset;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		// Labels and definitions may be longer than writeUTF allows
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		AxiomCodec.writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[AxiomCodec.readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static ChangeEvent readRecord(DataInputStream in, long[] recordLength) throws IOException {
+		// The next complete record, or null at the end of the segment or at a torn record
+		byte[] body;
+		try {
+			int length = in.readInt();
+			int checksum = in.readInt();
+			if (length < 10 || length > MAX_RECORD_BYTES)
+				return null;
+			body = new byte[length];
+			in.readFully(body);
+			CRC32 crc = new CRC32();
+			crc.update(body, 0, length);
+			if ((int) crc.getValue() != checksum)
+				return null;
+		} catch (EOFException e) {
+			return null;
+		}
+		recordLength[0] = 8 + body.length;
+		DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+		long offset = record.readLong();
+		ChangeEvent.Kind kind = ChangeEvent.Kind.values()[record.readByte()];
+		boolean retracted = record.readBoolean();
+		return new ChangeEvent(offset, kind, retracted, readString(record), readString(record), readString(record));
+	}
+
+	public synchronized void flush() throws IOException {
+		if (out != null)
+			out.flush();
+	}
+
+	// Reads the events of a log from an offset on, segment after segment
+	public static class Cursor implements Closeable {
+		private final List<File> segments;
+		private final long fromOffset;
+		private final long toOffset;
+		private int segment;
+		private DataInputStream in;
+		private final long[] recordLength = new long[1];
+
+		Cursor(List<File> segments, long fromOffset, long toOffset) {
+			this.segments = segments;
+			this.fromOffset = fromOffset;
+			this.toOffset = toOffset;
+		}
+
+		public List<ChangeEvent> next(int max) throws IOException {
+			// Up to max events, none once the log or the range is exhausted
+			List<ChangeEvent> events = new ArrayList<ChangeEvent>();
+			while (events.size() < max) {
+				if (in == null) {
+					if (segment >= segments.size())
+						break;
+					in = new DataInputStream(new BufferedInputStream(new FileInputStream(segments.get(segment++)), 1 << 16));
+					try {
+						if (in.readInt() != SEGMENT_MAGIC)
+							throw new IOException("Error: " + segments.get(segment - 1) + " is not a change log segment.");
+					} catch (EOFException e) {
+						closeSegment();
+						continue;
+					}
+				}
+				ChangeEvent event = readRecord(in, recordLength);
+				if (event == null) {
+					closeSegment();
+					continue;
+				}
+				if (event.offset > toOffset) {
+					closeSegment();
+					segment = segments.size();
+					break;
+				}
+				if (event.offset >= fromOffset)
+					events.add(event);
+			}
+			return events;
+		}
+
+		private void closeSegment() throws IOException {
+			if (in != null)
+				in.close();
+			in = null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closeSegment();
+			segment = segments.size();
+		}
+	}
+
+	public static Cursor read(String logDirectory, long fromOffset, long toOffset) {
+		// The events fromOffset <= offset <= toOffset; the scan starts at the last segment beginning at or before fromOffset
+		List<File> segments = listSegments(new File(logDirectory));
+		int first = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			if (segmentStart(segments.get(i)) <= fromOffset)
+				first = i;
+		}
+		return new Cursor(new ArrayList<File>(segments.subList(first, segments.size())), fromOffset, toOffset);
+	}
+
+	public Cursor read(long fromOffset) throws IOException {
+		// What has been appended so far
+		long toOffset;
+		synchronized (this) {
+			flush();
+			toOffset = lastOffset;
+		}
+		return read(directory.getPath(), fromOffset, toOffset);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (out != null)
+			out.close();
+		out = null;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+/* Finds the entities of the ontology cited in a text (a judgment, for instance) by their labels and alternative labels. All the labels are compiled
+ * into one Aho-Corasick automaton, so a text is scanned once, in time linear in its length whatever the number of labels. Labels and texts are
+ * normalized the same way: letters and digits lowercased, every run of other characters (spaces, punctuation, line breaks) turned into one space,
+ * so "Code of Criminal Procedure , 1973" matches "code of criminal procedure, 1973". A match must start and end at a word boundary, and a match
+ * lying within a longer one ("Evidence Act" in "Indian Evidence Act, 1872") is not reported. Labels shorter than three characters are left out.
+ * The automaton is immutable once built, so any number of documents can be scanned in parallel.
+ */
+
+package onted;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CitationLinker {
+	private static final int MIN_LABEL_LENGTH = 3;
+
+	// Children of every state, sorted by character, in one pair of arrays (those of state s are at childStart[s] .. childStart[s + 1] - 1)
+	private final int[] childStart;
+	private final char[] childChars;
+	private final int[] childStates;
+	private final int[] failure;
+	// Label ending at a state (or -1), the nearest state down the failure chain where one ends, and the length of the label
+	private final int[] label;
+	private final int[] output;
+	private final int[] depth;
+	private final String[][] entities;
+
+	private CitationLinker(int[] childStart, char[] childChars, int[] childStates, int[] failure, int[] label, int[] output, int[] depth,
+			String[][] entities) {
+		this.childStart = childStart;
+		this.childChars = childChars;
+		this.childStates = childStates;
+		this.failure = failure;
+		this.label = label;
+		this.output = output;
+		this.depth = depth;
+		this.entities = entities;
+	}
+
+	public static CitationLinker compile(Map<String, ? extends Collection<String>> labels) {
+		// From the labels of every entity IRI; entities sharing a label are all linked where it occurs
+		Map<String, Set<String>> entitiesByLabel = new LinkedHashMap<String, Set<String>>();
+		for (Map.Entry<String, ? extends Collection<String>> entity : labels.entrySet()) {
+			for (String entityLabel : entity.getValue()) {
+				String normalized = normalize(entityLabel);
+				if (normalized.length() >= MIN_LABEL_LENGTH)
+					entitiesByLabel.computeIfAbsent(normalized, key -> new LinkedHashSet<String>()).add(entity.getKey());
+			}
+		}
+
+		// The trie, with its edges in a map while it grows
+		List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+		List<Integer> labelOf = new ArrayList<Integer>();
+		List<Integer> depthOf = new ArrayList<Integer>();
+		trie.add(new HashMap<Character, Integer>());
+		labelOf.add(-1);
+		depthOf.add(0);
+		String[][] entities = new String[entitiesByLabel.size()][];
+		int labelId = 0;
+		for (Map.Entry<String, Set<String>> entry : entitiesByLabel.entrySet()) {
+			int state = 0;
+			for (char c : entry.getKey().toCharArray()) {
+				Integer next = trie.get(state).get(c);
+				if (next == null) {
+					next = trie.size();
+					trie.add(new HashMap<Character, Integer>());
+					labelOf.add(-1);
+					depthOf.add(depthOf.get(state) + 1);
+					trie.get(state).put(c, next);
+				}
+				state = next;
+			}
+			labelOf.set(state, labelId);
+			entities[labelId++] = entry.getValue().toArray(new String[0]);
+		}
+
+		// Compacted into sorted arrays
+		int states = trie.size();
+		int[] childStart = new int[states + 1];
+		for (int state = 0; state < states; state++)
+			childStart[state + 1] = childStart[state] + trie.get(state).size();
+		char[] childChars = new char[childStart[states]];
+		int[] childStates = new int[childStart[states]];
+		for (int state = 0; state < states; state++) {
+			Character[] chars = trie.get(state).keySet().toArray(new Character[0]);
+			Arrays.sort(chars);
+			int position = childStart[state];
+			for (Character c : chars) {
+				childChars[position] = c;
+				childStates[position++] = trie.get(state).get(c);
+			}
+		}
+		int[] label = new int[states];
+		int[] depth = new int[states];
+		for (int state = 0; state < states; state++) {
+			label[state] = labelOf.get(state);
+			depth[state] = depthOf.get(state);
+		}
+
+		// Failure links breadth first: the longest proper suffix of a state that is also a state
+		int[] failure = new int[states];
+		int[] output = new int[states];
+		Arrays.fill(output, -1);
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int i = childStart[0]; i < childStart[1]; i++)
+			queue.add(childStates[i]);
+		CitationLinker linker = new CitationLinker(childStart, childChars, childStates, failure, label, output, depth, entities);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int i = childStart[state]; i < childStart[state + 1]; i++) {
+				int child = childStates[i];
+				int fallback = failure[state];
+				int next;
+				while ((next = linker.child(fallback, childChars[i])) < 0 && fallback != 0)
+					fallback = failure[fallback];
+				failure[child] = next >= 0 ? next : 0;
+				output[child] = label[failure[child]] >= 0 ? failure[child] : output[failure[child]];
+				queue.add(child);
+			}
+		}
+		return linker;
+	}
+
+	private int child(int state, char c) {
+		int low = childStart[state];
+		int high = childStart[state + 1] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (childChars[middle] < c)
+				low = middle + 1;
+			else if (childChars[middle] > c)
+				high = middle - 1;
+			else
+				return childStates[middle];
+		}
+		return -1;
+	}
+
+	static String normalize(CharSequence text) {
+		StringBuilder normalized = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c))
+				normalized.append(Character.toLowerCase(c));
+			else if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ')
+				normalized.append(' ');
+		}
+		if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) == ' ')
+			normalized.setLength(normalized.length() - 1);
+		return normalized.toString();
+	}
+
+	public Set<String> link(String text) {
+		// The entities cited in the text, in order of their first citation
+		String normalized = normalize(text);
+		int length = normalized.length();
+		List<int[]> matches = new ArrayList<int[]>();
+		int state = 0;
+		for (int position = 0; position < length; position++) {
+			char c = normalized.charAt(position);
+			int next;
+			while ((next = child(state, c)) < 0 && state != 0)
+				state = failure[state];
+			state = next >= 0 ? next : 0;
+			if (position + 1 < length && normalized.charAt(position + 1) != ' ')
+				continue;
+			// At a word end: every label ending here which also starts at a word boundary
+			for (int found = label[state] >= 0 ? state : output[state]; found >= 0; found = output[found]) {
+				int start = position + 1 - depth[found];
+				if (start == 0 || normalized.charAt(start - 1) == ' ')
+					matches.add(new int[] { start, position + 1, label[found] });
+			}
+		}
+
+		// Longest first among those starting together, then those lying within an earlier match are dropped
+		matches.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+		Set<String> cited = new LinkedHashSet<String>();
+		int coveredTo = -1;
+		for (int[] match : matches) {
+			if (match[1] <= coveredTo)
+				continue;
+			coveredTo = match[1];
+			for (String entity : entities[match[2]])
+				cited.add(entity);
+		}
+		return cited;
+	}
+
+	public Map<String, Set<String>> linkAll(Map<String, String> documents) {
+		// The documents are scanned in parallel, the results keep their order
+		Map<String, Set<String>> found = new ConcurrentHashMap<String, Set<String>>();
+		documents.entrySet().parallelStream().forEach(document -> found.put(document.getKey(), link(document.getValue())));
+		Map<String, Set<String>> result = new LinkedHashMap<String, Set<String>>();
+		for (String document : documents.keySet())
+			result.put(document, found.get(document));
+		return result;
+	}
+
+	public int size() {
+		return entities.length;
+	}
+}
\ No newline at end of file
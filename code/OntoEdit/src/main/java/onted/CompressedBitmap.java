@@ -0,0 +1,344 @@
+/* A compressed set of non-negative ints in the style of Roaring bitmaps, used for posting lists. The values are split by their upper 16 bits into chunks;
+ * a sparse chunk keeps its lower 16 bits in a sorted char array and a dense chunk (more than 4096 values) in a 65536 bit bitmap, so no chunk takes more
+ * than 8 KB and sparse sets stay small. Intersections and unions work chunk by chunk and only touch the chunks present in both (or either) operands.
+ */
+
+package onted;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class CompressedBitmap {
+	private static final int ARRAY_LIMIT = 4096;
+	private static final int BITMAP_WORDS = 1 << 10;
+
+	private char[] keys = new char[4];
+	// Either a sorted char[] (with the used length in cardinalities) or a long[] bitmap
+	private Object[] containers = new Object[4];
+	private int[] cardinalities = new int[4];
+	private int size;
+
+	public CompressedBitmap() {
+	}
+
+	public static CompressedBitmap of(int... values) {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		for (int value : values)
+			bitmap.add(value);
+		return bitmap;
+	}
+
+	private int findKey(char key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insertContainer(int index, char key, Object container, int cardinality) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+			cardinalities = Arrays.copyOf(cardinalities, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+		keys[index] = key;
+		containers[index] = container;
+		cardinalities[index] = cardinality;
+		size++;
+	}
+
+	private void appendContainer(char key, Object container, int cardinality) {
+		if (cardinality > 0)
+			insertContainer(size, key, container, cardinality);
+	}
+
+	public boolean add(int value) {
+		char key = (char) (value >>> 16);
+		char low = (char) value;
+		int index = findKey(key);
+		if (index < 0) {
+			insertContainer(-index - 1, key, new char[] { low, 0, 0, 0 }, 1);
+			return true;
+		}
+		Object container = containers[index];
+		if (container instanceof long[]) {
+			long[] bits = (long[]) container;
+			long mask = 1L << low;
+			if ((bits[low >>> 6] & mask) != 0)
+				return false;
+			bits[low >>> 6] |= mask;
+			cardinalities[index]++;
+			return true;
+		}
+		char[] values = (char[]) container;
+		int cardinality = cardinalities[index];
+		int position = Arrays.binarySearch(values, 0, cardinality, low);
+		if (position >= 0)
+			return false;
+		position = -position - 1;
+		if (cardinality == ARRAY_LIMIT) {
+			// Too many values for a sorted array, switch the chunk to a bitmap
+			long[] bits = toBits(values, cardinality);
+			bits[low >>> 6] |= 1L << low;
+			containers[index] = bits;
+		} else {
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+				containers[index] = values;
+			}
+			System.arraycopy(values, position, values, position + 1, cardinality - position);
+			values[position] = low;
+		}
+		cardinalities[index]++;
+		return true;
+	}
+
+	public boolean remove(int value) {
+		int index = findKey((char) (value >>> 16));
+		if (index < 0)
+			return false;
+		char low = (char) value;
+		Object container = containers[index];
+		if (container instanceof long[]) {
+			long[] bits = (long[]) container;
+			long mask = 1L << low;
+			if ((bits[low >>> 6] & mask) == 0)
+				return false;
+			bits[low >>> 6] &= ~mask;
+			// Back to a sorted array once the chunk is no longer dense
+			if (--cardinalities[index] == ARRAY_LIMIT)
+				containers[index] = toValues(bits, ARRAY_LIMIT);
+			return true;
+		}
+		char[] values = (char[]) container;
+		int cardinality = cardinalities[index];
+		int position = Arrays.binarySearch(values, 0, cardinality, low);
+		if (position < 0)
+			return false;
+		System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+		if (--cardinalities[index] == 0)
+			removeContainer(index);
+		return true;
+	}
+
+	private void removeContainer(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+		System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+		size--;
+		containers[size] = null;
+	}
+
+	public boolean contains(int value) {
+		int index = findKey((char) (value >>> 16));
+		if (index < 0)
+			return false;
+		char low = (char) value;
+		Object container = containers[index];
+		if (container instanceof long[])
+			return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+		return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+	}
+
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++)
+			cardinality += cardinalities[i];
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0, j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Object left = containers[i];
+				Object right = other.containers[j];
+				if (left instanceof long[] && right instanceof long[]) {
+					long[] bits = new long[BITMAP_WORDS];
+					long[] a = (long[]) left;
+					long[] b = (long[]) right;
+					int cardinality = 0;
+					for (int w = 0; w < BITMAP_WORDS; w++) {
+						bits[w] = a[w] & b[w];
+						cardinality += Long.bitCount(bits[w]);
+					}
+					result.appendContainer(keys[i], cardinality > ARRAY_LIMIT ? bits : toValues(bits, cardinality), cardinality);
+				} else if (left instanceof long[] || right instanceof long[]) {
+					boolean leftIsBits = left instanceof long[];
+					long[] bits = (long[]) (leftIsBits ? left : right);
+					char[] values = (char[]) (leftIsBits ? right : left);
+					int count = leftIsBits ? other.cardinalities[j] : cardinalities[i];
+					char[] matched = new char[count];
+					int cardinality = 0;
+					for (int k = 0; k < count; k++) {
+						if ((bits[values[k] >>> 6] & (1L << values[k])) != 0)
+							matched[cardinality++] = values[k];
+					}
+					result.appendContainer(keys[i], matched, cardinality);
+				} else {
+					char[] a = (char[]) left;
+					char[] b = (char[]) right;
+					char[] matched = new char[Math.min(cardinalities[i], other.cardinalities[j])];
+					int cardinality = 0;
+					int x = 0, y = 0;
+					while (x < cardinalities[i] && y < other.cardinalities[j]) {
+						if (a[x] < b[y]) {
+							x++;
+						} else if (a[x] > b[y]) {
+							y++;
+						} else {
+							matched[cardinality++] = a[x];
+							x++;
+							y++;
+						}
+					}
+					result.appendContainer(keys[i], matched, cardinality);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public int andCardinality(CompressedBitmap other) {
+		// Counting only, without building the intersection
+		int total = 0;
+		int i = 0, j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Object left = containers[i];
+				Object right = other.containers[j];
+				if (left instanceof long[] && right instanceof long[]) {
+					long[] a = (long[]) left;
+					long[] b = (long[]) right;
+					for (int w = 0; w < BITMAP_WORDS; w++)
+						total += Long.bitCount(a[w] & b[w]);
+				} else if (left instanceof long[] || right instanceof long[]) {
+					boolean leftIsBits = left instanceof long[];
+					long[] bits = (long[]) (leftIsBits ? left : right);
+					char[] values = (char[]) (leftIsBits ? right : left);
+					int count = leftIsBits ? other.cardinalities[j] : cardinalities[i];
+					for (int k = 0; k < count; k++) {
+						if ((bits[values[k] >>> 6] & (1L << values[k])) != 0)
+							total++;
+					}
+				} else {
+					char[] a = (char[]) left;
+					char[] b = (char[]) right;
+					int x = 0, y = 0;
+					while (x < cardinalities[i] && y < other.cardinalities[j]) {
+						if (a[x] < b[y]) {
+							x++;
+						} else if (a[x] > b[y]) {
+							y++;
+						} else {
+							total++;
+							x++;
+							y++;
+						}
+					}
+				}
+				i++;
+				j++;
+			}
+		}
+		return total;
+	}
+
+	public CompressedBitmap or(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0, j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.appendContainer(keys[i], copy(containers[i]), cardinalities[i]);
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				result.appendContainer(other.keys[j], copy(other.containers[j]), other.cardinalities[j]);
+				j++;
+			} else {
+				long[] bits = containers[i] instanceof long[] ? ((long[]) containers[i]).clone() : toBits((char[]) containers[i], cardinalities[i]);
+				if (other.containers[j] instanceof long[]) {
+					long[] b = (long[]) other.containers[j];
+					for (int w = 0; w < BITMAP_WORDS; w++)
+						bits[w] |= b[w];
+				} else {
+					char[] b = (char[]) other.containers[j];
+					for (int k = 0; k < other.cardinalities[j]; k++)
+						bits[b[k] >>> 6] |= 1L << b[k];
+				}
+				int cardinality = 0;
+				for (int w = 0; w < BITMAP_WORDS; w++)
+					cardinality += Long.bitCount(bits[w]);
+				result.appendContainer(keys[i], cardinality > ARRAY_LIMIT ? bits : toValues(bits, cardinality), cardinality);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public void forEach(IntConsumer action) {
+		for (int i = 0; i < size; i++) {
+			int high = keys[i] << 16;
+			if (containers[i] instanceof long[]) {
+				long[] bits = (long[]) containers[i];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long word = bits[w];
+					while (word != 0) {
+						action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			} else {
+				char[] values = (char[]) containers[i];
+				for (int k = 0; k < cardinalities[i]; k++)
+					action.accept(high | values[k]);
+			}
+		}
+	}
+
+	public int[] toArray() {
+		int[] values = new int[cardinality()];
+		int[] position = new int[1];
+		forEach(value -> values[position[0]++] = value);
+		return values;
+	}
+
+	private static Object copy(Object container) {
+		return container instanceof long[] ? ((long[]) container).clone() : ((char[]) container).clone();
+	}
+
+	private static long[] toBits(char[] values, int cardinality) {
+		long[] bits = new long[BITMAP_WORDS];
+		for (int k = 0; k < cardinality; k++)
+			bits[values[k] >>> 6] |= 1L << values[k];
+		return bits;
+	}
+
+	private static char[] toValues(long[] bits, int cardinality) {
+		char[] values = new char[cardinality];
+		int position = 0;
+		for (int w = 0; w < BITMAP_WORDS; w++) {
+			long word = bits[w];
+			while (word != 0) {
+				values[position++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return values;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,318 @@
+/* Faceted search over the individuals of the ontology (courts, tribunals and places), kept up to date as axioms are added and removed through MyOntology.
+ * Every individual gets a dense int id and every facet value a CompressedBitmap posting list of the ids having that value, so filters are bitmap
+ * intersections and facet counts are intersection cardinalities. The facets are:
+ *   class              the classes the individual is asserted to be an instance of
+ *   level              the court level, for instances of the classes registered with defineCourtLevel()
+ *   state              for places, the states containing them (schema:containsPlace); for courts, the states containing the places they are located in
+ *   highCourt          the high court a court is preceded by
+ *   jurisdictionType   the jurisdiction types of a court or tribunal (hasJurisdictionType)
+ * The index is built over the assertions the ontology already holds (such as changes recovered from a journal), then follows the changes. The state,
+ * high court and jurisdiction type facets need the IRIs minted by the builder for the state class and the precededBy and hasJurisdictionType
+ * properties; the assertions of a property made before it is set are read back from the ontology when it is. State membership follows one level of
+ * containment, which matches how states, districts and cities are linked by the builder. The derived facets depend on several axioms each, so a
+ * removal only marks the index stale, and the facets are rebuilt from the assertions of the ontology when the index is next used. Individuals keep
+ * their ids across a rebuild.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CourtFacetIndex implements AxiomListener {
+	public static final String CLASS = "class";
+	public static final String LEVEL = "level";
+	public static final String STATE = "state";
+	public static final String HIGH_COURT = "highCourt";
+	public static final String JURISDICTION_TYPE = "jurisdictionType";
+
+	private static final String LOCATED_IN = "http://www.geonames.org/ontology#locatedIn";
+	private static final String CONTAINS_PLACE = "http://schema.org/containsPlace";
+	private static final String HIGH_COURT_LEVEL = "High Court";
+
+	private final OWLOntology ontology;
+	private final List<String> iris = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final Map<String, Map<String, CompressedBitmap>> facets = new HashMap<String, Map<String, CompressedBitmap>>();
+	private final Map<String, String> courtLevels = new HashMap<String, String>();
+	private String stateClass;
+	private String precededByProperty;
+	private String jurisdictionTypeProperty;
+
+	// Links kept to resolve the derived facets whichever order the axioms arrive in
+	private final Map<String, Set<String>> locatedHere = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> containedIn = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> contains = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> precededBy = new HashMap<String, Set<String>>();
+	private final Set<String> states = new HashSet<String>();
+	private boolean stale;
+
+	public CourtFacetIndex(OWLOntology ontology) {
+		this.ontology = ontology;
+		for (String facet : new String[] { CLASS, LEVEL, STATE, HIGH_COURT, JURISDICTION_TYPE })
+			facets.put(facet, new HashMap<String, CompressedBitmap>());
+		indexOntology();
+	}
+
+	private void indexOntology() {
+		ontology.axioms(AxiomType.CLASS_ASSERTION, Imports.INCLUDED).forEach(this::index);
+		ontology.axioms(AxiomType.OBJECT_PROPERTY_ASSERTION, Imports.INCLUDED).forEach(this::index);
+	}
+
+	private void indexAssertionsOf(String propertyIRI) {
+		ontology.axioms(AxiomType.OBJECT_PROPERTY_ASSERTION, Imports.INCLUDED)
+				.filter(assertion -> !assertion.getProperty().isAnonymous() && propertyIRI.equals(assertion.getProperty().asOWLObjectProperty().getIRI().toString()))
+				.forEach(this::index);
+	}
+
+	public synchronized void invalidate() {
+		// For axioms that reached the ontology without passing through the listeners, e.g. those of a journal recovered after the index was built
+		stale = true;
+	}
+
+	public synchronized void defineCourtLevel(String classIRI, String level) {
+		rebuildIfStale();
+		// Instances of the class already indexed are given the level straight away
+		courtLevels.put(classIRI, level);
+		CompressedBitmap instances = facets.get(CLASS).get(classIRI);
+		if (instances != null)
+			instances.forEach(id -> addCourtLevel(iris.get(id), level));
+	}
+
+	public synchronized void setStateClass(String classIRI) {
+		rebuildIfStale();
+		stateClass = classIRI;
+		CompressedBitmap instances = facets.get(CLASS).get(classIRI);
+		if (instances != null)
+			instances.forEach(id -> addState(iris.get(id)));
+	}
+
+	public synchronized void setPrecededByProperty(String propertyIRI) {
+		rebuildIfStale();
+		precededByProperty = propertyIRI;
+		indexAssertionsOf(propertyIRI);
+	}
+
+	public synchronized void setJurisdictionTypeProperty(String propertyIRI) {
+		rebuildIfStale();
+		jurisdictionTypeProperty = propertyIRI;
+		indexAssertionsOf(propertyIRI);
+	}
+
+	@Override
+	public synchronized void axiomAdded(OWLAxiom axiom) {
+		if (!stale)
+			index(axiom);
+	}
+
+	@Override
+	public synchronized void axiomRemoved(OWLAxiom axiom) {
+		if (axiom instanceof OWLClassAssertionAxiom || axiom instanceof OWLObjectPropertyAssertionAxiom)
+			stale = true;
+	}
+
+	private void rebuildIfStale() {
+		if (!stale)
+			return;
+		stale = false;
+		for (Map<String, CompressedBitmap> values : facets.values())
+			values.clear();
+		locatedHere.clear();
+		containedIn.clear();
+		contains.clear();
+		precededBy.clear();
+		states.clear();
+		indexOntology();
+	}
+
+	private void index(OWLAxiom axiom) {
+		if (axiom instanceof OWLClassAssertionAxiom) {
+			OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+			if (assertion.getClassExpression().isAnonymous() || !assertion.getIndividual().isNamed())
+				return;
+			String individual = assertion.getIndividual().asOWLNamedIndividual().getIRI().toString();
+			String owlClass = assertion.getClassExpression().asOWLClass().getIRI().toString();
+			post(CLASS, owlClass, individual);
+			String level = courtLevels.get(owlClass);
+			if (level != null)
+				addCourtLevel(individual, level);
+			if (owlClass.equals(stateClass))
+				addState(individual);
+		}
+		else if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+			OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+			if (assertion.getProperty().isAnonymous() || !assertion.getSubject().isNamed() || !assertion.getObject().isNamed())
+				return;
+			String property = assertion.getProperty().asOWLObjectProperty().getIRI().toString();
+			String subject = assertion.getSubject().asOWLNamedIndividual().getIRI().toString();
+			String object = assertion.getObject().asOWLNamedIndividual().getIRI().toString();
+			if (property.equals(LOCATED_IN)) {
+				link(locatedHere, object, subject);
+				for (String state : statesOf(object))
+					post(STATE, state, subject);
+			}
+			else if (property.equals(CONTAINS_PLACE)) {
+				link(containedIn, object, subject);
+				link(contains, subject, object);
+				if (states.contains(subject))
+					addToState(subject, object);
+			}
+			else if (property.equals(precededByProperty)) {
+				link(precededBy, object, subject);
+				if (isHighCourt(object))
+					post(HIGH_COURT, object, subject);
+			}
+			else if (property.equals(jurisdictionTypeProperty)) {
+				post(JURISDICTION_TYPE, object, subject);
+			}
+		}
+	}
+
+	private boolean isHighCourt(String individual) {
+		CompressedBitmap highCourts = facets.get(LEVEL).get(HIGH_COURT_LEVEL);
+		Integer id = ids.get(individual);
+		return highCourts != null && id != null && highCourts.contains(id);
+	}
+
+	private void addCourtLevel(String individual, String level) {
+		post(LEVEL, level, individual);
+		// Courts seen as preceded by this one before it was known to be a high court
+		if (level.equals(HIGH_COURT_LEVEL)) {
+			for (String court : precededBy.getOrDefault(individual, Collections.emptySet()))
+				post(HIGH_COURT, individual, court);
+		}
+	}
+
+	private void addState(String state) {
+		if (!states.add(state))
+			return;
+		addToState(state, state);
+		for (String place : contains.getOrDefault(state, Collections.emptySet()))
+			addToState(state, place);
+	}
+
+	private void addToState(String state, String place) {
+		if (!place.equals(state))
+			post(STATE, state, place);
+		for (String located : locatedHere.getOrDefault(place, Collections.emptySet()))
+			post(STATE, state, located);
+	}
+
+	private Set<String> statesOf(String place) {
+		Set<String> result = new HashSet<String>();
+		if (states.contains(place))
+			result.add(place);
+		for (String parent : containedIn.getOrDefault(place, Collections.emptySet())) {
+			if (states.contains(parent))
+				result.add(parent);
+		}
+		return result;
+	}
+
+	private static void link(Map<String, Set<String>> links, String from, String to) {
+		links.computeIfAbsent(from, key -> new HashSet<String>()).add(to);
+	}
+
+	private int idOf(String individual) {
+		Integer id = ids.get(individual);
+		if (id == null) {
+			id = iris.size();
+			iris.add(individual);
+			ids.put(individual, id);
+		}
+		return id;
+	}
+
+	private void post(String facet, String value, String individual) {
+		facets.get(facet).computeIfAbsent(value, key -> new CompressedBitmap()).add(idOf(individual));
+	}
+
+	public synchronized CompressedBitmap matching(String facet, String value) {
+		rebuildIfStale();
+		CompressedBitmap postings = facets.get(facet).get(value);
+		return postings == null ? new CompressedBitmap() : postings.or(new CompressedBitmap());
+	}
+
+	public synchronized CompressedBitmap matchingAny(String facet, Collection<String> values) {
+		rebuildIfStale();
+		CompressedBitmap result = new CompressedBitmap();
+		for (String value : values) {
+			CompressedBitmap postings = facets.get(facet).get(value);
+			if (postings != null)
+				result = result.or(postings);
+		}
+		return result;
+	}
+
+	public synchronized CompressedBitmap matchingAll(Map<String, String> criteria) {
+		rebuildIfStale();
+		// Intersect the shortest posting lists first so the intermediate results stay small
+		List<CompressedBitmap> postings = new ArrayList<CompressedBitmap>();
+		for (Map.Entry<String, String> criterion : criteria.entrySet()) {
+			CompressedBitmap list = facets.get(criterion.getKey()).get(criterion.getValue());
+			if (list == null)
+				return new CompressedBitmap();
+			postings.add(list);
+		}
+		if (postings.isEmpty())
+			return new CompressedBitmap();
+		postings.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+		CompressedBitmap result = postings.get(0);
+		for (int i = 1; i < postings.size() && !result.isEmpty(); i++)
+			result = result.and(postings.get(i));
+		return postings.size() == 1 ? result.or(new CompressedBitmap()) : result;
+	}
+
+	public synchronized int count(Map<String, String> criteria) {
+		rebuildIfStale();
+		if (criteria.size() == 2) {
+			// The common case of two facets is counted without building the intersection
+			List<CompressedBitmap> postings = new ArrayList<CompressedBitmap>();
+			for (Map.Entry<String, String> criterion : criteria.entrySet()) {
+				CompressedBitmap list = facets.get(criterion.getKey()).get(criterion.getValue());
+				if (list == null)
+					return 0;
+				postings.add(list);
+			}
+			return postings.get(0).andCardinality(postings.get(1));
+		}
+		return matchingAll(criteria).cardinality();
+	}
+
+	public synchronized Map<String, Integer> facetCounts(String facet, CompressedBitmap within) {
+		rebuildIfStale();
+		// Number of individuals of the given set for every value of the facet, largest first
+		List<Map.Entry<String, Integer>> counts = new ArrayList<Map.Entry<String, Integer>>();
+		for (Map.Entry<String, CompressedBitmap> value : facets.get(facet).entrySet()) {
+			int count = within == null ? value.getValue().cardinality() : value.getValue().andCardinality(within);
+			if (count > 0)
+				counts.add(new AbstractMap.SimpleEntry<String, Integer>(value.getKey(), count));
+		}
+		counts.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, Integer> count : counts)
+			result.put(count.getKey(), count.getValue());
+		return result;
+	}
+
+	public synchronized List<String> getIRIs(CompressedBitmap matches) {
+		List<String> result = new ArrayList<String>(matches.cardinality());
+		matches.forEach(id -> result.add(iris.get(id)));
+		return result;
+	}
+
+	public synchronized int size() {
+		return iris.size();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+/* Streaming reader for delimited text files (CSV, TSV or any single character delimiter) in UTF-8. Records are read one at a time, so a file is
+ * read exactly once whatever its size. Fields may be quoted with double quotes, in which case they can hold delimiters, line breaks and doubled
+ * quotes; unquoted fields are trimmed, and so is the whitespace around a quoted field (other text after its closing quote is an error). Blank
+ * lines are skipped. With a header line the columns can be looked up by name, and every record must have as many columns as the header (or as
+ * set with expectColumns), so a missing definition or a misaligned line stops the build at the line concerned instead of shifting every
+ * following entry. With a split limit, the last column takes the rest of the line unsplit, like String.split(regex, limit).
+ */
+
+package onted;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+public class DelimitedRecordReader implements Closeable, Iterable<DelimitedRecordReader.Record> {
+	private final String fileName;
+	private final BufferedReader reader;
+	private final char delimiter;
+	private List<String> header = Collections.emptyList();
+	private final Map<String, Integer> columns = new HashMap<String, Integer>();
+	private int minColumns = 1;
+	private int maxColumns = Integer.MAX_VALUE;
+	private int splitLimit = 0;
+	private int lineNumber = 1;
+	private int pending = -2;
+
+	public DelimitedRecordReader(String file, char delimiter, boolean hasHeader) throws IOException {
+		this.fileName = file;
+		this.delimiter = delimiter;
+		// Malformed UTF-8 is reported instead of being silently replaced
+		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT)));
+		reader.mark(1);
+		if (reader.read() != '\uFEFF')
+			reader.reset();
+		if (hasHeader) {
+			List<String> names = readFields();
+			if (names == null)
+				throw new RuntimeException("Error: " + file + " is empty, a header line was expected.");
+			header = Collections.unmodifiableList(names);
+			for (int i = 0; i < names.size(); i++)
+				columns.put(names.get(i), i);
+			expectColumns(names.size(), names.size());
+		}
+	}
+
+	public static DelimitedRecordReader forFile(String file) throws IOException {
+		// TSV and CSV files are expected to start with a header line
+		if (file.toLowerCase().endsWith(".csv"))
+			return new DelimitedRecordReader(file, ',', true);
+		return new DelimitedRecordReader(file, '\t', true);
+	}
+
+	public DelimitedRecordReader expectColumns(int min, int max) {
+		minColumns = min;
+		maxColumns = max;
+		return this;
+	}
+
+	public DelimitedRecordReader splitLimit(int limit) {
+		splitLimit = limit;
+		return this;
+	}
+
+	public List<String> getHeader() {
+		return header;
+	}
+
+	public Record next() throws IOException {
+		int recordLine;
+		List<String> fields;
+		do {
+			recordLine = lineNumber;
+			fields = readFields();
+			if (fields == null)
+				return null;
+		} while (fields.size() == 1 && fields.get(0).isEmpty());
+		if (fields.size() < minColumns || fields.size() > maxColumns) {
+			String expected = minColumns == maxColumns ? String.valueOf(minColumns) : minColumns + " to " + maxColumns;
+			throw new RuntimeException("Error: " + fileName + " line " + recordLine + " has " + fields.size() + " columns, expected " + expected + ".");
+		}
+		return new Record(recordLine, fields);
+	}
+
+	private int read() throws IOException {
+		int c;
+		if (pending != -2) {
+			c = pending;
+			pending = -2;
+		} else {
+			c = reader.read();
+		}
+		return c;
+	}
+
+	private List<String> readFields() throws IOException {
+		// Reads one logical line (which quoted fields may spread over several physical lines), null at the end of the file
+		int c = read();
+		if (c == -1)
+			return null;
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		boolean atFieldStart = true;
+		while (true) {
+			if (quoted) {
+				if (c == -1)
+					throw new RuntimeException("Error: " + fileName + " line " + lineNumber + " has an unterminated quoted field.");
+				if (c == '"') {
+					int next = read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						c = next;
+						continue;
+					}
+				} else {
+					if (c == '\n')
+						lineNumber++;
+					field.append((char) c);
+				}
+			}
+			else if (c == -1 || c == '\n' || c == '\r') {
+				if (c == '\r') {
+					int next = read();
+					if (next != '\n')
+						pending = next;
+				}
+				if (c != -1)
+					lineNumber++;
+				fields.add(wasQuoted ? field.toString() : field.toString().trim());
+				return fields;
+			}
+			else if (c == delimiter && (splitLimit <= 0 || fields.size() < splitLimit - 1)) {
+				fields.add(wasQuoted ? field.toString() : field.toString().trim());
+				field.setLength(0);
+				wasQuoted = false;
+				atFieldStart = true;
+			}
+			else if (c == '"' && atFieldStart) {
+				quoted = true;
+				wasQuoted = true;
+				field.setLength(0);
+				atFieldStart = false;
+			}
+			else if (wasQuoted) {
+				// Between the closing quote and the next delimiter
+				if (!Character.isWhitespace(c))
+					throw new RuntimeException("Error: " + fileName + " line " + lineNumber + " has text after the closing quote of a field.");
+			}
+			else {
+				field.append((char) c);
+				if (!Character.isWhitespace(c))
+					atFieldStart = false;
+			}
+			c = read();
+		}
+	}
+
+	@Override
+	public Iterator<Record> iterator() {
+		return new Iterator<Record>() {
+			// Records are read on demand, so an error is only raised once the records before it have been handed out
+			private Record nextRecord;
+			private boolean finished;
+
+			@Override
+			public boolean hasNext() {
+				if (nextRecord == null && !finished) {
+					try {
+						nextRecord = DelimitedRecordReader.this.next();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					finished = nextRecord == null;
+				}
+				return nextRecord != null;
+			}
+
+			@Override
+			public Record next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Record record = nextRecord;
+				nextRecord = null;
+				return record;
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	public class Record {
+		private final int line;
+		private final List<String> fields;
+
+		private Record(int line, List<String> fields) {
+			this.line = line;
+			this.fields = fields;
+		}
+
+		public int getLineNumber() {
+			return line;
+		}
+
+		public int size() {
+			return fields.size();
+		}
+
+		public String get(int index) {
+			return index < fields.size() ? fields.get(index) : "";
+		}
+
+		public String get(String column) {
+			Integer index = columns.get(column);
+			if (index == null)
+				throw new RuntimeException("Error: " + fileName + " has no column " + column + ".");
+			return get(index);
+		}
+
+		public boolean has(String column) {
+			return columns.containsKey(column) && !get(column).isEmpty();
+		}
+
+		public int getInt(String column) {
+			try {
+				return Integer.parseInt(get(column));
+			} catch (NumberFormatException e) {
+				throw new RuntimeException("Error: " + fileName + " line " + line + " has no number in column " + column + ".");
+			}
+		}
+
+		public List<String> getList(String column, char separator) {
+			// Several values in one column, for instance alternative labels separated by |
+			List<String> values = new ArrayList<String>();
+			for (String value : get(column).split(Pattern.quote(String.valueOf(separator))))
+				if (!value.trim().isEmpty())
+					values.add(value.trim());
+			return values;
+		}
+
+		@Override
+		public String toString() {
+			return fileName + ":" + line + " " + fields;
+		}
+	}
+}
\ No newline at end of file
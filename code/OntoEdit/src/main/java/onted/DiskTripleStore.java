@@ -0,0 +1,604 @@
+/* Disk-backed storage for MyOntology when the ontology no longer fits on the heap. Axioms are translated to RDF triples (using the OWL API N-Triples
+ * renderer, so every axiom type is covered) and each term is dictionary encoded through the TermDictionary. Triples are appended to memory-mapped segments
+ * of fixed size records. Every record carries the id of the previous record with the same subject, predicate and object, and three head files map each
+ * term id to the latest record using it in that position. These chains are the subject/predicate/object indexes used by the lookups of MyOntology, they
+ * only ever grow at the end which keeps appends cheap. All files are accessed through a shared LRU PageCache. Removed triples are tombstoned in place.
+ * An axiom already stored is not added again; the check looks up the triple directly for the simple axioms MyOntology adds most, and translates the
+ * others on their own. Blank nodes are relabelled on every translation, so an axiom with anonymous parts never matches a stored one, and a declaration
+ * counts as stored once another axiom has typed its entity.
+ * The store saves as N-Triples, which is streamed straight from the segments without materialising the ontology.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.NTriplesDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class DiskTripleStore {
+	private static final int RECORD_SIZE = 24;
+	private static final int TRIPLE_PAGE_SIZE = RECORD_SIZE << 18;
+	private static final int HEAD_PAGE_SIZE = 1 << 22;
+	private static final int PENDING_LIMIT = 512;
+
+	public static final String RDF_TYPE = "<" + OWLRDFVocabulary.RDF_TYPE.getIRI() + ">";
+	public static final String RDFS_LABEL = "<" + OWLRDFVocabulary.RDFS_LABEL.getIRI() + ">";
+	public static final String RDFS_SUBCLASS_OF = "<" + OWLRDFVocabulary.RDFS_SUBCLASS_OF.getIRI() + ">";
+	public static final String OWL_CLASS = "<" + OWLRDFVocabulary.OWL_CLASS.getIRI() + ">";
+	public static final String OWL_NAMED_INDIVIDUAL = "<" + OWLRDFVocabulary.OWL_NAMED_INDIVIDUAL.getIRI() + ">";
+	public static final String OWL_ONTOLOGY = "<" + OWLRDFVocabulary.OWL_ONTOLOGY.getIRI() + ">";
+	public static final String OWL_IMPORTS = "<" + OWLRDFVocabulary.OWL_IMPORTS.getIRI() + ">";
+
+	// Callback used to walk matching triples without boxing, return false to stop the walk
+	public interface TripleVisitor {
+		boolean visit(int subject, int predicate, int object);
+	}
+
+	private final File directory;
+	private final PageCache pageCache;
+	private final TermDictionary dictionary;
+	private final PagedFile triples;
+	private final PagedFile headS;
+	private final PagedFile headP;
+	private final PagedFile headO;
+	private int recordCount;
+	private int liveCount;
+	private long blankCounter;
+	private int ontologyHeader;
+	private final Set<OWLAxiom> pending = new LinkedHashSet<OWLAxiom>();
+	private final OWLOntologyManager renderManager = OWLManager.createOWLOntologyManager();
+	private final OWLDataFactory renderFactory = renderManager.getOWLDataFactory();
+
+	public DiskTripleStore(String storeDirectory, int cachedPages) throws IOException {
+		directory = new File(storeDirectory);
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Error: Could not create store directory " + storeDirectory);
+		}
+		pageCache = new PageCache(cachedPages);
+		dictionary = new TermDictionary(directory, pageCache);
+		triples = new PagedFile(new File(directory, "triples.dat"), TRIPLE_PAGE_SIZE, pageCache);
+		headS = new PagedFile(new File(directory, "subject.idx"), HEAD_PAGE_SIZE, pageCache);
+		headP = new PagedFile(new File(directory, "predicate.idx"), HEAD_PAGE_SIZE, pageCache);
+		headO = new PagedFile(new File(directory, "object.idx"), HEAD_PAGE_SIZE, pageCache);
+		File meta = new File(directory, "store.meta");
+		if (meta.exists()) {
+			try (DataInputStream in = new DataInputStream(new FileInputStream(meta))) {
+				recordCount = in.readInt();
+				liveCount = in.readInt();
+				blankCounter = in.readLong();
+				ontologyHeader = in.readInt();
+			}
+		}
+	}
+
+	public synchronized boolean isEmpty() {
+		return recordCount == 0 && pending.isEmpty();
+	}
+
+	public synchronized int size() {
+		flushPending();
+		return liveCount;
+	}
+
+	public synchronized int lookup(String term) {
+		flushPending();
+		return dictionary.lookup(term);
+	}
+
+	public synchronized int lookupIRI(String iri) {
+		flushPending();
+		return dictionary.lookup("<" + iri + ">");
+	}
+
+	public synchronized String getTerm(int id) {
+		return dictionary.getTerm(id);
+	}
+
+	public synchronized boolean add(String subject, String predicate, String object) {
+		return add(dictionary.intern(subject), dictionary.intern(predicate), dictionary.intern(object));
+	}
+
+	public synchronized boolean add(int s, int p, int o) {
+		if (contains(s, p, o))
+			return false;
+		int record = ++recordCount;
+		long position = (long) record * RECORD_SIZE;
+		triples.writeInt(position, s);
+		triples.writeInt(position + 4, p);
+		triples.writeInt(position + 8, o);
+		// Link the new record in front of the existing chains for its subject, predicate and object
+		triples.writeInt(position + 12, headS.readInt((long) s * 4));
+		triples.writeInt(position + 16, headP.readInt((long) p * 4));
+		triples.writeInt(position + 20, headO.readInt((long) o * 4));
+		headS.writeInt((long) s * 4, record);
+		headP.writeInt((long) p * 4, record);
+		headO.writeInt((long) o * 4, record);
+		liveCount++;
+		return true;
+	}
+
+	public synchronized boolean remove(int s, int p, int o) {
+		int record = find(s, p, o);
+		if (record == 0)
+			return false;
+		// Tombstone the record by negating its predicate, chain links stay intact
+		triples.writeInt((long) record * RECORD_SIZE + 4, -p);
+		liveCount--;
+		return true;
+	}
+
+	public synchronized boolean contains(int s, int p, int o) {
+		flushPending();
+		return find(s, p, o) != 0;
+	}
+
+	private int find(int s, int p, int o) {
+		if (s == 0 || p == 0 || o == 0)
+			return 0;
+		// Subject chains are short for the entities MyOntology creates, so they are used for point lookups
+		int record = headS.readInt((long) s * 4);
+		while (record != 0) {
+			long position = (long) record * RECORD_SIZE;
+			if (triples.readInt(position + 4) == p && triples.readInt(position + 8) == o)
+				return record;
+			record = triples.readInt(position + 12);
+		}
+		return 0;
+	}
+
+	public synchronized void match(int s, int p, int o, TripleVisitor visitor) {
+		flushPending();
+		scan(s, p, o, visitor);
+	}
+
+	private boolean walk(int s, int p, int o) {
+		final boolean[] found = new boolean[1];
+		scan(s, p, o, (rs, rp, ro) -> {
+			found[0] = true;
+			return false;
+		});
+		return found[0];
+	}
+
+	private void scan(int s, int p, int o, TripleVisitor visitor) {
+		int record;
+		int offset;
+		if (s != 0) {
+			record = headS.readInt((long) s * 4);
+			offset = 12;
+		} else if (o != 0) {
+			record = headO.readInt((long) o * 4);
+			offset = 20;
+		} else if (p != 0) {
+			record = headP.readInt((long) p * 4);
+			offset = 16;
+		} else {
+			for (int r = recordCount; r > 0; r--) {
+				long position = (long) r * RECORD_SIZE;
+				int rp = triples.readInt(position + 4);
+				if (rp > 0 && !visitor.visit(triples.readInt(position), rp, triples.readInt(position + 8)))
+					return;
+			}
+			return;
+		}
+		while (record != 0) {
+			long position = (long) record * RECORD_SIZE;
+			int rs = triples.readInt(position);
+			int rp = triples.readInt(position + 4);
+			int ro = triples.readInt(position + 8);
+			if (rp > 0 && (s == 0 || rs == s) && (p == 0 || rp == p) && (o == 0 || ro == o)) {
+				if (!visitor.visit(rs, rp, ro))
+					return;
+			}
+			record = triples.readInt(position + offset);
+		}
+	}
+
+	public static boolean isIRITerm(String term) {
+		return term.startsWith("<");
+	}
+
+	public static String termToIRI(String term) {
+		return term.substring(1, term.length() - 1);
+	}
+
+	public static String literalLexicalForm(String term) {
+		// Unescape the quoted part of an N-Triples literal, ignoring the language tag or datatype
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i < term.length(); i++) {
+			char c = term.charAt(i);
+			if (c == '"')
+				break;
+			if (c == '\\' && i + 1 < term.length()) {
+				char next = term.charAt(++i);
+				switch (next) {
+				case 't': sb.append('\t'); break;
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'u':
+					sb.append((char) Integer.parseInt(term.substring(i + 1, i + 5), 16));
+					i += 4;
+					break;
+				case 'U':
+					sb.appendCodePoint(Integer.parseInt(term.substring(i + 1, i + 9), 16));
+					i += 8;
+					break;
+				default: sb.append(next);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private boolean has(int s, String predicate, int o) {
+		// A vocabulary term that was never stored cannot match, and must not turn into a wildcard
+		int p = dictionary.lookup(predicate);
+		return p != 0 && walk(s, p, o);
+	}
+
+	private int vocabulary(String term) {
+		int id = dictionary.lookup(term);
+		return id == 0 ? -1 : id;
+	}
+
+	private boolean pendingMentions(OWLEntity entity) {
+		// Axioms waiting to be translated are checked directly, so signature checks do not force a flush
+		for (OWLAxiom axiom : pending) {
+			if (axiom.containsEntityInSignature(entity))
+				return true;
+		}
+		return false;
+	}
+
+	public synchronized boolean isClass(String iri) {
+		if (iri.equals(OWLRDFVocabulary.OWL_THING.getIRI().toString()))
+			return true;
+		if (pendingMentions(renderFactory.getOWLClass(IRI.create(iri))))
+			return true;
+		int id = dictionary.lookup("<" + iri + ">");
+		if (id == 0)
+			return false;
+		return has(id, RDF_TYPE, vocabulary(OWL_CLASS)) || has(id, RDFS_SUBCLASS_OF, 0) || has(0, RDFS_SUBCLASS_OF, id) || has(0, RDF_TYPE, id);
+	}
+
+	public synchronized boolean isIndividual(String iri) {
+		if (pendingMentions(renderFactory.getOWLNamedIndividual(IRI.create(iri))))
+			return true;
+		int id = dictionary.lookup("<" + iri + ">");
+		return id != 0 && has(id, RDF_TYPE, vocabulary(OWL_NAMED_INDIVIDUAL));
+	}
+
+	public synchronized boolean isInSignature(String iri) {
+		IRI entityIRI = IRI.create(iri);
+		for (OWLAxiom axiom : pending) {
+			if (axiom.signature().anyMatch(entity -> entity.getIRI().equals(entityIRI)))
+				return true;
+		}
+		int id = dictionary.lookup("<" + iri + ">");
+		return id != 0 && (walk(id, 0, 0) || walk(0, 0, id));
+	}
+
+	public synchronized List<String> getSubClasses(String iri, boolean direct) {
+		flushPending();
+		List<String> result = new ArrayList<String>();
+		int subClassOf = dictionary.lookup(RDFS_SUBCLASS_OF);
+		int root = lookupIRI(iri);
+		if (root == 0 || subClassOf == 0)
+			return result;
+		Set<Integer> seen = new HashSet<Integer>();
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(root);
+		while (!queue.isEmpty()) {
+			int parent = queue.poll();
+			match(0, subClassOf, parent, (rs, rp, ro) -> {
+				String term = dictionary.getTerm(rs);
+				if (isIRITerm(term) && seen.add(rs)) {
+					result.add(termToIRI(term));
+					if (!direct)
+						queue.add(rs);
+				}
+				return true;
+			});
+		}
+		return result;
+	}
+
+	public synchronized List<String> getSuperClasses(String iri) {
+		flushPending();
+		List<String> result = new ArrayList<String>();
+		int subClassOf = dictionary.lookup(RDFS_SUBCLASS_OF);
+		int id = lookupIRI(iri);
+		if (id != 0 && subClassOf != 0) {
+			match(id, subClassOf, 0, (rs, rp, ro) -> {
+				String term = dictionary.getTerm(ro);
+				if (isIRITerm(term))
+					result.add(termToIRI(term));
+				return true;
+			});
+		}
+		// Mirror the structural reasoner, which reports owl:Thing for classes without a named parent
+		if (result.isEmpty())
+			result.add(OWLRDFVocabulary.OWL_THING.getIRI().toString());
+		return result;
+	}
+
+	public synchronized List<String> getLabelledClasses(String label) {
+		flushPending();
+		List<String> result = new ArrayList<String>();
+		int labelId = dictionary.lookup(RDFS_LABEL);
+		if (labelId == 0)
+			return result;
+		String needle = label.toLowerCase();
+		Set<Integer> seen = new HashSet<Integer>();
+		match(0, labelId, 0, (rs, rp, ro) -> {
+			String subject = dictionary.getTerm(rs);
+			String object = dictionary.getTerm(ro);
+			if (isIRITerm(subject) && object.startsWith("\"") && literalLexicalForm(object).toLowerCase().contains(needle) && seen.add(rs)) {
+				String iri = termToIRI(subject);
+				if (isClass(iri))
+					result.add(iri);
+			}
+			return true;
+		});
+		return result;
+	}
+
+	public synchronized boolean addAxiom(OWLAxiom axiom) {
+		// Returns whether the axiom was new, an axiom already pending or stored is left alone
+		if (pending.contains(axiom) || isStored(axiom))
+			return false;
+		pending.add(axiom);
+		if (pending.size() >= PENDING_LIMIT)
+			flushPending();
+		return true;
+	}
+
+	private boolean isStored(OWLAxiom axiom) {
+		String[] key = keyTriple(axiom);
+		List<String[]> rendered = key != null ? Collections.singletonList(key) : render(Collections.singletonList(axiom));
+		boolean found = false;
+		for (String[] triple : rendered) {
+			if (triple[1].equals(RDF_TYPE) && triple[2].equals(OWL_ONTOLOGY))
+				continue;
+			if (triple[0].startsWith("_:") || triple[2].startsWith("_:"))
+				return false;
+			if (find(dictionary.lookup(triple[0]), dictionary.lookup(triple[1]), dictionary.lookup(triple[2])) == 0)
+				return false;
+			found = true;
+		}
+		return found;
+	}
+
+	private static String[] keyTriple(OWLAxiom axiom) {
+		// The one triple of an unannotated axiom between named entities, or null when the axiom has to be translated
+		if (axiom.isAnnotated())
+			return null;
+		if (axiom instanceof OWLClassAssertionAxiom) {
+			OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+			if (assertion.getIndividual().isNamed() && !assertion.getClassExpression().isAnonymous())
+				return triple(assertion.getIndividual().asOWLNamedIndividual().getIRI(), RDF_TYPE, assertion.getClassExpression().asOWLClass().getIRI());
+		} else if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			if (!subClassOf.getSubClass().isAnonymous() && !subClassOf.getSuperClass().isAnonymous())
+				return triple(subClassOf.getSubClass().asOWLClass().getIRI(), RDFS_SUBCLASS_OF, subClassOf.getSuperClass().asOWLClass().getIRI());
+		} else if (axiom instanceof OWLObjectPropertyAssertionAxiom) {
+			OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+			if (assertion.getSubject().isNamed() && assertion.getObject().isNamed() && assertion.getProperty().isNamed())
+				return triple(assertion.getSubject().asOWLNamedIndividual().getIRI(), "<" + assertion.getProperty().asOWLObjectProperty().getIRI() + ">",
+						assertion.getObject().asOWLNamedIndividual().getIRI());
+		} else if (axiom instanceof OWLAnnotationAssertionAxiom) {
+			OWLAnnotationAssertionAxiom assertion = (OWLAnnotationAssertionAxiom) axiom;
+			if (assertion.getSubject() instanceof IRI && assertion.getValue() instanceof IRI)
+				return triple((IRI) assertion.getSubject(), "<" + assertion.getProperty().getIRI() + ">", (IRI) assertion.getValue());
+		}
+		return null;
+	}
+
+	private static String[] triple(IRI subject, String predicate, IRI object) {
+		return new String[] { "<" + subject + ">", predicate, "<" + object + ">" };
+	}
+
+	public synchronized boolean removeAxiom(OWLAxiom axiom) {
+		flushPending();
+		// The renderer adds declarations of the entities of the axiom, which other axioms may share; they are removed for declaration axioms only
+		Set<String> declarations = new HashSet<String>();
+		if (!axiom.isOfType(AxiomType.DECLARATION)) {
+			List<OWLAxiom> declared = axiom.signature().map(entity -> renderFactory.getOWLDeclarationAxiom(entity)).collect(Collectors.toList());
+			for (String[] triple : render(declared))
+				declarations.add(triple[0] + " " + triple[1] + " " + triple[2]);
+		}
+		boolean removed = false;
+		for (String[] triple : render(Collections.singletonList(axiom))) {
+			if (declarations.contains(triple[0] + " " + triple[1] + " " + triple[2]) || (triple[1].equals(RDF_TYPE) && triple[2].equals(OWL_ONTOLOGY)))
+				continue;
+			if (triple[0].startsWith("_:") || triple[2].startsWith("_:")) {
+				throw new RuntimeException("Error: Removing axioms with anonymous parts is not supported by the disk store.");
+			}
+			int s = dictionary.lookup(triple[0]);
+			int p = dictionary.lookup(triple[1]);
+			int o = dictionary.lookup(triple[2]);
+			removed |= remove(s, p, o);
+		}
+		return removed;
+	}
+
+	public synchronized void flushPending() {
+		if (pending.isEmpty())
+			return;
+		List<OWLAxiom> batch = new ArrayList<OWLAxiom>(pending);
+		pending.clear();
+		for (String[] triple : render(batch)) {
+			// The renderer emits a header for the temporary ontology, which is not part of the stored data
+			if (triple[1].equals(RDF_TYPE) && triple[2].equals(OWL_ONTOLOGY))
+				continue;
+			add(triple[0], triple[1], triple[2]);
+		}
+	}
+
+	private List<String[]> render(Collection<? extends OWLAxiom> axioms) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			OWLOntology tmp = renderManager.createOntology();
+			renderManager.addAxioms(tmp, axioms.stream());
+			renderManager.saveOntology(tmp, new NTriplesDocumentFormat(), out);
+			renderManager.removeOntology(tmp);
+			List<String[]> result = new ArrayList<String[]>();
+			readNTriples(new ByteArrayInputStream(out.toByteArray()), result);
+			return result;
+		} catch (OWLOntologyCreationException | OWLOntologyStorageException | IOException e) {
+			throw new RuntimeException("Error: Could not translate axioms to triples.", e);
+		}
+	}
+
+	private void readNTriples(InputStream in, List<String[]> result) throws IOException {
+		Map<String, String> blankNodes = new HashMap<String, String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] triple = parseNTriple(line);
+			if (triple != null)
+				result.add(relabelBlankNodes(triple, blankNodes));
+		}
+	}
+
+	private String[] relabelBlankNodes(String[] triple, Map<String, String> blankNodes) {
+		// Blank node labels are only unique within one document, give them store wide labels
+		for (int i = 0; i < 3; i += 2) {
+			if (triple[i].startsWith("_:")) {
+				String label = blankNodes.get(triple[i]);
+				if (label == null) {
+					label = "_:b" + (++blankCounter);
+					blankNodes.put(triple[i], label);
+				}
+				triple[i] = label;
+			}
+		}
+		return triple;
+	}
+
+	public static String[] parseNTriple(String line) {
+		line = line.trim();
+		if (line.isEmpty() || line.startsWith("#"))
+			return null;
+		int subjectEnd = line.startsWith("<") ? line.indexOf('>') + 1 : line.indexOf(' ');
+		String subject = line.substring(0, subjectEnd);
+		int predicateStart = line.indexOf('<', subjectEnd);
+		int predicateEnd = line.indexOf('>', predicateStart) + 1;
+		String predicate = line.substring(predicateStart, predicateEnd);
+		String object = line.substring(predicateEnd).trim();
+		if (object.endsWith("."))
+			object = object.substring(0, object.length() - 1).trim();
+		return new String[] { subject, predicate, object };
+	}
+
+	public synchronized void importOntology(OWLOntology source) throws IOException {
+		// Stream the ontology through a temporary N-Triples file so that the triples never sit on the heap twice
+		File tmpFile = File.createTempFile("import", ".nt", directory);
+		try {
+			try (OutputStream out = new FileOutputStream(tmpFile)) {
+				source.getOWLOntologyManager().saveOntology(source, new NTriplesDocumentFormat(), out);
+			} catch (OWLOntologyStorageException e) {
+				throw new IOException("Error: Could not render the ontology as triples.", e);
+			}
+			Map<String, String> blankNodes = new HashMap<String, String>();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(tmpFile), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] triple = parseNTriple(line);
+					if (triple == null)
+						continue;
+					relabelBlankNodes(triple, blankNodes);
+					add(triple[0], triple[1], triple[2]);
+					if (ontologyHeader == 0 && triple[1].equals(RDF_TYPE) && triple[2].equals(OWL_ONTOLOGY))
+						ontologyHeader = dictionary.lookup(triple[0]);
+				}
+			}
+		} finally {
+			tmpFile.delete();
+		}
+		flush();
+	}
+
+	public synchronized void addImport(String importIRI) {
+		if (ontologyHeader == 0) {
+			ontologyHeader = dictionary.intern("_:b" + (++blankCounter));
+			add(ontologyHeader, dictionary.intern(RDF_TYPE), dictionary.intern(OWL_ONTOLOGY));
+		}
+		add(ontologyHeader, dictionary.intern(OWL_IMPORTS), dictionary.intern("<" + importIRI + ">"));
+	}
+
+	public synchronized void exportNTriples(OutputStream outputStream) throws IOException {
+		flushPending();
+		Writer out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		for (int r = 1; r <= recordCount; r++) {
+			long position = (long) r * RECORD_SIZE;
+			int p = triples.readInt(position + 4);
+			if (p <= 0)
+				continue;
+			out.write(dictionary.getTerm(triples.readInt(position)));
+			out.write(' ');
+			out.write(dictionary.getTerm(p));
+			out.write(' ');
+			out.write(dictionary.getTerm(triples.readInt(position + 8)));
+			out.write(" .\n");
+		}
+		out.flush();
+	}
+
+	public synchronized void flush() throws IOException {
+		flushPending();
+		dictionary.flush();
+		triples.flush();
+		headS.flush();
+		headP.flush();
+		headO.flush();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, "store.meta")))) {
+			out.writeInt(recordCount);
+			out.writeInt(liveCount);
+			out.writeLong(blankCounter);
+			out.writeInt(ontologyHeader);
+		}
+	}
+
+	public synchronized void close() throws IOException {
+		flush();
+		dictionary.close();
+		triples.close();
+		headS.close();
+		headP.close();
+		headO.close();
+	}
+}
\ No newline at end of file
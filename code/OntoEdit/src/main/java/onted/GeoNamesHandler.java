@@ -24,6 +24,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
@@ -82,6 +83,8 @@ public class GeoNamesHandler {
         
         HashMap<String, String> geoData = new HashMap<String, String>();
         String adminLevel = "ADM" + adminDivLevel;
+        OntologyEvents.GeoNamesLookup event = new OntologyEvents.GeoNamesLookup();
+        event.begin();
 
         try {
             String response = Request.Get(requestUrl)
@@ -114,11 +117,21 @@ public class GeoNamesHandler {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        commitLookup(event, "childrenJSON", parentPlaceID, geoData.size());
 		return geoData;
     }
+
+    private static void commitLookup(OntologyEvents.GeoNamesLookup event, String operation, String source, int entries) {
+    	event.operation = operation;
+    	event.source = source;
+    	event.entities = entries;
+    	event.commit();
+    }
     
     public static HashMap<String, String> getCityGeoNamesIDs(ArrayList<String> cityStatePairs, String username) {
         HashMap<String, String> cityIDs = new HashMap<>();
+        OntologyEvents.GeoNamesLookup event = new OntologyEvents.GeoNamesLookup();
+        event.begin();
 
         for (String cityStatePair : cityStatePairs) {
             try {
@@ -160,6 +173,7 @@ public class GeoNamesHandler {
             }
         }
 
+        commitLookup(event, "searchJSON", cityStatePairs.size() + " cities", cityIDs.size());
         return cityIDs;
     }
     
@@ -200,6 +214,8 @@ public class GeoNamesHandler {
 	
     public static Object getObject(String objectFile) {
     	Object myObject = null;
+    	OntologyEvents.GeoNamesLookup event = new OntologyEvents.GeoNamesLookup();
+    	event.begin();
         try {
             FileInputStream fileIn = new FileInputStream(objectFile);
             ObjectInputStream in = new ObjectInputStream(fileIn);
@@ -214,6 +230,7 @@ public class GeoNamesHandler {
             c.printStackTrace();
             return myObject;
          }
+        commitLookup(event, "file", objectFile, myObject instanceof Map ? ((Map<?, ?>) myObject).size() : 1);
 		return myObject;
     }
     
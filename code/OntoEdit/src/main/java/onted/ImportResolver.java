@@ -0,0 +1,266 @@
+/* Resolves owl:imports offline and loads them lazily. Import IRIs are mapped to local documents through an XML catalog (the catalog-v001.xml written by
+ * Protege) and, failing that, through a mirror directory which is scanned for the ontology IRIs of the files it holds; the network is never used.
+ * The first time an import is seen its document is parsed once and written to a binary cache (AxiomCodec encoded axioms plus a separate signature
+ * file). Registering an import afterwards only reads its signature, and the axioms are decoded into the manager when a lookup first touches one of
+ * the entities the import declares. A cache entry is rebuilt whenever the length or modification time of its source document changes.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.util.AutoIRIMapper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class ImportResolver implements OWLOntologyIRIMapper {
+	private static final long serialVersionUID = 1L;
+	private static final int SIGNATURE_MAGIC = 0x4F454953;
+	private static final int AXIOMS_MAGIC = 0x4F454941;
+	// Protege prefixes the names of catalog entries it could not use (several documents declaring the same ontology IRI) with this marker
+	private static final String DUPLICATE_ENTRY = "duplicate:";
+
+	private final OWLDataFactory factory;
+	private final File cacheDirectory;
+	private final Map<IRI, IRI> catalogEntries = new HashMap<IRI, IRI>();
+	private final AutoIRIMapper mirrorMapper;
+	// Entity IRI -> import declaring it, only for imports which are registered but not loaded yet
+	// Concurrent, so that the lookups asking whether an entity needs an import do not wait for the resolver
+	private final Map<IRI, IRI> pendingEntities = new ConcurrentHashMap<IRI, IRI>();
+	private final Map<IRI, Set<IRI>> pendingSignatures = new HashMap<IRI, Set<IRI>>();
+	private final Map<IRI, List<IRI>> nestedImports = new HashMap<IRI, List<IRI>>();
+	private final Set<IRI> loaded = new HashSet<IRI>();
+
+	public ImportResolver(String catalogFile, String mirrorDirectory, String cacheDirectory, OWLDataFactory factory) throws IOException {
+		this.factory = factory;
+		this.cacheDirectory = new File(cacheDirectory);
+		this.cacheDirectory.mkdirs();
+		if (catalogFile != null && new File(catalogFile).exists())
+			readCatalog(new File(catalogFile));
+		File mirror = mirrorDirectory == null ? null : new File(mirrorDirectory);
+		this.mirrorMapper = mirror != null && mirror.isDirectory() ? new AutoIRIMapper(mirror, true) : null;
+	}
+
+	private void readCatalog(File catalogFile) throws IOException {
+		Document catalog;
+		try {
+			DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+			builderFactory.setNamespaceAware(true);
+			DocumentBuilder builder = builderFactory.newDocumentBuilder();
+			catalog = builder.parse(catalogFile);
+		} catch (Exception e) {
+			throw new IOException("Error: Could not parse the catalog " + catalogFile + ".", e);
+		}
+		NodeList entries = catalog.getElementsByTagNameNS("*", "uri");
+		for (int i = 0; i < entries.getLength(); i++) {
+			Element entry = (Element) entries.item(i);
+			String name = entry.getAttribute("name");
+			String location = entry.getAttribute("uri");
+			if (name.isEmpty() || location.isEmpty() || name.startsWith(DUPLICATE_ENTRY))
+				continue;
+			// Relative locations are resolved against the xml:base of the enclosing elements and then the catalog itself
+			URI base = catalogFile.getAbsoluteFile().toURI();
+			for (Node node = entry; node instanceof Element; node = node.getParentNode()) {
+				String xmlBase = ((Element) node).getAttributeNS("http://www.w3.org/XML/1998/namespace", "base");
+				if (!xmlBase.isEmpty()) {
+					base = base.resolve(xmlBase);
+					break;
+				}
+			}
+			catalogEntries.put(IRI.create(name), IRI.create(base.resolve(location)));
+		}
+	}
+
+	@Override
+	public IRI getDocumentIRI(IRI ontologyIRI) {
+		IRI document = catalogEntries.get(ontologyIRI);
+		if (document == null && mirrorMapper != null)
+			document = mirrorMapper.getDocumentIRI(ontologyIRI);
+		return document;
+	}
+
+	public synchronized void register(IRI importIRI) throws IOException, OWLOntologyCreationException {
+		// Reads the signature of the import (building its cache entry first if needed) so that lookups can tell when it is required
+		if (loaded.contains(importIRI) || pendingSignatures.containsKey(importIRI))
+			return;
+		File source = sourceFile(importIRI);
+		File signatureFile = cacheFile(importIRI, ".sig");
+		if (!isCacheValid(signatureFile, source)) {
+			if (source == null)
+				throw new RuntimeException("Error: No local copy of the import " + importIRI + ", add it to the catalog or the mirror directory.");
+			buildCache(importIRI, source);
+		}
+		Set<IRI> signature = new HashSet<IRI>();
+		List<IRI> imports = new ArrayList<IRI>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(signatureFile), 1 << 16))) {
+			in.readInt();
+			in.readLong();
+			in.readLong();
+			AxiomCodec codec = new AxiomCodec(factory);
+			int importCount = AxiomCodec.readVarInt(in);
+			for (int i = 0; i < importCount; i++)
+				imports.add(codec.readIRI(in));
+			int entityCount = AxiomCodec.readVarInt(in);
+			for (int i = 0; i < entityCount; i++)
+				signature.add(codec.readIRI(in));
+		}
+		pendingSignatures.put(importIRI, signature);
+		nestedImports.put(importIRI, imports);
+		for (IRI entity : signature)
+			pendingEntities.putIfAbsent(entity, importIRI);
+		// Imports of the import are resolved the same way, whenever there is a local copy of them
+		for (IRI nested : imports) {
+			if (sourceFile(nested) != null || cacheFile(nested, ".sig").exists())
+				register(nested);
+		}
+	}
+
+	public IRI importDeclaring(IRI entityIRI) {
+		return pendingEntities.get(entityIRI);
+	}
+
+	public synchronized boolean isLoaded(IRI importIRI) {
+		return loaded.contains(importIRI);
+	}
+
+	public synchronized OWLOntology load(IRI importIRI, OWLOntologyManager manager) throws IOException, OWLOntologyCreationException {
+		// Decodes the cached axioms into a new ontology of the manager, which makes it part of the imports closure of every ontology importing it
+		OWLOntology imported = manager.getOntology(importIRI);
+		if (loaded.contains(importIRI) || imported != null) {
+			forget(importIRI);
+			return imported;
+		}
+		Set<IRI> signature = pendingSignatures.get(importIRI);
+		if (signature == null)
+			throw new RuntimeException("Error: The import " + importIRI + " has not been registered.");
+		imported = manager.createOntology(importIRI);
+		for (IRI nested : nestedImports.get(importIRI))
+			manager.applyChange(new AddImport(imported, factory.getOWLImportsDeclaration(nested)));
+		List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile(importIRI, ".axioms")), 1 << 16))) {
+			if (in.readInt() != AXIOMS_MAGIC)
+				throw new IOException("Error: The cached axioms of " + importIRI + " are corrupt.");
+			AxiomCodec codec = new AxiomCodec(factory);
+			int count = in.readInt();
+			for (int i = 0; i < count; i++)
+				axioms.add(codec.readAxiom(in));
+		}
+		manager.addAxioms(imported, axioms.stream());
+		forget(importIRI);
+		return imported;
+	}
+
+	private void forget(IRI importIRI) {
+		loaded.add(importIRI);
+		Set<IRI> signature = pendingSignatures.remove(importIRI);
+		if (signature == null)
+			return;
+		for (IRI entity : signature)
+			pendingEntities.remove(entity, importIRI);
+		// Entities shared with another pending import still point to it
+		for (Map.Entry<IRI, Set<IRI>> pending : pendingSignatures.entrySet()) {
+			for (IRI entity : pending.getValue()) {
+				if (signature.contains(entity))
+					pendingEntities.putIfAbsent(entity, pending.getKey());
+			}
+		}
+	}
+
+	private File sourceFile(IRI importIRI) {
+		IRI document = getDocumentIRI(importIRI);
+		if (document == null || !"file".equals(document.getScheme()))
+			return null;
+		File file = new File(document.toURI());
+		return file.exists() ? file : null;
+	}
+
+	private File cacheFile(IRI importIRI, String suffix) {
+		return new File(cacheDirectory, UUID.nameUUIDFromBytes(importIRI.toString().getBytes(StandardCharsets.UTF_8)) + suffix);
+	}
+
+	private boolean isCacheValid(File signatureFile, File source) throws IOException {
+		if (!signatureFile.exists())
+			return false;
+		// Without a source document the cache is all there is, so it is used as it is
+		if (source == null)
+			return true;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(signatureFile))) {
+			return in.readInt() == SIGNATURE_MAGIC && in.readLong() == source.length() && in.readLong() == source.lastModified();
+		}
+	}
+
+	private void buildCache(IRI importIRI, File source) throws IOException, OWLOntologyCreationException {
+		// Parse in a separate manager: the axioms of the import must not reach the caller's manager until the import is needed
+		OWLOntologyManager parseManager = OWLManager.createOWLOntologyManager();
+		parseManager.setOntologyLoaderConfiguration(parseManager.getOntologyLoaderConfiguration()
+				.setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT));
+		// Nested imports are cached on their own, point them at a document that does not exist instead of letting the parser fetch them
+		IRI missingDocument = IRI.create(new File(cacheDirectory, "missing.owl").getAbsoluteFile());
+		parseManager.getIRIMappers().set(ontologyIRI -> ontologyIRI.equals(importIRI) ? IRI.create(source) : missingDocument);
+		OWLOntology parsed = parseManager.loadOntologyFromOntologyDocument(source);
+		List<OWLAxiom> axioms = parsed.axioms().collect(Collectors.toList());
+		List<IRI> imports = parsed.importsDeclarations().map(OWLImportsDeclaration::getIRI).collect(Collectors.toList());
+		Set<IRI> signature = parsed.signature(Imports.EXCLUDED).map(OWLEntity::getIRI).collect(Collectors.toSet());
+
+		// The signature is written last so that an interrupted build never leaves a valid looking entry behind
+		writeAtomically(cacheFile(importIRI, ".axioms"), out -> {
+			out.writeInt(AXIOMS_MAGIC);
+			out.writeInt(axioms.size());
+			AxiomCodec codec = new AxiomCodec(factory);
+			for (OWLAxiom axiom : axioms)
+				codec.writeAxiom(out, axiom);
+		});
+		writeAtomically(cacheFile(importIRI, ".sig"), out -> {
+			out.writeInt(SIGNATURE_MAGIC);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			AxiomCodec codec = new AxiomCodec(factory);
+			AxiomCodec.writeVarInt(out, imports.size());
+			for (IRI nested : imports)
+				codec.writeIRI(out, nested);
+			AxiomCodec.writeVarInt(out, signature.size());
+			for (IRI entity : signature)
+				codec.writeIRI(out, entity);
+		});
+	}
+
+	private interface CacheWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private static void writeAtomically(File target, CacheWriter writer) throws IOException {
+		File temp = new File(target.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			writer.write(out);
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,428 @@
+/* Routes a location to its competent courts: for a geonameId, a place IRI or a place label (district, city or state) it gives the district court,
+ * the high court and the Supreme Court in one lookup. Everything is resolved when the resolver is built, from the locatedIn, containsPlace and
+ * precededBy assertions and the class assertions of the three court levels:
+ *   district court   a district court located in the place, or else in a place containing it
+ *   high court       the high court preceding that district court; without one, a high court located in the place, or else the high court every
+ *                    place contained in it agrees on (so a state gets the high court of its districts, including the states sharing a high court)
+ *   Supreme Court    the supreme court preceding that high court, or else the only supreme court of the ontology
+ * A level that cannot be resolved is null. The result is a handful of int arrays indexed by place id, and two open addressing tables from
+ * geonameIds and from place IRIs and normalized labels (normalized as by CitationLinker) to place ids, so a lookup is a hash probe and three array
+ * reads, without locks. A label shared by several places resolves to one having a district court, then to the first by IRI.
+ * The resolver is a snapshot: it does not follow later changes to the ontology. save() and load() keep it in a file next to the ontology.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class JurisdictionResolver {
+	private static final int MAGIC = 0x4F454A52;
+	private static final String LOCATED_IN = "http://www.geonames.org/ontology#locatedIn";
+	private static final String CONTAINS_PLACE = "http://schema.org/containsPlace";
+	private static final String GEONAMES_PREFIX = "http://sws.geonames.org/";
+	private static final int DISTRICT = 1;
+	private static final int HIGH = 2;
+	private static final int SUPREME = 3;
+
+	// The courts resolved to by a place
+	public static class Jurisdiction {
+		public final String place;
+		public final String districtCourt;
+		public final String highCourt;
+		public final String supremeCourt;
+
+		Jurisdiction(String place, String districtCourt, String highCourt, String supremeCourt) {
+			this.place = place;
+			this.districtCourt = districtCourt;
+			this.highCourt = highCourt;
+			this.supremeCourt = supremeCourt;
+		}
+
+		@Override
+		public String toString() {
+			return place + " -> " + districtCourt + " -> " + highCourt + " -> " + supremeCourt;
+		}
+	}
+
+	private final String[] places;
+	private final String[] courts;
+	// Court ids (or -1) of every place
+	private final int[] districtCourts;
+	private final int[] highCourts;
+	private final int[] supremeCourts;
+	// The lookup keys and the place each resolves to, kept in this order in the file
+	private final String[] labels;
+	private final int[] labelPlaces;
+
+	// geonameId -> place id and IRI or normalized label -> place id, open addressing with linear probing
+	private final int[] geonameKeys;
+	private final int[] geonamePlaces;
+	private final String[] stringKeys;
+	private final int[] stringPlaces;
+
+	private JurisdictionResolver(String[] places, String[] courts, int[] districtCourts, int[] highCourts, int[] supremeCourts, String[] labels,
+			int[] labelPlaces) {
+		this.places = places;
+		this.courts = courts;
+		this.districtCourts = districtCourts;
+		this.highCourts = highCourts;
+		this.supremeCourts = supremeCourts;
+		this.labels = labels;
+		this.labelPlaces = labelPlaces;
+
+		geonameKeys = new int[tableSize(places.length)];
+		geonamePlaces = new int[geonameKeys.length];
+		for (int place = 0; place < places.length; place++) {
+			int geonameId = geonameIdOf(places[place]);
+			if (geonameId > 0) {
+				int slot = geonameSlot(geonameId);
+				if (geonameKeys[slot] == 0) {
+					geonameKeys[slot] = geonameId;
+					geonamePlaces[slot] = place;
+				}
+			}
+		}
+		stringKeys = new String[tableSize(places.length + labels.length)];
+		stringPlaces = new int[stringKeys.length];
+		for (int place = 0; place < places.length; place++)
+			putString(places[place], place);
+		for (int i = 0; i < labels.length; i++)
+			putString(labels[i], labelPlaces[i]);
+	}
+
+	private static int tableSize(int entries) {
+		// A power of two at least twice the entries, so probe sequences stay short
+		int size = 16;
+		while (size < entries * 2)
+			size <<= 1;
+		return size;
+	}
+
+	private int geonameSlot(int geonameId) {
+		int mask = geonameKeys.length - 1;
+		int slot = (geonameId * 0x9E3779B9 >>> 7) & mask;
+		while (geonameKeys[slot] != 0 && geonameKeys[slot] != geonameId)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private int stringSlot(String key) {
+		int mask = stringKeys.length - 1;
+		int hash = key.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (stringKeys[slot] != null && !stringKeys[slot].equals(key))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void putString(String key, int place) {
+		// The first place given a key keeps it
+		int slot = stringSlot(key);
+		if (stringKeys[slot] == null) {
+			stringKeys[slot] = key;
+			stringPlaces[slot] = place;
+		}
+	}
+
+	static int geonameIdOf(String placeIRI) {
+		// The id in http://sws.geonames.org/<id>/, or -1 for other IRIs
+		if (!placeIRI.startsWith(GEONAMES_PREFIX))
+			return -1;
+		int end = placeIRI.endsWith("/") ? placeIRI.length() - 1 : placeIRI.length();
+		return parseGeonameId(placeIRI, GEONAMES_PREFIX.length(), end);
+	}
+
+	private static int parseGeonameId(String text, int start, int end) {
+		if (start >= end || end - start > 9)
+			return -1;
+		int id = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			id = id * 10 + (c - '0');
+		}
+		return id > 0 ? id : -1;
+	}
+
+	public static JurisdictionResolver build(OWLOntology ontology, String districtCourtClass, String highCourtClass, String supremeCourtClass,
+			String precededByProperty) {
+		// Court levels from the class assertions, and the links as sorted sets so the result does not depend on axiom order
+		Map<String, Integer> levels = new HashMap<String, Integer>();
+		ontology.axioms(AxiomType.CLASS_ASSERTION, Imports.INCLUDED).forEach(assertion -> {
+			if (assertion.getClassExpression().isAnonymous() || !assertion.getIndividual().isNamed())
+				return;
+			String owlClass = assertion.getClassExpression().asOWLClass().getIRI().toString();
+			int level = owlClass.equals(districtCourtClass) ? DISTRICT : owlClass.equals(highCourtClass) ? HIGH : owlClass.equals(supremeCourtClass) ? SUPREME : 0;
+			if (level > 0)
+				levels.put(assertion.getIndividual().asOWLNamedIndividual().getIRI().toString(), level);
+		});
+		Map<String, Set<String>> courtsIn = new HashMap<String, Set<String>>();
+		Map<String, Set<String>> containedIn = new HashMap<String, Set<String>>();
+		Map<String, Set<String>> contains = new HashMap<String, Set<String>>();
+		Map<String, Set<String>> precededBy = new HashMap<String, Set<String>>();
+		Set<String> placeSet = new TreeSet<String>();
+		ontology.axioms(AxiomType.OBJECT_PROPERTY_ASSERTION, Imports.INCLUDED).forEach(assertion -> {
+			if (assertion.getProperty().isAnonymous() || !assertion.getSubject().isNamed() || !assertion.getObject().isNamed())
+				return;
+			String property = assertion.getProperty().asOWLObjectProperty().getIRI().toString();
+			String subject = assertion.getSubject().asOWLNamedIndividual().getIRI().toString();
+			String object = assertion.getObject().asOWLNamedIndividual().getIRI().toString();
+			if (property.equals(LOCATED_IN)) {
+				link(courtsIn, object, subject);
+				placeSet.add(object);
+			}
+			else if (property.equals(CONTAINS_PLACE)) {
+				link(containedIn, object, subject);
+				link(contains, subject, object);
+				placeSet.add(subject);
+				placeSet.add(object);
+			}
+			else if (property.equals(precededByProperty)) {
+				link(precededBy, subject, object);
+			}
+		});
+		// Courts are not places, even those other individuals are located in
+		placeSet.removeIf(levels::containsKey);
+
+		String[] places = placeSet.toArray(new String[0]);
+		Map<String, Integer> placeIds = new HashMap<String, Integer>();
+		for (int place = 0; place < places.length; place++)
+			placeIds.put(places[place], place);
+		List<String> courtList = new ArrayList<String>();
+		Map<String, Integer> courtIds = new HashMap<String, Integer>();
+		int[] districtCourts = new int[places.length];
+		int[] highCourts = new int[places.length];
+		int[] supremeCourts = new int[places.length];
+
+		// District courts and the high courts found at the place itself
+		for (int place = 0; place < places.length; place++) {
+			String districtCourt = courtAt(places[place], DISTRICT, courtsIn, levels);
+			for (String container : containedIn.getOrDefault(places[place], Collections.emptySet())) {
+				if (districtCourt == null)
+					districtCourt = courtAt(container, DISTRICT, courtsIn, levels);
+			}
+			String highCourt = districtCourt != null ? preceding(districtCourt, HIGH, precededBy, levels) : null;
+			if (highCourt == null)
+				highCourt = courtAt(places[place], HIGH, courtsIn, levels);
+			districtCourts[place] = courtId(districtCourt, courtList, courtIds);
+			highCourts[place] = courtId(highCourt, courtList, courtIds);
+		}
+		// Then the places without one take the high court all the places they contain agree on
+		int[] ownHighCourts = highCourts.clone();
+		for (int place = 0; place < places.length; place++) {
+			if (ownHighCourts[place] >= 0)
+				continue;
+			int agreed = -1;
+			for (String contained : contains.getOrDefault(places[place], Collections.emptySet())) {
+				Integer containedId = placeIds.get(contained);
+				int highCourt = containedId != null ? ownHighCourts[containedId] : -1;
+				if (highCourt < 0)
+					continue;
+				if (agreed >= 0 && agreed != highCourt) {
+					agreed = -1;
+					break;
+				}
+				agreed = highCourt;
+			}
+			highCourts[place] = agreed;
+		}
+		String onlySupremeCourt = null;
+		int supremeCount = 0;
+		for (Map.Entry<String, Integer> level : new TreeMap<String, Integer>(levels).entrySet()) {
+			if (level.getValue() == SUPREME && supremeCount++ == 0)
+				onlySupremeCourt = level.getKey();
+		}
+		for (int place = 0; place < places.length; place++) {
+			String supremeCourt = highCourts[place] >= 0 ? preceding(courtList.get(highCourts[place]), SUPREME, precededBy, levels) : null;
+			if (supremeCourt == null && supremeCount == 1)
+				supremeCourt = onlySupremeCourt;
+			supremeCourts[place] = courtId(supremeCourt, courtList, courtIds);
+		}
+
+		// Lookup labels: a place with a district court goes first, so it wins a label it shares with others
+		Map<String, List<String>> placeLabels = new HashMap<String, List<String>>();
+		ontology.axioms(AxiomType.ANNOTATION_ASSERTION, Imports.INCLUDED).forEach(assertion -> {
+			if (assertion.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_LABEL.getIRI()) && assertion.getValue() instanceof OWLLiteral
+					&& assertion.getSubject() instanceof IRI && placeIds.containsKey(assertion.getSubject().toString()))
+				placeLabels.computeIfAbsent(assertion.getSubject().toString(), key -> new ArrayList<String>())
+						.add(CitationLinker.normalize(((OWLLiteral) assertion.getValue()).getLiteral()));
+		});
+		List<String> labels = new ArrayList<String>();
+		List<Integer> labelPlaces = new ArrayList<Integer>();
+		for (boolean withDistrictCourt : new boolean[] { true, false }) {
+			for (int place = 0; place < places.length; place++) {
+				if ((districtCourts[place] >= 0) != withDistrictCourt)
+					continue;
+				List<String> normalized = placeLabels.getOrDefault(places[place], Collections.emptyList());
+				Collections.sort(normalized);
+				for (String label : normalized) {
+					if (!label.isEmpty()) {
+						labels.add(label);
+						labelPlaces.add(place);
+					}
+				}
+			}
+		}
+		return new JurisdictionResolver(places, courtList.toArray(new String[0]), districtCourts, highCourts, supremeCourts,
+				labels.toArray(new String[0]), labelPlaces.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	private static void link(Map<String, Set<String>> links, String from, String to) {
+		links.computeIfAbsent(from, key -> new TreeSet<String>()).add(to);
+	}
+
+	private static String courtAt(String place, int level, Map<String, Set<String>> courtsIn, Map<String, Integer> levels) {
+		for (String court : courtsIn.getOrDefault(place, Collections.emptySet())) {
+			if (levels.getOrDefault(court, 0) == level)
+				return court;
+		}
+		return null;
+	}
+
+	private static String preceding(String court, int level, Map<String, Set<String>> precededBy, Map<String, Integer> levels) {
+		for (String above : precededBy.getOrDefault(court, Collections.emptySet())) {
+			if (levels.getOrDefault(above, 0) == level)
+				return above;
+		}
+		return null;
+	}
+
+	private static int courtId(String court, List<String> courtList, Map<String, Integer> courtIds) {
+		if (court == null)
+			return -1;
+		Integer id = courtIds.get(court);
+		if (id == null) {
+			id = courtList.size();
+			courtList.add(court);
+			courtIds.put(court, id);
+		}
+		return id;
+	}
+
+	public int placeId(String location) {
+		// A geonameId, a place IRI or a label; -1 if the location is not known
+		int geonameId = parseGeonameId(location, 0, location.length());
+		if (geonameId > 0)
+			return placeId(geonameId);
+		int slot = stringSlot(location);
+		if (stringKeys[slot] != null)
+			return stringPlaces[slot];
+		slot = stringSlot(CitationLinker.normalize(location));
+		return stringKeys[slot] != null ? stringPlaces[slot] : -1;
+	}
+
+	public int placeId(int geonameId) {
+		if (geonameId <= 0)
+			return -1;
+		int slot = geonameSlot(geonameId);
+		return geonameKeys[slot] != 0 ? geonamePlaces[slot] : -1;
+	}
+
+	public Jurisdiction resolve(String location) {
+		return jurisdiction(placeId(location));
+	}
+
+	public Jurisdiction resolve(int geonameId) {
+		return jurisdiction(placeId(geonameId));
+	}
+
+	private Jurisdiction jurisdiction(int place) {
+		if (place < 0)
+			return null;
+		return new Jurisdiction(places[place], court(districtCourts[place]), court(highCourts[place]), court(supremeCourts[place]));
+	}
+
+	public String getDistrictCourt(int placeId) {
+		return court(districtCourts[placeId]);
+	}
+
+	public String getHighCourt(int placeId) {
+		return court(highCourts[placeId]);
+	}
+
+	public String getSupremeCourt(int placeId) {
+		return court(supremeCourts[placeId]);
+	}
+
+	private String court(int courtId) {
+		return courtId >= 0 ? courts[courtId] : null;
+	}
+
+	public int size() {
+		return places.length;
+	}
+
+	public void save(File file) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			AxiomCodec.writeVarInt(out, courts.length);
+			for (String court : courts)
+				out.writeUTF(court);
+			AxiomCodec.writeVarInt(out, places.length);
+			for (int place = 0; place < places.length; place++) {
+				out.writeUTF(places[place]);
+				// Court ids shifted by one, so that none (-1) fits the unsigned varint
+				AxiomCodec.writeVarInt(out, districtCourts[place] + 1);
+				AxiomCodec.writeVarInt(out, highCourts[place] + 1);
+				AxiomCodec.writeVarInt(out, supremeCourts[place] + 1);
+			}
+			AxiomCodec.writeVarInt(out, labels.length);
+			for (int i = 0; i < labels.length; i++) {
+				out.writeUTF(labels[i]);
+				AxiomCodec.writeVarInt(out, labelPlaces[i]);
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public static JurisdictionResolver load(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Error: " + file + " is not a jurisdiction table.");
+			String[] courts = new String[AxiomCodec.readVarInt(in)];
+			for (int i = 0; i < courts.length; i++)
+				courts[i] = in.readUTF();
+			int placeCount = AxiomCodec.readVarInt(in);
+			String[] places = new String[placeCount];
+			int[] districtCourts = new int[placeCount];
+			int[] highCourts = new int[placeCount];
+			int[] supremeCourts = new int[placeCount];
+			for (int place = 0; place < placeCount; place++) {
+				places[place] = in.readUTF();
+				districtCourts[place] = AxiomCodec.readVarInt(in) - 1;
+				highCourts[place] = AxiomCodec.readVarInt(in) - 1;
+				supremeCourts[place] = AxiomCodec.readVarInt(in) - 1;
+			}
+			String[] labels = new String[AxiomCodec.readVarInt(in)];
+			int[] labelPlaces = new int[labels.length];
+			for (int i = 0; i < labels.length; i++) {
+				labels[i] = in.readUTF();
+				labelPlaces[i] = AxiomCodec.readVarInt(in);
+			}
+			return new JurisdictionResolver(places, courts, districtCourts, highCourts, supremeCourts, labels, labelPlaces);
+		}
+	}
+}
\ No newline at end of file
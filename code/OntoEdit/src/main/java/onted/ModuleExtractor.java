@@ -0,0 +1,152 @@
+/* Extraction of syntactic locality based modules (OWL API SyntacticLocalityModuleExtractor) from the ontology and its imports. A module for a seed
+ * signature holds every axiom that can affect the meaning of the seed entities, together with the declarations and annotations (labels, definitions)
+ * of the entities it mentions, so a client needing only the court hierarchy or the cheque bounce classes can load a small file instead of the whole
+ * ontology. STAR modules (the default) are the smallest; TOP modules keep the seeds with everything below them (subclasses and their instances),
+ * which suits slices such as the court hierarchy, and BOT modules keep what lies above them.
+ * Seeds are given as IRIs or as exact labels (case insensitive). Modules are cached by module type and seed entities, and the cache is emptied
+ * whenever an axiom is added or removed through MyOntology. The extractor is built once from a snapshot of the axioms and shared by the threads extracting
+ * several seed sets in parallel, so the ontology must not be changed while extractModules runs.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import uk.ac.manchester.cs.owlapi.modularity.SyntacticLocalityModuleExtractor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class ModuleExtractor implements AxiomListener {
+	private final OWLOntology ontology;
+	private final ModuleType moduleType;
+	private final Map<String, Set<OWLAxiom>> cache = new ConcurrentHashMap<String, Set<OWLAxiom>>();
+	// Built on first use after every change
+	private volatile SyntacticLocalityModuleExtractor extractor;
+	private volatile Map<String, Set<IRI>> labels;
+
+	public ModuleExtractor(OWLOntology ontology, ModuleType moduleType) {
+		this.ontology = ontology;
+		this.moduleType = moduleType;
+	}
+
+	@Override
+	public void axiomAdded(OWLAxiom axiom) {
+		invalidate();
+	}
+
+	@Override
+	public void axiomRemoved(OWLAxiom axiom) {
+		invalidate();
+	}
+
+	private synchronized void invalidate() {
+		if (extractor != null || !cache.isEmpty()) {
+			extractor = null;
+			labels = null;
+			cache.clear();
+		}
+	}
+
+	private synchronized SyntacticLocalityModuleExtractor getExtractor() {
+		if (extractor == null) {
+			// A manager of its own, the extractor creates a working ontology from the axioms
+			extractor = new SyntacticLocalityModuleExtractor(OWLManager.createOWLOntologyManager(), ontology.axioms(Imports.INCLUDED), moduleType);
+		}
+		return extractor;
+	}
+
+	private synchronized Map<String, Set<IRI>> getLabels() {
+		if (labels == null) {
+			Map<String, Set<IRI>> index = new HashMap<String, Set<IRI>>();
+			ontology.axioms(AxiomType.ANNOTATION_ASSERTION, Imports.INCLUDED)
+					.filter(axiom -> axiom.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_LABEL.getIRI()))
+					.filter(axiom -> axiom.getSubject().isIRI() && axiom.getValue().isLiteral())
+					.forEach(axiom -> index.computeIfAbsent(axiom.getValue().asLiteral().get().getLiteral().trim().toLowerCase(), key -> new HashSet<IRI>())
+							.add((IRI) axiom.getSubject()));
+			labels = index;
+		}
+		return labels;
+	}
+
+	public Set<OWLEntity> resolveSeeds(Collection<String> seeds) {
+		// An IRI of an entity in the signature, or else the label of one or more entities
+		Set<OWLEntity> signature = new HashSet<OWLEntity>();
+		for (String seed : seeds) {
+			Set<OWLEntity> entities = ontology.entitiesInSignature(IRI.create(seed), Imports.INCLUDED).collect(Collectors.toSet());
+			if (entities.isEmpty()) {
+				for (IRI labelled : getLabels().getOrDefault(seed.trim().toLowerCase(), Collections.emptySet()))
+					ontology.entitiesInSignature(labelled, Imports.INCLUDED).forEach(entities::add);
+			}
+			if (entities.isEmpty())
+				throw new RuntimeException("Error: No entity with the IRI or label " + seed + ".");
+			signature.addAll(entities);
+		}
+		return signature;
+	}
+
+	public Set<OWLAxiom> extract(Collection<String> seeds) {
+		Set<OWLEntity> signature = resolveSeeds(seeds);
+		List<String> key = new ArrayList<String>();
+		for (OWLEntity entity : signature)
+			key.add(entity.getEntityType() + " " + entity.getIRI());
+		Collections.sort(key);
+		String cacheKey = moduleType + " " + key;
+		Set<OWLAxiom> module = cache.get(cacheKey);
+		if (module == null) {
+			OntologyEvents.ModuleExtraction event = new OntologyEvents.ModuleExtraction();
+			event.begin();
+			module = Collections.unmodifiableSet(getExtractor().extract(signature));
+			cache.putIfAbsent(cacheKey, module);
+			event.moduleType = moduleType.toString();
+			event.seeds = signature.size();
+			event.entities = module.size();
+			event.commit();
+		}
+		return module;
+	}
+
+	public Map<String, Integer> extractModules(Map<String, ? extends Collection<String>> seedSets, String outputDirectory, String moduleIRIPrefix) {
+		// Every seed set is extracted and saved as <outputDirectory>/<name>.owl on the fork-join pool, returns the number of axioms of each module
+		new File(outputDirectory).mkdirs();
+		Map<String, Integer> sizes = new ConcurrentHashMap<String, Integer>();
+		seedSets.entrySet().parallelStream().forEach(seedSet -> {
+			Set<OWLAxiom> module = extract(seedSet.getValue());
+			try {
+				save(module, IRI.create(moduleIRIPrefix + seedSet.getKey()), new File(outputDirectory, seedSet.getKey() + ".owl"));
+			} catch (IOException | OWLOntologyCreationException | OWLOntologyStorageException e) {
+				throw new UncheckedIOException(new IOException("Error: Could not save the module " + seedSet.getKey() + ".", e));
+			}
+			sizes.put(seedSet.getKey(), module.size());
+		});
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for (String name : seedSets.keySet())
+			result.put(name, sizes.get(name));
+		return result;
+	}
+
+	public static void save(Set<OWLAxiom> module, IRI moduleIRI, File file) throws IOException, OWLOntologyCreationException, OWLOntologyStorageException {
+		// Saved through a manager of its own so that modules can be written concurrently
+		OWLOntologyManager moduleManager = OWLManager.createOWLOntologyManager();
+		OWLOntology moduleOntology = moduleManager.createOntology(module, moduleIRI);
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			moduleManager.saveOntology(moduleOntology, out);
+		}
+	}
+}
\ No newline at end of file
@@ -11,11 +11,14 @@ package onted;
 import org.apache.commons.lang3.StringUtils;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.ChangeApplied;
+import org.semanticweb.owlapi.model.parameters.Imports;
 import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 import org.semanticweb.owlapi.reasoner.*;
 import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
 import org.semanticweb.owlapi.vocab.SKOSVocabulary;
 import org.semanticweb.owlapi.vocab.XSDVocabulary;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -23,12 +26,24 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 public class MyOntology {
@@ -36,13 +51,37 @@ public class MyOntology {
 	private OWLOntology ontology;
 	private OWLDataFactory factory;
 	private String basePrefix;
+	private DiskTripleStore store;
+	private ChangeJournal journal;
+	private SnapshotSaver snapshotSaver;
+	private ChangeFeed changeFeed;
+	private ImportResolver importResolver;
+	private ShardLoader shardLoader;
+	// Held exclusively while an import or shard is loaded on demand, see contains()
+	private final ReentrantReadWriteLock lazyLoadLock = new ReentrantReadWriteLock();
+	private final List<AxiomListener> listeners = new ArrayList<AxiomListener>();
+	private long axiomsAdded;
+	// Changes made since recordSession(), which saveExtension writes as a module of their own; null when the session is not recorded
+	private Set<OWLAxiom> sessionAxioms;
+	private Set<IRI> sessionImports;
+	private TypeIndex typeIndex;
+	private PropertyGraph propertyGraph;
+	private SubsumptionIndex subsumptionIndex;
+	private CourtFacetIndex courtFacetIndex;
+	// Occurrences of every key minted so far, when the IRIs are stable
+	private final Map<String, Integer> mintedKeys = new HashMap<String, Integer>();
+	private boolean stableIRIs;
+	private final Map<ModuleType, ModuleExtractor> moduleExtractors = new EnumMap<ModuleType, ModuleExtractor>(ModuleType.class);
 	
 	public MyOntology(String owlFile, String IRIPrefix) throws OWLOntologyCreationException {
 		// Create an OWLOntologyManager instance
 		manager = OWLManager.createOWLOntologyManager();
 		// Load your existing ontology
 		File inputOntologyFile = new File(owlFile);
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
 		ontology = manager.loadOntologyFromOntologyDocument(inputOntologyFile);
+		commitSaveLoad(event, "load", inputOntologyFile);
         factory = manager.getOWLDataFactory();
         basePrefix = IRIPrefix;
 	}
@@ -56,19 +95,444 @@ public class MyOntology {
         factory = manager.getOWLDataFactory();
 	}
 
-	public void saveOntology(String myFile) throws OWLOntologyStorageException, FileNotFoundException {
+	public MyOntology(String owlFile, String IRIPrefix, String storeDirectory) throws OWLOntologyCreationException, IOException {
+		// Keep the axioms in a disk-backed triple store instead of the in-memory OWL API structures
+		manager = OWLManager.createOWLOntologyManager();
+        factory = manager.getOWLDataFactory();
+        basePrefix = IRIPrefix;
+		store = new DiskTripleStore(storeDirectory, 256);
+		// The base ontology is only parsed the first time, later runs reopen the existing store
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
+		if (store.isEmpty()) {
+			OWLOntology baseOntology = manager.loadOntologyFromOntologyDocument(new File(owlFile));
+			store.importOntology(baseOntology);
+			manager.removeOntology(baseOntology);
+		}
+		// Empty placeholder, all axioms go to the store
+		ontology = manager.createOntology();
+		commitSaveLoad(event, "load", new File(owlFile));
+	}
+
+	MyOntology(OWLOntologyManager sharedManager, OWLOntology module, String IRIPrefix) {
+		// A module of an OntologyWorkspace, sharing its manager and data factory with the other modules
+		manager = sharedManager;
+		ontology = module;
+        factory = manager.getOWLDataFactory();
+        basePrefix = IRIPrefix;
+	}
+
+	OWLOntology getOntology() {
+		return ontology;
+	}
+
+	public boolean isDiskBacked() {
+		return store != null;
+	}
+
+	public long enableJournal(String journalDirectory) throws IOException {
+		// Replays the changes left behind by an earlier run, then journals every change applied from here on
+		if (store != null) {
+			throw new RuntimeException("Error: The change journal is only available for in-memory ontologies.");
+		}
+		journal = new ChangeJournal(journalDirectory, factory, 10, 64L << 20);
+		long recovered = journal.recover(manager, ontology);
+		// The recovered changes are applied without the listeners, the indexes built so far do not have them
+		if (recovered > 0)
+			dropIndexes();
+		return recovered;
+	}
+
+	public void syncJournal() throws IOException {
+		// Blocks until every change applied so far is on disk
+		if (journal != null)
+			journal.sync();
+	}
+
+	public void retireJournal() throws IOException {
+		// Once the ontology has been saved: the journal is deleted, so the next run starts a fresh one instead of recovering this one
+		if (journal == null) {
+			throw new RuntimeException("Error: The change journal is not enabled.");
+		}
+		journal.retire();
+		journal = null;
+	}
+
+	public Future<?> checkpointJournal() throws IOException {
+		if (journal == null) {
+			throw new RuntimeException("Error: The change journal is not enabled.");
+		}
+		return journal.checkpoint();
+	}
+
+	private void journalChange(OWLAxiom axiom, IRI importIRI, boolean added) {
+		try {
+			if (axiom != null)
+				journal.appendAxiom(axiom, added);
+			else
+				journal.appendImport(importIRI, added);
+			// Compact the journal into a new checkpoint once the current segment has grown large enough
+			if (journal.shouldCheckpoint())
+				journal.checkpoint();
+		} catch (IOException e) {
+			throw new RuntimeException("Error: Could not write the change to the journal.", e);
+		}
+	}
+
+	public void enableOfflineImports(String catalogFile, String mirrorDirectory, String cacheDirectory) throws IOException, OWLOntologyCreationException {
+		// Imports are resolved from the catalog and the mirror directory only, and their axioms are loaded when a lookup first needs them
+		if (store != null) {
+			throw new RuntimeException("Error: Offline imports are only available for in-memory ontologies.");
+		}
+		importResolver = new ImportResolver(catalogFile, mirrorDirectory, cacheDirectory, factory);
+		manager.getIRIMappers().add(importResolver);
+		for (OWLImportsDeclaration declaration : ontology.importsDeclarations().collect(Collectors.toList())) {
+			if (manager.getOntology(declaration.getIRI()) == null)
+				importResolver.register(declaration.getIRI());
+		}
+	}
+
+	private boolean loadImportFor(IRI iri) {
+		// Loads the import declaring the given entity, if it has not been loaded yet
+		IRI importIRI = importResolver.importDeclaring(iri);
+		if (importIRI == null)
+			return false;
+		try {
+			importResolver.load(importIRI, manager);
+		} catch (IOException | OWLOntologyCreationException e) {
+			throw new RuntimeException("Error: Could not load the import " + importIRI + ".", e);
+		}
+		return true;
+	}
+
+	public void enableShards(String partitionDirectory) throws IOException {
+		// For an ontology opened from the core.owl of a partition: the shards are loaded when a lookup first needs one of their entities. The searches
+		// (getIndividuals, getClassesByLabel) and the paths beyond their start individuals see only the shards loaded so far
+		if (store != null) {
+			throw new RuntimeException("Error: Partitioned ontologies are only available for in-memory ontologies.");
+		}
+		ShardLoader loader = new ShardLoader(partitionDirectory);
+		if (!loader.getCoreIRI().equals(ontology.getOntologyID().getOntologyIRI().orElse(null))) {
+			throw new RuntimeException("Error: The ontology is not the core of the partition in " + partitionDirectory + ".");
+		}
+		shardLoader = loader;
+	}
+
+	public void loadShard(String name) {
+		if (shardLoader == null) {
+			throw new RuntimeException("Error: The ontology was not opened from a partition.");
+		}
+		lazyLoadLock.writeLock().lock();
+		try {
+			if (shardLoader.isLoaded(name))
+				return;
+			indexLoaded(shardLoader.load(name, manager, ontology));
+		} catch (OWLOntologyCreationException e) {
+			throw new RuntimeException("Error: Could not load the shard " + name + ".", e);
+		} finally {
+			lazyLoadLock.writeLock().unlock();
+		}
+	}
+
+	public List<String> getLoadedShards() {
+		List<String> loaded = new ArrayList<String>();
+		if (shardLoader != null) {
+			for (String name : shardLoader.getShardNames()) {
+				if (shardLoader.isLoaded(name))
+					loaded.add(name);
+			}
+		}
+		return loaded;
+	}
+
+	private boolean loadShardFor(IRI iri) {
+		// Loads the shard holding the given entity, if it has not been loaded yet
+		String shard = shardLoader.shardDeclaring(iri);
+		if (shard == null)
+			return false;
+		loadShard(shard);
+		return true;
+	}
+
+	private boolean isDeclaredLazily(IRI iri) {
+		// Whether an import or shard not loaded yet declares the entity; a fresh IRI, such as one just minted, is answered without the write lock
+		return (importResolver != null && importResolver.importDeclaring(iri) != null) || (shardLoader != null && shardLoader.shardDeclaring(iri) != null);
+	}
+
+	private boolean loadLazily(IRI iri) {
+		lazyLoadLock.writeLock().lock();
+		try {
+			return (importResolver != null && loadImportFor(iri)) || (shardLoader != null && loadShardFor(iri));
+		} finally {
+			lazyLoadLock.writeLock().unlock();
+		}
+	}
+
+	private void indexLoaded(OWLOntology loaded) {
+		// The axioms of a shard come in through the imports, not as changes: they go to the indexes built so far, but not to the change feed
+		List<AxiomListener> indexes = new ArrayList<AxiomListener>();
+		for (AxiomListener listener : Arrays.asList(typeIndex, propertyGraph, subsumptionIndex, courtFacetIndex)) {
+			if (listener != null)
+				indexes.add(listener);
+		}
+		indexes.addAll(moduleExtractors.values());
+		if (indexes.isEmpty())
+			return;
+		loaded.axioms().forEach(axiom -> {
+			for (AxiomListener index : indexes)
+				index.axiomAdded(axiom);
+		});
+	}
+
+	private void dropIndexes() {
+		// For axioms applied without the listeners, such as those of a recovered journal: the indexes are built again on their next use
+		if (typeIndex != null)
+			removeAxiomListener(typeIndex);
+		if (propertyGraph != null)
+			removeAxiomListener(propertyGraph);
+		if (subsumptionIndex != null)
+			removeAxiomListener(subsumptionIndex);
+		for (ModuleExtractor moduleExtractor : moduleExtractors.values())
+			removeAxiomListener(moduleExtractor);
+		typeIndex = null;
+		propertyGraph = null;
+		subsumptionIndex = null;
+		moduleExtractors.clear();
+		// The facet index keeps its court levels and properties, it is only rebuilt
+		if (courtFacetIndex != null)
+			courtFacetIndex.invalidate();
+	}
+
+	public void close() throws IOException {
+		// Background saves are finished first, they may still be writing snapshots
+		if (snapshotSaver != null)
+			snapshotSaver.close();
+		if (changeFeed != null)
+			changeFeed.close();
+		if (journal != null)
+			journal.close();
+		if (store != null)
+			store.close();
+	}
+
+	public void saveOntology(String myFile) throws OWLOntologyStorageException, IOException {
         // Save the combined ontology
         File outputOntologyFile = new File(myFile);
-        manager.saveOntology(ontology, new FileOutputStream(outputOntologyFile));
+        OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+        event.begin();
+        if (store != null) {
+        	// The disk store is streamed out as N-Triples, it is never loaded back into memory
+        	try (FileOutputStream out = new FileOutputStream(outputOntologyFile)) {
+        		store.exportNTriples(out);
+        	}
+        	store.flush();
+        }
+        else {
+        	try (FileOutputStream out = new FileOutputStream(outputOntologyFile)) {
+        		manager.saveOntology(ontology, out);
+        	}
+        }
+        commitSaveLoad(event, "save", outputOntologyFile);
+	}
+
+	public Future<File> saveOntologyAsync(String myFile) {
+		// The ontology as it is now, written on a background thread while the changes go on; waits if two saves are already pending
+		if (store != null) {
+			throw new RuntimeException("Error: Background saves are only available for in-memory ontologies.");
+		}
+		if (snapshotSaver == null)
+			snapshotSaver = new SnapshotSaver(2);
+		try {
+			return snapshotSaver.save(ontology, myFile);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Error: Interrupted while waiting for an earlier save to finish.", e);
+		}
+	}
+
+	private void commitSaveLoad(OntologyEvents.SaveLoad event, String operation, File file) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.file = file.getPath();
+			event.entities = store != null ? store.size() : ontology.getAxiomCount();
+			event.bytes = file.length();
+			event.commit();
+		}
+	}
+
+	public void recordSession() {
+		// The changes from here on are kept for saveExtension; they are not kept otherwise, since the copy would double the memory of a build
+		if (store != null) {
+			throw new RuntimeException("Error: Extensions can only be saved from in-memory ontologies.");
+		}
+		if (sessionAxioms == null) {
+			sessionAxioms = new LinkedHashSet<OWLAxiom>();
+			sessionImports = new LinkedHashSet<IRI>();
+		}
+	}
+
+	public void saveExtension(String myFile, String extensionIRIString) throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
+		// Saves only the changes of this session, as an ontology importing the one they were made to, so the (much larger) base is not rewritten
+		if (store != null) {
+			throw new RuntimeException("Error: Extensions can only be saved from in-memory ontologies.");
+		}
+		if (sessionAxioms == null) {
+			throw new RuntimeException("Error: The session is not recorded, recordSession() must be called before the changes are made.");
+		}
+		IRI baseIRI = ontology.getOntologyID().getOntologyIRI().orElse(manager.getOntologyDocumentIRI(ontology));
+		File outputOntologyFile = new File(myFile);
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
+		OWLOntology extension = manager.createOntology(IRI.create(extensionIRIString));
+		try {
+			manager.applyChange(new AddImport(extension, factory.getOWLImportsDeclaration(baseIRI)));
+			for (IRI importIRI : sessionImports)
+				manager.applyChange(new AddImport(extension, factory.getOWLImportsDeclaration(importIRI)));
+			manager.addAxioms(extension, sessionAxioms.stream());
+			try (FileOutputStream out = new FileOutputStream(outputOntologyFile)) {
+				manager.saveOntology(extension, manager.getOntologyFormat(ontology), out);
+			}
+		} finally {
+			manager.removeOntology(extension);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = "save extension";
+			event.file = myFile;
+			event.entities = sessionAxioms.size();
+			event.bytes = outputOntologyFile.length();
+			event.commit();
+		}
+	}
+
+	public Map<String, Integer> savePartitioned(String directory, Map<String, ? extends Collection<String>> shardEntities)
+			throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
+		// A core module and one shard per entry of shardEntities, with the entities it owns; returns the axioms written to each
+		if (store != null) {
+			throw new RuntimeException("Error: Partitioned saves are only available for in-memory ontologies.");
+		}
+		File outputDirectory = new File(directory);
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
+		Map<String, Integer> counts = OntologyPartitioner.write(ontology, shardEntities, directory, basePrefix + "partition/");
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = "save partitioned";
+			event.file = directory;
+			event.entities = ontology.getAxiomCount();
+			File[] files = outputDirectory.listFiles();
+			for (File file : files == null ? new File[0] : files)
+				event.bytes += file.length();
+			event.commit();
+		}
+		return counts;
+	}
+
+	public Set<OWLAxiom> getSessionAxioms() {
+		return sessionAxioms == null ? Collections.<OWLAxiom>emptySet() : Collections.unmodifiableSet(sessionAxioms);
+	}
+
+	public long getAxiomsAdded() {
+		// Axioms added since the ontology was opened, not counting those already present
+		return axiomsAdded;
 	}
 
 	public IRI generateUniqueIRI(String basePrefix) {
+	    OntologyEvents.IRIMinted event = new OntologyEvents.IRIMinted();
+	    event.begin();
 	    IRI uniqueIRI;
 	    do {
 	        uniqueIRI = IRI.create(basePrefix + UUID.randomUUID().toString());
-	    } while (ontology.containsEntityInSignature(uniqueIRI));
+	        event.entities++;
+	    } while (containsEntity(uniqueIRI));
+	    event.prefix = basePrefix;
+	    event.commit();
 	    return uniqueIRI;
 	}
+
+	public void enableStableIRIs() {
+		// The IRIs minted from here on are name based UUIDs of the kind, parent or type and label of the entity and of how many were minted with
+		// those before, so that a build run again from the same base mints the same IRIs; resumed on top of a recovered journal, it re-adds the
+		// axioms it already has (which changes nothing) and goes on with the others
+		stableIRIs = true;
+	}
+
+	boolean hasStableIRIs() {
+		return stableIRIs;
+	}
+
+	IRI mintIRI(String kind, String context, String label) {
+		if (!stableIRIs)
+			return generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+		String key = kind + "\t" + context + "\t" + label;
+		int occurrence;
+		synchronized (mintedKeys) {
+			occurrence = mintedKeys.merge(key, 1, Integer::sum);
+		}
+		OntologyEvents.IRIMinted event = new OntologyEvents.IRIMinted();
+		event.begin();
+		IRI stableIRI = IRI.create(basePrefix + UUID.nameUUIDFromBytes((key + "\t" + occurrence).getBytes(StandardCharsets.UTF_8)));
+		event.entities = 1;
+		event.prefix = basePrefix;
+		event.commit();
+		return stableIRI;
+	}
+
+	// Lookups for AxiomBatch, which may run on several threads at once while the ontology itself is left unchanged
+	boolean isClass(IRI iri) {
+		return containsClass(iri);
+	}
+
+	boolean isIndividual(IRI iri) {
+		return containsIndividual(iri);
+	}
+
+	boolean isInSignature(IRI iri) {
+		return containsEntity(iri);
+	}
+
+	private boolean containsClass(IRI iri) {
+		if (store != null)
+			return store.isClass(iri.toString());
+		return contains(iri, EntityType.CLASS);
+	}
+
+	private boolean containsIndividual(IRI iri) {
+		if (store != null)
+			return store.isIndividual(iri.toString());
+		return contains(iri, EntityType.NAMED_INDIVIDUAL);
+	}
+
+	private boolean containsEntity(IRI iri) {
+		if (store != null)
+			return store.isInSignature(iri.toString());
+		return contains(iri, null);
+	}
+
+	private boolean contains(IRI iri, EntityType<?> type) {
+		// The in-memory structures can be read from several threads at once, so plain lookups take no lock. Imports and shards loaded on demand
+		// change the imports closure, the lookups then share the read lock that a load takes exclusively. The write lock is taken only when an
+		// import or shard not loaded yet declares the entity, even one the core already mentions, since its own axioms are in that shard
+		if (importResolver == null && shardLoader == null)
+			return signatureContains(iri, type);
+		if (isDeclaredLazily(iri))
+			loadLazily(iri);
+		lazyLoadLock.readLock().lock();
+		try {
+			return signatureContains(iri, type);
+		} finally {
+			lazyLoadLock.readLock().unlock();
+		}
+	}
+
+	private boolean signatureContains(IRI iri, EntityType<?> type) {
+		if (type == EntityType.CLASS)
+			return ontology.containsClassInSignature(iri, Imports.INCLUDED);
+		if (type == EntityType.NAMED_INDIVIDUAL)
+			return ontology.containsIndividualInSignature(iri, Imports.INCLUDED);
+		return ontology.containsEntityInSignature(iri, Imports.INCLUDED);
+	}
 	
     public void importOntology(String importOntologyIRIString) throws OWLOntologyCreationException {
     	IRI importOntologyIRI = IRI.create(importOntologyIRIString);
@@ -76,13 +540,31 @@ public class MyOntology {
         OWLImportsDeclaration importDeclaration = factory.getOWLImportsDeclaration(importOntologyIRI);
 
         // Add the import declaration to the main ontology
-        manager.applyChange(new AddImport(ontology, importDeclaration));
+        if (store != null) {
+        	store.addImport(importOntologyIRIString);
+        	return;
+        }
+        if (manager.applyChange(new AddImport(ontology, importDeclaration)) == ChangeApplied.SUCCESSFULLY) {
+        	if (sessionImports != null)
+        		sessionImports.add(importOntologyIRI);
+        	if (journal != null)
+        		journalChange(null, importOntologyIRI, true);
+        }
+        if (importResolver != null && manager.getOntology(importOntologyIRI) == null) {
+        	try {
+        		importResolver.register(importOntologyIRI);
+        	} catch (IOException e) {
+        		throw new RuntimeException("Error: Could not cache the import " + importOntologyIRIString + ".", e);
+        	}
+        }
     }
 
 	public ArrayList<String> entitiesFromFile(String myFile, String myPrefix, String mySuffix) throws IOException {
 		// Read the classes from the text file and add them to the ontology
 		File entitiesTextFile = new File(myFile);
 		ArrayList<String> entities = new ArrayList<String>();
+		OntologyEvents.FileIngestion event = new OntologyEvents.FileIngestion();
+		event.begin();
 		BufferedReader br = new BufferedReader(new FileReader(entitiesTextFile));
 		String line;
 		while ((line = br.readLine()) != null) {
@@ -92,6 +574,9 @@ public class MyOntology {
 				entities.add(line);
 		}
 		br.close();
+		event.file = myFile;
+		event.entities = entities.size();
+		event.commit();
 		return entities;
 	}
 
@@ -112,13 +597,17 @@ public class MyOntology {
 	}
 
     public ArrayList<String> getSubclasses(String myParentIRI) {
+        OntologyEvents.Query event = beginQuery("subclasses", myParentIRI);
 
         // Check if the parent IRI exists in the ontology
 		IRI parentIRI = IRI.create(myParentIRI);
 		OWLClass parentClass = factory.getOWLClass(parentIRI);
-        if (!ontology.containsClassInSignature(parentIRI)) {
+        if (!containsClass(parentIRI)) {
         	throw new RuntimeException("Error: Parent IRI not found in the ontology.");
         }
+        if (store != null) {
+        	return endQuery(event, new ArrayList<String>(store.getSubClasses(myParentIRI, false)));
+        }
         OWLReasonerFactory reasonerFactory = new StructuralReasonerFactory();
         OWLReasoner reasoner = reasonerFactory.createNonBufferingReasoner(ontology);
 
@@ -134,44 +623,348 @@ public class MyOntology {
                 }
             });
         }
-        return new ArrayList<String>(subclassesIRIs);
+        return endQuery(event, new ArrayList<String>(subclassesIRIs));
     }
 
     public List<String> getSuperclasses(String myClassIRI) {
+        OntologyEvents.Query event = beginQuery("superclasses", myClassIRI);
         // Check if the parent IRI exists in the ontology
 		IRI classIRI = IRI.create(myClassIRI);
 		OWLClass owlClass = factory.getOWLClass(classIRI);
-        if (!ontology.containsClassInSignature(classIRI)) {
+        if (!containsClass(classIRI)) {
         	throw new RuntimeException("Error: Parent IRI not found in the ontology.");
         }
+        if (store != null) {
+        	return endQuery(event, store.getSuperClasses(myClassIRI));
+        }
     	OWLReasonerFactory reasonerFactory = new StructuralReasonerFactory();
         OWLReasoner reasoner = reasonerFactory.createNonBufferingReasoner(ontology);
 
         // Fetch the direct superclasses of the given class
         NodeSet<OWLClass> superClassesNodeSet = reasoner.getSuperClasses(owlClass, true);
-        return superClassesNodeSet.entities()
+        return endQuery(event, superClassesNodeSet.entities()
                                   .filter(owlSuperClass -> !owlSuperClass.isOWLNothing())
                                   .map(owlSuperClass -> owlSuperClass.getIRI().toString())
-                                  .collect(Collectors.toList());
+                                  .collect(Collectors.toList()));
     }
 
     public List<String> getClassesByLabel(String label) {
-        return ontology.classesInSignature()
+    	OntologyEvents.Query event = beginQuery("label", label);
+    	if (store != null) {
+    		return endQuery(event, store.getLabelledClasses(label));
+    	}
+        // Only the imports and shards loaded so far are searched
+        return endQuery(event, ontology.classesInSignature(Imports.INCLUDED)
                        .filter(owlClass -> hasLabel(owlClass, label))
                        .map(owlClass -> owlClass.getIRI().toString())
-                       .collect(Collectors.toList());
+                       .collect(Collectors.toList()));
+    }
+
+    private TypeIndex getTypeIndex() {
+    	if (store != null) {
+    		throw new RuntimeException("Error: The type index is only available for in-memory ontologies.");
+    	}
+    	// Built on first use, then kept up to date as axioms are added
+    	if (typeIndex == null) {
+    		typeIndex = new TypeIndex(ontology);
+    		addAxiomListener(typeIndex);
+    	}
+    	return typeIndex;
+    }
+
+    public List<String> getIndividuals(String myClassIRI, boolean direct) {
+    	return getIndividuals(myClassIRI, direct, 0, Integer.MAX_VALUE);
+    }
+
+    public List<String> getIndividuals(String myClassIRI, boolean direct, int offset, int limit) {
+    	// Instances of the class, and unless direct also those of its subclasses. The order is stable, so the results can be paged. Of a partitioned
+    	// ontology, only the shards loaded so far are searched
+    	OntologyEvents.Query event = beginQuery(direct ? "direct individuals" : "individuals", myClassIRI);
+    	TypeIndex index = getTypeIndex();
+    	if (!index.isClass(myClassIRI) && !containsClass(IRI.create(myClassIRI))) {
+    		throw new RuntimeException("Error: Class IRI not found in the ontology.");
+    	}
+    	return endQuery(event, index.getIndividuals(myClassIRI, direct, offset, limit));
+    }
+
+    public int countIndividuals(String myClassIRI, boolean direct) {
+    	return getTypeIndex().count(myClassIRI, direct);
+    }
+
+    public Iterable<List<String>> getIndividualPages(String myClassIRI, boolean direct, int pageSize) {
+    	TypeIndex index = getTypeIndex();
+    	return () -> index.pages(myClassIRI, direct, pageSize);
+    }
+
+    public CourtFacetIndex getCourtFacetIndex() {
+    	if (store != null) {
+    		throw new RuntimeException("Error: The court facet index is only available for in-memory ontologies.");
+    	}
+    	// Built on first use over the assertions already in the ontology, then kept up to date as axioms are added
+    	if (courtFacetIndex == null) {
+    		courtFacetIndex = new CourtFacetIndex(ontology);
+    		addAxiomListener(courtFacetIndex);
+    	}
+    	return courtFacetIndex;
+    }
+
+    private SubsumptionIndex getSubsumptionIndex() {
+    	if (store != null) {
+    		throw new RuntimeException("Error: The subsumption index is only available for in-memory ontologies.");
+    	}
+    	// Built on first use, then kept up to date as axioms are added
+    	if (subsumptionIndex == null) {
+    		subsumptionIndex = new SubsumptionIndex(ontology);
+    		addAxiomListener(subsumptionIndex);
+    	}
+    	return subsumptionIndex;
+    }
+
+    public boolean isSubClassOf(String subClassIRI, String superClassIRI) {
+    	// Over the asserted named hierarchy, including the classes below in more than one place
+    	return getSubsumptionIndex().isSubClassOf(subClassIRI, superClassIRI);
+    }
+
+    public List<String> lowestCommonAncestors(String firstClassIRI, String secondClassIRI) {
+    	OntologyEvents.Query event = beginQuery("common ancestors", firstClassIRI + " " + secondClassIRI);
+    	return endQuery(event, getSubsumptionIndex().lowestCommonAncestors(firstClassIRI, secondClassIRI));
+    }
+
+    public int getDepth(String myClassIRI) {
+    	// Length of the shortest path of subclass links up to owl:Thing
+    	return getSubsumptionIndex().depth(myClassIRI);
+    }
+
+    private PropertyGraph getPropertyGraph() {
+    	if (store != null) {
+    		throw new RuntimeException("Error: Property paths are only available for in-memory ontologies.");
+    	}
+    	// Built on first use, then kept up to date as axioms are added
+    	if (propertyGraph == null) {
+    		propertyGraph = new PropertyGraph(ontology);
+    		addAxiomListener(propertyGraph);
+    	}
+    	return propertyGraph;
+    }
+
+    public List<String> traverse(String individualIRI, PropertyPath path) {
+    	// Individuals reached from the individual along the path, e.g. the courts above a court along precededBy+
+    	OntologyEvents.Query event = beginQuery("path", path.toString());
+    	if (shardLoader != null)
+    		loadShardFor(IRI.create(individualIRI));
+    	return endQuery(event, getPropertyGraph().traverse(individualIRI, path));
+    }
+
+    public Map<String, List<String>> traverse(Collection<String> individualIRIs, PropertyPath path) {
+    	// The same path from every individual, evaluated in parallel
+    	OntologyEvents.Query event = beginQuery("path", path.toString());
+    	if (shardLoader != null) {
+    		for (String individualIRI : individualIRIs)
+    			loadShardFor(IRI.create(individualIRI));
+    	}
+    	Map<String, List<String>> results = getPropertyGraph().traverse(individualIRIs, path);
+    	event.entities = results.values().stream().mapToInt(List::size).sum();
+    	event.commit();
+    	return results;
+    }
+
+    private static OntologyEvents.Query beginQuery(String kind, String argument) {
+    	OntologyEvents.Query event = new OntologyEvents.Query();
+    	event.kind = kind;
+    	event.argument = argument;
+    	event.begin();
+    	return event;
+    }
+
+    private static <T extends List<String>> T endQuery(OntologyEvents.Query event, T results) {
+    	event.entities = results.size();
+    	event.commit();
+    	return results;
+    }
+
+    public CitationLinker newCitationLinker(Collection<String> entityIRIs) {
+    	// Compiled from the rdfs:label and skos:altLabel values of the entities
+    	if (store != null) {
+    		throw new RuntimeException("Error: Citation linking is only available for in-memory ontologies.");
+    	}
+    	Map<String, List<String>> labels = new LinkedHashMap<String, List<String>>();
+    	for (String entityIRI : entityIRIs) {
+    		List<String> entityLabels = ontology.importsClosure()
+    				.flatMap(closureOntology -> closureOntology.annotationAssertionAxioms(IRI.create(entityIRI)))
+    				.filter(axiom -> axiom.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_LABEL.getIRI())
+    						|| axiom.getProperty().getIRI().equals(SKOSVocabulary.ALTLABEL.getIRI()))
+    				.filter(axiom -> axiom.getValue() instanceof OWLLiteral)
+    				.map(axiom -> ((OWLLiteral) axiom.getValue()).getLiteral())
+    				.collect(Collectors.toList());
+    		if (!entityLabels.isEmpty())
+    			labels.put(entityIRI, entityLabels);
+    	}
+    	return CitationLinker.compile(labels);
+    }
+
+    public JurisdictionResolver newJurisdictionResolver(String districtCourtClass, String highCourtClass, String supremeCourtClass, String precededByProperty) {
+    	// The courts of every place, from the locatedIn, containsPlace and precededBy assertions as they are now
+    	if (store != null) {
+    		throw new RuntimeException("Error: Jurisdiction resolution is only available for in-memory ontologies.");
+    	}
+    	return JurisdictionResolver.build(ontology, districtCourtClass, highCourtClass, supremeCourtClass, precededByProperty);
+    }
+
+    public Map<String, Set<String>> linkCitations(CitationLinker linker, Map<String, String> documents) {
+    	// The documents (IRI of the document entity to its text) are scanned in parallel, then every citation is asserted as document rdfs:seeAlso entity
+    	OntologyEvents.CitationLinking event = new OntologyEvents.CitationLinking();
+    	event.begin();
+    	Map<String, Set<String>> citations = linker.linkAll(documents);
+    	int links = 0;
+    	for (Map.Entry<String, Set<String>> document : citations.entrySet()) {
+    		for (String entityIRI : document.getValue()) {
+    			addSeeAlsoAnnotation(document.getKey(), entityIRI);
+    			links++;
+    		}
+    	}
+    	event.end();
+    	if (event.shouldCommit()) {
+    		event.documents = documents.size();
+    		event.bytes = documents.values().stream().mapToLong(String::length).sum();
+    		event.entities = links;
+    		event.commit();
+    	}
+    	return citations;
     }
 
     private boolean hasLabel(OWLClass owlClass, String label) {
-        return ontology.annotationAssertionAxioms(owlClass.getIRI())
+        return ontology.importsClosure()
+                       .flatMap(closureOntology -> closureOntology.annotationAssertionAxioms(owlClass.getIRI()))
                        .filter(axiom -> axiom.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_LABEL.getIRI()))
                        .filter(axiom -> axiom.getValue() instanceof OWLLiteral)
                        .map(axiom -> (OWLLiteral) axiom.getValue())
                        .anyMatch(literal -> literal.getLiteral().toLowerCase().contains(label.toLowerCase()));
     }
 
-	public void addNewAxiom(OWLAxiom myAxiom) {
-		manager.addAxiom(ontology, myAxiom);
+	public ChangeFeed enableChangeFeed(String logDirectory) throws IOException {
+		// Publishes the changes from here on; with a log directory they are also logged, so that consumers can resume from an offset
+		if (changeFeed != null) {
+			throw new RuntimeException("Error: The change feed is already enabled.");
+		}
+		changeFeed = new ChangeFeed(logDirectory != null ? new ChangeLog(logDirectory) : null, 512, 50, 64);
+		addAxiomListener(changeFeed);
+		return changeFeed;
+	}
+
+	public void subscribeToChanges(Flow.Subscriber<? super List<ChangeEvent>> subscriber) {
+		// Batches of the changes made after the call; the feed is enabled without a log if it was not yet
+		if (changeFeed == null) {
+			try {
+				enableChangeFeed(null);
+			} catch (IOException e) {
+				throw new RuntimeException("Error: Could not enable the change feed.", e);
+			}
+		}
+		changeFeed.subscribe(subscriber);
+	}
+
+	public void subscribeToChanges(Flow.Subscriber<? super List<ChangeEvent>> subscriber, long fromOffset) {
+		if (changeFeed == null) {
+			throw new RuntimeException("Error: The change feed is not enabled.");
+		}
+		changeFeed.subscribe(subscriber, fromOffset);
+	}
+
+	public void addAxiomListener(AxiomListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeAxiomListener(AxiomListener listener) {
+		listeners.remove(listener);
+	}
+
+	public boolean addNewAxiom(OWLAxiom myAxiom) {
+		// Returns whether the axiom was new; an axiom the ontology already has is neither counted nor passed to the listeners
+		if (store != null) {
+			if (!store.addAxiom(myAxiom))
+				return false;
+		}
+		else if (manager.addAxiom(ontology, myAxiom) != ChangeApplied.SUCCESSFULLY) {
+			return false;
+		}
+		else if (journal != null) {
+			journalChange(myAxiom, null, true);
+		}
+		axiomsAdded++;
+		if (sessionAxioms != null)
+			sessionAxioms.add(myAxiom);
+		for (AxiomListener listener : listeners) {
+			listener.axiomAdded(myAxiom);
+		}
+		return true;
+	}
+
+	public void removeAxiom(OWLAxiom myAxiom) {
+		// Undoes an addition, such as those of a failed job; an axiom the ontology does not have is ignored
+		if (store != null) {
+			if (!store.removeAxiom(myAxiom))
+				return;
+		}
+		else if (ontology.removeAxiom(myAxiom) != ChangeApplied.SUCCESSFULLY) {
+			return;
+		}
+		else if (journal != null) {
+			journalChange(myAxiom, null, false);
+		}
+		if (sessionAxioms != null)
+			sessionAxioms.remove(myAxiom);
+		for (AxiomListener listener : listeners) {
+			listener.axiomRemoved(myAxiom);
+		}
+	}
+
+	private ModuleExtractor getModuleExtractor(ModuleType moduleType) {
+		if (store != null) {
+			throw new RuntimeException("Error: Modules can only be extracted from in-memory ontologies.");
+		}
+		ModuleExtractor moduleExtractor = moduleExtractors.get(moduleType);
+		if (moduleExtractor == null) {
+			moduleExtractor = new ModuleExtractor(ontology, moduleType);
+			moduleExtractors.put(moduleType, moduleExtractor);
+			addAxiomListener(moduleExtractor);
+		}
+		return moduleExtractor;
+	}
+
+	public Set<OWLAxiom> extractModule(Collection<String> seeds) {
+		// STAR module (the smallest) for the entities with the given IRIs or labels
+		return extractModule(seeds, ModuleType.STAR);
+	}
+
+	public Set<OWLAxiom> extractModule(Collection<String> seeds, ModuleType moduleType) {
+		return getModuleExtractor(moduleType).extract(seeds);
+	}
+
+	public Map<String, Integer> extractModules(Map<String, ? extends Collection<String>> seedSets, String outputDirectory, ModuleType moduleType) {
+		// One module per named seed set, extracted in parallel and saved as <outputDirectory>/<name>.owl. TOP modules keep the seeds with
+		// everything below them (a whole hierarchy with its instances)
+		return getModuleExtractor(moduleType).extractModules(seedSets, outputDirectory, basePrefix + "module/");
+	}
+
+	public AxiomBatch newBatch() {
+		return new AxiomBatch(this, factory, basePrefix, null);
+	}
+
+	public AxiomBatch newBatch(String name) {
+		// With stable IRIs, the name (unique among the batches of a build) keeps the IRIs minted by batches built in parallel apart
+		return new AxiomBatch(this, factory, basePrefix, name);
+	}
+
+	public void applyBatch(AxiomBatch batch) {
+		OntologyEvents.AxiomBatchApplied event = new OntologyEvents.AxiomBatchApplied();
+		event.begin();
+		long before = axiomsAdded;
+		for (OWLAxiom axiom : batch.getAxioms()) {
+			addNewAxiom(axiom);
+		}
+		event.entities = batch.getAxioms().size();
+		event.added = (int) (axiomsAdded - before);
+		event.commit();
 	}
 
 	public ArrayList<String> addSubClass(String myParentIRI, ArrayList<String> myClasses) {
@@ -182,19 +975,48 @@ public class MyOntology {
 		return IRI_list;
 	}
 
+	public ArrayList<String> addSubClassesFromRecords(String myParentIRI, String recordFile) throws IOException {
+		// Bulk addition of subclasses from a delimited file with a header line. The label column is required; definition, altLabels and seeAlso
+		// (several values separated by |) are optional
+		ArrayList<String> IRI_list = new ArrayList<String>();
+		OntologyEvents.FileIngestion event = new OntologyEvents.FileIngestion();
+		event.begin();
+		try (DelimitedRecordReader records = DelimitedRecordReader.forFile(recordFile)) {
+			for (DelimitedRecordReader.Record record : records) {
+				String classIRI = addSubClass(myParentIRI, record.get("label"));
+				if (record.has("definition"))
+					addSKOSDefinitionAnnotation(classIRI, record.get("definition"));
+				if (record.has("altLabels")) {
+					for (String altLabel : record.getList("altLabels", '|'))
+						addSKOSAltLabelAnnotation(classIRI, altLabel);
+				}
+				if (record.has("seeAlso")) {
+					for (String link : record.getList("seeAlso", '|'))
+						addSeeAlsoAnnotation(classIRI, link);
+				}
+				IRI_list.add(classIRI);
+			}
+		}
+		event.file = recordFile;
+		event.entities = IRI_list.size();
+		event.commit();
+		return IRI_list;
+	}
+
 	public String addSubClass(String myParentIRI, String className) {
 		// Check if the parent IRI exists in the ontology
 		IRI parentIRI = IRI.create(myParentIRI);
 		OWLClass parentClass = factory.getOWLClass(parentIRI);
-        if (!ontology.containsClassInSignature(parentIRI)) {
+        if (!containsClass(parentIRI)) {
         	throw new RuntimeException("Error: Parent IRI not found in the ontology.");
         }
 
 		// Create a new IRI using UUID
-		IRI classIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+		IRI classIRI = mintIRI("class", myParentIRI, className);
 
 		// Create the class
 		OWLClass newClass = factory.getOWLClass(classIRI);
+		addNewAxiom(factory.getOWLDeclarationAxiom(newClass));
 
 		// Create a subclass axiom
 		OWLSubClassOfAxiom subclassAxiom = factory.getOWLSubClassOfAxiom(newClass, parentClass);
@@ -215,16 +1037,17 @@ public class MyOntology {
 		ArrayList<String> IRI_list = new ArrayList<String>();
         IRI typeIRI = IRI.create(myTypeIRI);
         OWLClass parentClass = factory.getOWLClass(typeIRI);
-        if (!ontology.containsClassInSignature(typeIRI)) {
+        if (!containsClass(typeIRI)) {
         	throw new RuntimeException("Error: Type not found in the ontology.");
         }
         // Construct the IRI using BASE_PREFIX and a UUID
-        IRI individualIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI individualIRI = mintIRI("individual", myTypeIRI, myIndividual);
         OWLNamedIndividual individual = factory.getOWLNamedIndividual(individualIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(individual));
         
         // Add individual as instance of the class
         OWLClassAssertionAxiom classAssertion = factory.getOWLClassAssertionAxiom(parentClass, individual);
-        manager.addAxiom(ontology, classAssertion);
+        addNewAxiom(classAssertion);
 
         // Add RDFS label annotation to the individual with the entity name
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(myIndividual));
@@ -235,8 +1058,9 @@ public class MyOntology {
 
 	public String addIndividual(String myIndividual) {
         // Construct the IRI using BASE_PREFIX and a UUID
-        IRI individualIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI individualIRI = mintIRI("individual", "", myIndividual);
         OWLNamedIndividual individual = factory.getOWLNamedIndividual(individualIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(individual));
 
         // Add RDFS label annotation to the individual with the entity name
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(myIndividual));
@@ -265,6 +1089,7 @@ public class MyOntology {
         // Construct the IRI using BASE_PREFIX and a UUID
 		IRI individualIRI = IRI.create(individualIRIString);
         OWLNamedIndividual individual = factory.getOWLNamedIndividual(individualIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(individual));
 
         // Add RDFS label annotation to the individual with the entity name
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(label));
@@ -282,16 +1107,16 @@ public class MyOntology {
         IRI entityIRI = IRI.create(entityIRIString);
 
         // Check if the IRI belongs to an individual
-        if (ontology.containsIndividualInSignature(entityIRI)) {
+        if (containsIndividual(entityIRI)) {
             OWLNamedIndividual individual = factory.getOWLNamedIndividual(entityIRI);
             OWLClassAssertionAxiom classAssertion = factory.getOWLClassAssertionAxiom(parentClass, individual);
-            manager.addAxiom(ontology, classAssertion);
+            addNewAxiom(classAssertion);
         }
         // Check if the IRI belongs to a class
-        else if (ontology.containsClassInSignature(entityIRI)) {
+        else if (containsClass(entityIRI)) {
             OWLClass owlClass = factory.getOWLClass(entityIRI);
             OWLSubClassOfAxiom subClassAxiom = factory.getOWLSubClassOfAxiom(owlClass, parentClass);
-            manager.addAxiom(ontology, subClassAxiom);
+            addNewAxiom(subClassAxiom);
         }
 	}
 
@@ -343,13 +1168,14 @@ public class MyOntology {
         OWLClass domainClass = factory.getOWLClass(IRI.create(domainClassIRIString));
         OWLClass rangeClass = factory.getOWLClass(IRI.create(rangeClassIRIString));
 
-        if (!ontology.containsClassInSignature(domainClass.getIRI()) || !ontology.containsClassInSignature(rangeClass.getIRI())) {
+        if (!containsClass(domainClass.getIRI()) || !containsClass(rangeClass.getIRI())) {
             throw new RuntimeException("Either domain or range class IRI does not exist in the ontology.");
         }
 
         // Construct the IRI for the property using BASE_PREFIX and a UUID
-        IRI propertyIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI propertyIRI = mintIRI("object property", "", propertyName);
         OWLObjectProperty property = factory.getOWLObjectProperty(propertyIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(property));
 
         // Set domain and range for the property
         OWLObjectPropertyDomainAxiom domainAxiom = factory.getOWLObjectPropertyDomainAxiom(property, domainClass);
@@ -385,8 +1211,9 @@ public class MyOntology {
 //        }
 
         // Construct the IRI for the property using BASE_PREFIX and a UUID
-        IRI propertyIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI propertyIRI = mintIRI("object property", "", propertyName);
         OWLObjectProperty property = factory.getOWLObjectProperty(propertyIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(property));
 
         // Set domain and range for the property
         OWLObjectPropertyDomainAxiom domainAxiom = factory.getOWLObjectPropertyDomainAxiom(property, unionOfDomains);
@@ -412,8 +1239,9 @@ public class MyOntology {
         IRI iri2 = IRI.create(objectIRIString);
         
         // Create IRI for the object property using base prefix and UUID
-        IRI propertyIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI propertyIRI = mintIRI("object property", "", propertyName);
         OWLObjectProperty property = factory.getOWLObjectProperty(propertyIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(property));
 
         // Add RDFS label annotation to the property
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(propertyName));
@@ -421,8 +1249,8 @@ public class MyOntology {
         addNewAxiom(annotationAxiom);
 
         // Check if they are individuals or classes
-        boolean isIndividual1 = ontology.containsIndividualInSignature(iri1);
-        boolean isIndividual2 = ontology.containsIndividualInSignature(iri2);
+        boolean isIndividual1 = containsIndividual(iri1);
+        boolean isIndividual2 = containsIndividual(iri2);
         
         // Both are individuals
         if (isIndividual1 && isIndividual2) {
@@ -447,8 +1275,9 @@ public class MyOntology {
 		IRI subjectIRI = IRI.create(subjectIRIString);
 
         // Create IRI for the object property using base prefix and UUID
-        IRI propertyIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI propertyIRI = mintIRI("data property", "", propertyName);
         OWLDataProperty property = factory.getOWLDataProperty(propertyIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(property));
         
         // Add RDFS label annotation to the property
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(propertyName));
@@ -456,7 +1285,7 @@ public class MyOntology {
         addNewAxiom(annotationAxiom);
 
 		// Check if subject is an individual or class
-        boolean isIndividual = ontology.containsIndividualInSignature(subjectIRI);
+        boolean isIndividual = containsIndividual(subjectIRI);
         if (isIndividual) {
         	OWLNamedIndividual individual = factory.getOWLNamedIndividual(subjectIRI);
 
@@ -473,8 +1302,9 @@ public class MyOntology {
 
 	public String addNewDataPropertyWithDR(String propertyName, String subjectIRIString, OWLDatatype rangeType) {
         // Create IRI for the data property using base prefix and UUID
-        IRI propertyIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI propertyIRI = mintIRI("data property", "", propertyName);
         OWLDataProperty dataProperty = factory.getOWLDataProperty(propertyIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(dataProperty));
         
         // Add RDFS label annotation to the property
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(propertyName));
@@ -504,8 +1334,9 @@ public class MyOntology {
 		}
 		OWLClassExpression unionOfDomains = factory.getOWLObjectUnionOf(domainSet);
         // Create IRI for the data property using base prefix and UUID
-        IRI propertyIRI = generateUniqueIRI(basePrefix + UUID.randomUUID().toString());
+        IRI propertyIRI = mintIRI("data property", "", propertyName);
         OWLDataProperty dataProperty = factory.getOWLDataProperty(propertyIRI);
+        addNewAxiom(factory.getOWLDeclarationAxiom(dataProperty));
         
         // Add RDFS label annotation to the property
         OWLAnnotation labelAnnotation = factory.getOWLAnnotation(factory.getRDFSLabel(), factory.getOWLLiteral(propertyName));
@@ -525,7 +1356,7 @@ public class MyOntology {
         return dataProperty.toString();
 	}
 
-	public void addAnnotationProperty(IRI annotationIRI, String label) {
+	public void addAnnotationProperty(IRI annotationIRI, String label) {
 
         // Create the new annotation property
         OWLAnnotationProperty newAnnotationProperty = factory.getOWLAnnotationProperty(annotationIRI);
@@ -545,7 +1376,7 @@ public class MyOntology {
 		// Check if the parent IRI exists in the ontology
 		IRI entityIRI = IRI.create(entityIRIString);
 		OWLClass entityClass = factory.getOWLClass(entityIRI);
-        if (!ontology.containsClassInSignature(entityIRI)) {
+        if (!containsClass(entityIRI)) {
         	throw new RuntimeException("Error: Parent IRI not found in the ontology.");
         }
 
@@ -578,7 +1409,7 @@ public class MyOntology {
 		// Check if the parent IRI exists in the ontology
 		IRI entityIRI = IRI.create(entityIRIString);
 		OWLClass entityClass = factory.getOWLClass(entityIRI);
-        if (!ontology.containsClassInSignature(entityIRI)) {
+        if (!containsClass(entityIRI)) {
         	throw new RuntimeException("Error: Parent IRI not found in the ontology.");
         }
         
@@ -592,11 +1423,19 @@ public class MyOntology {
 		addNewAxiom(annotationAxiom);
 	}
 
+	public void addSeeAlsoAnnotation(String entityIRIString, String targetIRIString) {
+		// Links the entity to a related resource through rdfs:seeAlso
+		IRI entityIRI = IRI.create(entityIRIString);
+		OWLAnnotation annotation = factory.getOWLAnnotation(factory.getRDFSSeeAlso(), IRI.create(targetIRIString));
+		OWLAnnotationAssertionAxiom annotationAxiom = factory.getOWLAnnotationAssertionAxiom(entityIRI, annotation);
+		addNewAxiom(annotationAxiom);
+	}
+
 	public void addSKOSAltLabelAnnotation(String entityIRIString, String altLabel) {
 		// Check if the parent IRI exists in the ontology
 		IRI entityIRI = IRI.create(entityIRIString);
 		OWLClass entityClass = factory.getOWLClass(entityIRI);
-        if (!ontology.containsClassInSignature(entityIRI)) {
+        if (!containsClass(entityIRI)) {
         	throw new RuntimeException("Error: Parent IRI not found in the ontology.");
         }
         
@@ -0,0 +1,559 @@
+/* Axiom-level diff between two builds of the ontology, computed by streaming the RDF of both files instead of loading them into OWL API.
+ * Each file is cut into axiom-sized units: a triple between named nodes, or a triple together with the blank nodes it reaches (restrictions, lists,
+ * reified axiom annotations). Every unit is hashed to a 64 bit fingerprint (blank nodes are hashed by content, so their ids do not matter) and the
+ * two sorted fingerprint arrays are merged to find what was added and removed. Only the changed units are then read again and turned into OWL axioms,
+ * both as OWL API changes and as a readable report.
+ * The builder mints random UUID IRIs, so by default entities only match when their IRIs are equal. With matchByLabel, a minted IRI is replaced by a
+ * fingerprint of its labels and types, so the same court or class created by two runs counts as the same entity (unless its labels and types are
+ * shared with another entity of the same build, in which case it keeps its IRI). The added axioms then name the matched entities by their IRIs in the
+ * old build, so that getChanges() can be applied to it.
+ */
+
+package onted;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.NTriplesDocumentFormat;
+import org.semanticweb.owlapi.io.StringDocumentSource;
+import org.semanticweb.owlapi.manchestersyntax.renderer.ManchesterOWLSyntaxOWLObjectRendererImpl;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.OWLObjectDuplicator;
+import org.semanticweb.owlapi.util.SimpleShortFormProvider;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class OntologyDiff {
+	private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	private static final String RDFS_LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+	private static final Set<String> DECLARATION_TYPES = new HashSet<String>(Arrays.asList(
+			"http://www.w3.org/2002/07/owl#Class",
+			"http://www.w3.org/2002/07/owl#ObjectProperty",
+			"http://www.w3.org/2002/07/owl#DatatypeProperty",
+			"http://www.w3.org/2002/07/owl#AnnotationProperty",
+			"http://www.w3.org/2002/07/owl#NamedIndividual",
+			"http://www.w3.org/2000/01/rdf-schema#Datatype"));
+	// MyOntology mints IRIs as prefix + UUID (+ UUID)
+	private static final Pattern MINTED_IRI = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+	private static final long LITERAL_SEED = 0x5DEECE66DL;
+	private static final long BLANK_SEED = 0x2545F4914F6CDD1DL;
+	private static final long LABEL_SEED = 0x94D049BB133111EBL;
+
+	private final boolean matchByLabel;
+	// Canonical keys of the minted IRIs of the file being read, empty unless matching by label
+	private LongMap canonical = new LongMap();
+	private LongMap oldKeys = new LongMap();
+	private LongMap newKeys = new LongMap();
+	private int matchedEntities;
+	private int ambiguousEntities;
+	private final List<OWLAxiom> addedAxioms = new ArrayList<OWLAxiom>();
+	private final List<OWLAxiom> removedAxioms = new ArrayList<OWLAxiom>();
+	private final Map<String, String> labels = new HashMap<String, String>();
+	private String oldFile;
+	private String newFile;
+
+	public OntologyDiff(boolean matchByLabel) {
+		this.matchByLabel = matchByLabel;
+	}
+
+	public void compare(String oldOntologyFile, String newOntologyFile) throws IOException, OWLOntologyCreationException {
+		oldFile = oldOntologyFile;
+		newFile = newOntologyFile;
+		addedAxioms.clear();
+		removedAxioms.clear();
+		labels.clear();
+		File oldOntology = new File(oldOntologyFile);
+		File newOntology = new File(newOntologyFile);
+		oldKeys = new LongMap();
+		newKeys = new LongMap();
+		if (matchByLabel) {
+			// Canonical keys of each build are computed separately, they only have to agree on entities with the same labels and types.
+			// The statistics reported are those of the new build
+			oldKeys = canonicalKeys(oldOntology);
+			matchedEntities = 0;
+			ambiguousEntities = 0;
+			newKeys = canonicalKeys(newOntology);
+		}
+		canonical = oldKeys;
+		long[] oldFingerprints = fingerprints(oldOntology);
+		canonical = newKeys;
+		long[] newFingerprints = fingerprints(newOntology);
+		long[] added = difference(newFingerprints, oldFingerprints);
+		long[] removed = difference(oldFingerprints, newFingerprints);
+		addedAxioms.addAll(extractAxioms(newOntology, added));
+		if (matchByLabel)
+			renameToOldIRIs(oldOntology);
+		canonical = oldKeys;
+		removedAxioms.addAll(extractAxioms(oldOntology, removed));
+	}
+
+	public List<OWLAxiom> getAddedAxioms() {
+		return addedAxioms;
+	}
+
+	public List<OWLAxiom> getRemovedAxioms() {
+		return removedAxioms;
+	}
+
+	public List<OWLOntologyChange> getChanges(OWLOntology target) {
+		// The changes which turn the old build (loaded as target) into the new one
+		List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+		for (OWLAxiom axiom : removedAxioms)
+			changes.add(new RemoveAxiom(target, axiom));
+		for (OWLAxiom axiom : addedAxioms)
+			changes.add(new AddAxiom(target, axiom));
+		return changes;
+	}
+
+	public void writeReport(PrintWriter out) {
+		ManchesterOWLSyntaxOWLObjectRendererImpl renderer = new ManchesterOWLSyntaxOWLObjectRendererImpl();
+		SimpleShortFormProvider shortForms = new SimpleShortFormProvider();
+		renderer.setShortFormProvider(entity -> {
+			String label = labels.get(entity.getIRI().toString());
+			return label != null ? "'" + label + "'" : shortForms.getShortForm(entity);
+		});
+		out.println("Old: " + oldFile);
+		out.println("New: " + newFile);
+		if (matchByLabel)
+			out.println("Entities matched by label and type: " + matchedEntities + " (" + ambiguousEntities + " ambiguous, matched by IRI)");
+		out.println("Added axioms: " + addedAxioms.size());
+		out.println("Removed axioms: " + removedAxioms.size());
+		out.println();
+		List<String> lines = new ArrayList<String>();
+		for (OWLAxiom axiom : removedAxioms)
+			lines.add("- " + axiom.getAxiomType() + ": " + renderer.render(axiom));
+		for (OWLAxiom axiom : addedAxioms)
+			lines.add("+ " + axiom.getAxiomType() + ": " + renderer.render(axiom));
+		Collections.sort(lines, (a, b) -> a.substring(2).compareTo(b.substring(2)));
+		for (String line : lines)
+			out.println(line.replace('\n', ' '));
+		out.flush();
+	}
+
+	private static void parse(File file, Consumer<Statement> handler) throws IOException {
+		RDFFormat format = Rio.getParserFormatForFileName(file.getName()).orElse(RDFFormat.RDFXML);
+		RDFParser parser = Rio.createParser(format);
+		parser.setRDFHandler(new AbstractRDFHandler() {
+			@Override
+			public void handleStatement(Statement statement) {
+				handler.accept(statement);
+			}
+		});
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+			parser.parse(in, file.toURI().toString());
+		}
+	}
+
+	private LongMap canonicalKeys(File file) throws IOException {
+		// First pass: the labels and the types of every minted IRI, as order independent sums of fingerprints
+		LongMap labelSums = new LongMap();
+		LongList typeSubjects = new LongList();
+		LongList typeObjects = new LongList();
+		parse(file, statement -> {
+			if (statement.getSubject() instanceof BNode || !isMinted(statement.getSubject().stringValue()))
+				return;
+			String predicate = statement.getPredicate().stringValue();
+			long subject = hash(statement.getSubject().stringValue());
+			if (predicate.equals(RDFS_LABEL) && statement.getObject() instanceof Literal) {
+				labelSums.add(subject, mix(valueHash(statement.getObject())));
+			}
+			else if (predicate.equals(RDF_TYPE) && !(statement.getObject() instanceof BNode)) {
+				typeSubjects.add(subject);
+				typeObjects.add(hash(statement.getObject().stringValue()));
+			}
+		});
+		// Types which are themselves minted (classes created by the builder) are replaced by their labels
+		LongMap typeSums = new LongMap();
+		for (int i = 0; i < typeSubjects.size(); i++) {
+			long type = typeObjects.get(i);
+			if (labelSums.containsKey(type))
+				type = combine(LABEL_SEED, labelSums.get(type));
+			typeSums.add(typeSubjects.get(i), mix(type));
+		}
+		LongMap keys = new LongMap();
+		LongMap keyCounts = new LongMap();
+		labelSums.forEach((iri, labelSum) -> {
+			long key = combine(combine(LABEL_SEED, labelSum), typeSums.get(iri));
+			keys.put(iri, key);
+			keyCounts.add(key, 1);
+		});
+		LongMap unique = new LongMap();
+		keys.forEach((iri, key) -> {
+			if (keyCounts.get(key) == 1) {
+				unique.put(iri, key);
+				matchedEntities++;
+			}
+			else {
+				ambiguousEntities++;
+			}
+		});
+		return unique;
+	}
+
+	private static boolean isMinted(String iri) {
+		return MINTED_IRI.matcher(iri).find();
+	}
+
+	private long termHash(Value value) {
+		long hash = valueHash(value);
+		if (!(value instanceof Literal) && canonical.containsKey(hash))
+			return canonical.get(hash);
+		return hash;
+	}
+
+	private static long valueHash(Value value) {
+		if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			long hash = combine(LITERAL_SEED, hash(literal.getLabel()));
+			hash = combine(hash, hash(literal.getDatatype().stringValue()));
+			return combine(hash, hash(literal.getLanguage().orElse("")));
+		}
+		return hash(value.stringValue());
+	}
+
+	private interface UnitHandler {
+		void unit(long fingerprint, List<Statement> statements);
+	}
+
+	private void scan(File file, boolean collect, UnitHandler handler) throws IOException {
+		// Triples between named nodes are units on their own; anything touching a blank node is kept until the end of the file
+		Map<String, List<Statement>> blankTriples = new HashMap<String, List<Statement>>();
+		Set<String> referenced = new HashSet<String>();
+		List<Statement> deferred = new ArrayList<Statement>();
+		parse(file, statement -> {
+			if (statement.getObject() instanceof BNode)
+				referenced.add(statement.getObject().stringValue());
+			if (statement.getSubject() instanceof BNode) {
+				blankTriples.computeIfAbsent(statement.getSubject().stringValue(), key -> new ArrayList<Statement>()).add(statement);
+			}
+			else if (statement.getObject() instanceof BNode) {
+				deferred.add(statement);
+			}
+			else {
+				long fingerprint = combine(combine(termHash(statement.getSubject()), termHash(statement.getPredicate())), termHash(statement.getObject()));
+				handler.unit(fingerprint, collect ? Collections.singletonList(statement) : null);
+			}
+		});
+		Map<String, Long> closureHashes = new HashMap<String, Long>();
+		for (Statement statement : deferred) {
+			long object = closureHash(statement.getObject().stringValue(), blankTriples, closureHashes);
+			long fingerprint = combine(combine(termHash(statement.getSubject()), termHash(statement.getPredicate())), object);
+			handler.unit(fingerprint, collect ? closure(statement, blankTriples) : null);
+		}
+		// Blank nodes nobody points to (reified axiom annotations, AllDisjointClasses and the like) are units of their own
+		for (String blank : blankTriples.keySet()) {
+			if (!referenced.contains(blank)) {
+				List<Statement> statements = null;
+				if (collect) {
+					statements = new ArrayList<Statement>();
+					for (Statement statement : blankTriples.get(blank))
+						statements.addAll(closure(statement, blankTriples));
+				}
+				handler.unit(closureHash(blank, blankTriples, closureHashes), statements);
+			}
+		}
+	}
+
+	private long closureHash(String blank, Map<String, List<Statement>> blankTriples, Map<String, Long> closureHashes) {
+		Long known = closureHashes.get(blank);
+		if (known != null)
+			return known;
+		// Guard against cycles, which valid OWL never produces
+		closureHashes.put(blank, BLANK_SEED);
+		long sum = 0;
+		for (Statement statement : blankTriples.getOrDefault(blank, Collections.emptyList())) {
+			long object = statement.getObject() instanceof BNode
+					? closureHash(statement.getObject().stringValue(), blankTriples, closureHashes)
+					: termHash(statement.getObject());
+			sum += mix(combine(termHash(statement.getPredicate()), object));
+		}
+		long hash = combine(BLANK_SEED, sum);
+		closureHashes.put(blank, hash);
+		return hash;
+	}
+
+	private static List<Statement> closure(Statement root, Map<String, List<Statement>> blankTriples) {
+		List<Statement> statements = new ArrayList<Statement>();
+		Set<String> visited = new HashSet<String>();
+		List<Statement> pending = new ArrayList<Statement>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			Statement statement = pending.remove(pending.size() - 1);
+			statements.add(statement);
+			if (statement.getObject() instanceof BNode && visited.add(statement.getObject().stringValue()))
+				pending.addAll(blankTriples.getOrDefault(statement.getObject().stringValue(), Collections.emptyList()));
+		}
+		return statements;
+	}
+
+	private long[] fingerprints(File file) throws IOException {
+		LongList fingerprints = new LongList();
+		scan(file, false, (fingerprint, statements) -> fingerprints.add(fingerprint));
+		long[] sorted = fingerprints.toArray();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private static long[] difference(long[] from, long[] minus) {
+		// Both arrays are sorted, duplicates in from are reported once
+		LongList result = new LongList();
+		int j = 0;
+		for (int i = 0; i < from.length; i++) {
+			if (i > 0 && from[i] == from[i - 1])
+				continue;
+			while (j < minus.length && minus[j] < from[i])
+				j++;
+			if (j == minus.length || minus[j] != from[i])
+				result.add(from[i]);
+		}
+		return result.toArray();
+	}
+
+	private List<OWLAxiom> extractAxioms(File file, long[] changed) throws IOException, OWLOntologyCreationException {
+		if (changed.length == 0)
+			return new ArrayList<OWLAxiom>();
+		// Second read of the file: the triples of the changed units, then the declarations and labels of every IRI they mention
+		List<Statement> units = new ArrayList<Statement>();
+		LongMap seen = new LongMap();
+		scan(file, true, (fingerprint, statements) -> {
+			if (Arrays.binarySearch(changed, fingerprint) >= 0 && !seen.containsKey(fingerprint)) {
+				seen.put(fingerprint, 1);
+				units.addAll(statements);
+			}
+		});
+		Set<String> mentioned = new HashSet<String>();
+		for (Statement statement : units) {
+			if (statement.getPredicate().stringValue().equals(RDFS_LABEL) && statement.getObject() instanceof Literal)
+				labels.putIfAbsent(statement.getSubject().stringValue(), statement.getObject().stringValue());
+			for (Value value : new Value[] { statement.getSubject(), statement.getPredicate(), statement.getObject() }) {
+				if (!(value instanceof BNode) && !(value instanceof Literal))
+					mentioned.add(value.stringValue());
+			}
+		}
+		Set<Statement> unitSet = new HashSet<Statement>(units);
+		List<Statement> context = new ArrayList<Statement>();
+		parse(file, statement -> {
+			if (statement.getSubject() instanceof BNode || !mentioned.contains(statement.getSubject().stringValue()) || unitSet.contains(statement))
+				return;
+			String predicate = statement.getPredicate().stringValue();
+			if (predicate.equals(RDF_TYPE) && DECLARATION_TYPES.contains(statement.getObject().stringValue()))
+				context.add(statement);
+			else if (predicate.equals(RDFS_LABEL) && statement.getObject() instanceof Literal) {
+				context.add(statement);
+				labels.putIfAbsent(statement.getSubject().stringValue(), statement.getObject().stringValue());
+			}
+		});
+		// The context on its own tells the parser what each IRI is; the axioms it yields by itself are not changes
+		Set<OWLAxiom> contextAxioms = toOntology(context).axioms().collect(Collectors.toSet());
+		List<Statement> all = new ArrayList<Statement>(context);
+		all.addAll(units);
+		return toOntology(all).axioms()
+				.filter(axiom -> !contextAxioms.contains(axiom))
+				.collect(Collectors.toList());
+	}
+
+	private void renameToOldIRIs(File oldOntology) throws IOException {
+		// Canonical keys of the matched entities the added axioms mention, then the IRIs with those keys in the old build
+		Map<Long, String> newIRIs = new HashMap<Long, String>();
+		for (OWLAxiom axiom : addedAxioms) {
+			List<IRI> mentioned = new ArrayList<IRI>();
+			axiom.signature().forEach(entity -> mentioned.add(entity.getIRI()));
+			if (axiom instanceof OWLAnnotationAssertionAxiom && ((OWLAnnotationAssertionAxiom) axiom).getSubject() instanceof IRI)
+				mentioned.add((IRI) ((OWLAnnotationAssertionAxiom) axiom).getSubject());
+			for (IRI iri : mentioned) {
+				long hash = hash(iri.toString());
+				if (newKeys.containsKey(hash))
+					newIRIs.put(newKeys.get(hash), iri.toString());
+			}
+		}
+		if (newIRIs.isEmpty())
+			return;
+		Map<IRI, IRI> renames = new HashMap<IRI, IRI>();
+		parse(oldOntology, statement -> {
+			if (statement.getSubject() instanceof BNode)
+				return;
+			String oldIRI = statement.getSubject().stringValue();
+			long hash = hash(oldIRI);
+			String newIRI = oldKeys.containsKey(hash) ? newIRIs.get(oldKeys.get(hash)) : null;
+			if (newIRI != null && !newIRI.equals(oldIRI))
+				renames.put(IRI.create(newIRI), IRI.create(oldIRI));
+		});
+		if (renames.isEmpty())
+			return;
+		OWLObjectDuplicator duplicator = new OWLObjectDuplicator(OWLManager.createOWLOntologyManager(), renames);
+		List<OWLAxiom> renamed = new ArrayList<OWLAxiom>(addedAxioms.size());
+		for (OWLAxiom axiom : addedAxioms)
+			renamed.add(duplicator.duplicateObject(axiom));
+		addedAxioms.clear();
+		addedAxioms.addAll(renamed);
+		for (Map.Entry<IRI, IRI> rename : renames.entrySet()) {
+			String label = labels.get(rename.getKey().toString());
+			if (label != null)
+				labels.putIfAbsent(rename.getValue().toString(), label);
+		}
+	}
+
+	private static OWLOntology toOntology(List<Statement> statements) throws OWLOntologyCreationException {
+		StringWriter text = new StringWriter();
+		Rio.write(statements, text, RDFFormat.NTRIPLES);
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		return manager.loadOntologyFromOntologyDocument(new StringDocumentSource(text.toString(), "urn:ontology-diff", new NTriplesDocumentFormat(), null));
+	}
+
+	private static long hash(String text) {
+		// FNV-1a over the chars, finished with a 64 bit mixer
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			hash ^= text.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	private static long combine(long first, long second) {
+		return mix(first * 0x9E3779B97F4A7C15L + second);
+	}
+
+	private interface LongPairConsumer {
+		void accept(long key, long value);
+	}
+
+	// Open addressing long -> long map, keeps millions of fingerprints without boxing
+	private static final class LongMap {
+		private long[] keys = new long[1024];
+		private long[] values = new long[1024];
+		private boolean[] used = new boolean[1024];
+		private int size;
+
+		private int slot(long key) {
+			int mask = keys.length - 1;
+			int slot = (int) mix(key) & mask;
+			while (used[slot] && keys[slot] != key)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		boolean containsKey(long key) {
+			return used[slot(key)];
+		}
+
+		long get(long key) {
+			int slot = slot(key);
+			return used[slot] ? values[slot] : 0;
+		}
+
+		void put(long key, long value) {
+			int slot = slot(key);
+			if (!used[slot]) {
+				used[slot] = true;
+				keys[slot] = key;
+				size++;
+			}
+			values[slot] = value;
+			if (size * 2 > keys.length)
+				grow();
+		}
+
+		void add(long key, long delta) {
+			put(key, get(key) + delta);
+		}
+
+		void forEach(LongPairConsumer action) {
+			for (int i = 0; i < keys.length; i++) {
+				if (used[i])
+					action.accept(keys[i], values[i]);
+			}
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			long[] oldValues = values;
+			boolean[] oldUsed = used;
+			keys = new long[oldKeys.length * 2];
+			values = new long[oldKeys.length * 2];
+			used = new boolean[oldKeys.length * 2];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldUsed[i])
+					put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static final class LongList {
+		private long[] values = new long[1024];
+		private int size;
+
+		void add(long value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		long get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, OWLOntologyCreationException {
+		// Usage: OntologyDiff <old build> <new build> [report file] [--match-labels]
+		List<String> files = new ArrayList<String>();
+		boolean matchByLabel = false;
+		for (String arg : args) {
+			if (arg.equals("--match-labels"))
+				matchByLabel = true;
+			else
+				files.add(arg);
+		}
+		if (files.size() < 2) {
+			System.out.println("Usage: OntologyDiff <old build> <new build> [report file] [--match-labels]");
+			return;
+		}
+		OntologyDiff diff = new OntologyDiff(matchByLabel);
+		diff.compare(files.get(0), files.get(1));
+		PrintWriter out = files.size() > 2 ? new PrintWriter(files.get(2), "UTF-8") : new PrintWriter(System.out);
+		diff.writeReport(out);
+		if (files.size() > 2)
+			out.close();
+	}
+}
\ No newline at end of file
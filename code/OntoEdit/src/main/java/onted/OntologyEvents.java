@@ -0,0 +1,202 @@
+/* JDK Flight Recorder events for the ontology operations, so that a recording of a build shows which build step and which kind of operation the time,
+ * the allocations and the GC pauses belong to instead of only OWL API internals. Every event has a duration and an entity count whose meaning depends
+ * on the event (axioms, minting attempts, results, records, entries). The events cost next to nothing when no recording is running. They can be
+ * recorded by starting the JVM with -XX:StartFlightRecording, or by running the builder with --profile (see BuildProfiler).
+ */
+
+package onted;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public class OntologyEvents {
+	public static final String PREFIX = "onted.";
+
+	// Told of the phase boundaries in the thread running the phase, for the measurements JFR does not take (see BuildBenchmark)
+	public interface PhaseObserver {
+		void phaseBegun(String name);
+
+		void phaseFinished(String name, long entities);
+	}
+
+	private static volatile PhaseObserver phaseObserver;
+
+	private OntologyEvents() {
+	}
+
+	public static void setPhaseObserver(PhaseObserver observer) {
+		phaseObserver = observer;
+	}
+
+	@Name(PREFIX + "Phase")
+	@Label("Build Phase")
+	@Category({ "Ontology", "Build" })
+	@Description("A step of the ontology build, with the number of axioms it added")
+	@StackTrace(false)
+	public static class Phase extends Event {
+		@Label("Name")
+		String name;
+
+		@Label("Entities")
+		@Description("Axioms added to the ontology during the phase")
+		long entities;
+
+		// Not recorded, JFR ignores fields of other reference types
+		private MyOntology ontology;
+
+		public static Phase begin(String name, MyOntology ontology) {
+			Phase phase = new Phase();
+			phase.name = name;
+			phase.ontology = ontology;
+			PhaseObserver observer = phaseObserver;
+			if (observer != null)
+				observer.phaseBegun(name);
+			phase.entities = -ontology.getAxiomsAdded();
+			phase.begin();
+			return phase;
+		}
+
+		public void finish() {
+			end();
+			long added = entities + ontology.getAxiomsAdded();
+			if (shouldCommit()) {
+				entities = added;
+				commit();
+			}
+			PhaseObserver observer = phaseObserver;
+			if (observer != null)
+				observer.phaseFinished(name, added);
+		}
+	}
+
+	@Name(PREFIX + "AxiomBatch")
+	@Label("Axiom Batch Applied")
+	@Category({ "Ontology", "Changes" })
+	@StackTrace(false)
+	public static class AxiomBatchApplied extends Event {
+		@Label("Entities")
+		@Description("Axioms in the batch")
+		int entities;
+
+		@Label("Added")
+		@Description("Axioms of the batch that were not in the ontology yet")
+		int added;
+	}
+
+	@Name(PREFIX + "MintIRI")
+	@Label("IRI Minted")
+	@Category({ "Ontology", "Changes" })
+	@StackTrace(false)
+	public static class IRIMinted extends Event {
+		@Label("Prefix")
+		String prefix;
+
+		@Label("Entities")
+		@Description("Candidate IRIs tried, more than one only after a collision")
+		int entities;
+	}
+
+	@Name(PREFIX + "Query")
+	@Label("Ontology Query")
+	@Category({ "Ontology", "Queries" })
+	@StackTrace(false)
+	public static class Query extends Event {
+		@Label("Kind")
+		@Description("subclasses, superclasses or label")
+		String kind;
+
+		@Label("Argument")
+		String argument;
+
+		@Label("Entities")
+		@Description("Results returned")
+		int entities;
+	}
+
+	@Name(PREFIX + "FileIngestion")
+	@Label("File Ingestion")
+	@Category({ "Ontology", "Input" })
+	@StackTrace(false)
+	public static class FileIngestion extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Entities")
+		@Description("Entries or records read from the file")
+		int entities;
+	}
+
+	@Name(PREFIX + "GeoNamesLookup")
+	@Label("GeoNames Lookup")
+	@Category({ "Ontology", "Input" })
+	@StackTrace(false)
+	public static class GeoNamesLookup extends Event {
+		@Label("Operation")
+		@Description("file for a stored result, or the web service queried")
+		String operation;
+
+		@Label("Source")
+		String source;
+
+		@Label("Entities")
+		@Description("Entries in the result")
+		int entities;
+	}
+
+	@Name(PREFIX + "ModuleExtraction")
+	@Label("Module Extraction")
+	@Category({ "Ontology", "Queries" })
+	@StackTrace(false)
+	public static class ModuleExtraction extends Event {
+		@Label("Module Type")
+		String moduleType;
+
+		@Label("Seeds")
+		@Description("Entities in the seed signature")
+		int seeds;
+
+		@Label("Entities")
+		@Description("Axioms in the module")
+		int entities;
+	}
+
+	@Name(PREFIX + "CitationLinking")
+	@Label("Citation Linking")
+	@Category({ "Ontology", "Input" })
+	@StackTrace(false)
+	public static class CitationLinking extends Event {
+		@Label("Documents")
+		int documents;
+
+		@Label("Bytes")
+		@Description("Characters of text scanned")
+		long bytes;
+
+		@Label("Entities")
+		@Description("Citations linked")
+		int entities;
+	}
+
+	@Name(PREFIX + "SaveLoad")
+	@Label("Ontology Save or Load")
+	@Category({ "Ontology", "Input" })
+	@StackTrace(false)
+	public static class SaveLoad extends Event {
+		@Label("Operation")
+		String operation;
+
+		@Label("File")
+		String file;
+
+		@Label("Entities")
+		@Description("Axioms (or triples for the disk store) in the ontology")
+		long entities;
+
+		@Label("Bytes")
+		long bytes;
+	}
+}
\ No newline at end of file
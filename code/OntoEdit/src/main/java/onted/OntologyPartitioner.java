@@ -0,0 +1,238 @@
+/* Writes an ontology as a core module plus one shard per partition (one per state or union territory in the builder), so that a client working on
+ * one state loads the core and that state's shard instead of the whole of India. The caller says which entities each shard owns (for a state, its
+ * districts and their district courts). An assertion about an individual or IRI (its types, property values and annotations) goes with its subject:
+ * to the shard owning the subject, or to the core when no shard owns it, so that a high court keeps its location in the core even though the state
+ * is in a shard. Any other axiom goes to a shard when the entities it mentions belong to that shard only; the rest, including the axioms linking
+ * entities of two shards, stays in the core. The core keeps the ontology IRI and the
+ * imports of the ontology, every shard is an ontology <partition prefix><shard> importing the core. catalog-v001.xml maps the IRIs of the core and
+ * of the shards to their files, so that a shard opened on its own in Protege or the OWL API comes with the core. manifest.json lists the files with their ontology IRIs and axiom counts, and the signature of every shard (the entities it
+ * owns, and those it mentions that the core does not), which ShardLoader uses to load a shard when one of its entities is first looked up.
+ */
+
+package onted;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class OntologyPartitioner {
+	static final String MANIFEST_FILE = "manifest.json";
+	static final String CORE_FILE = "core.owl";
+	static final String CATALOG_FILE = "catalog-v001.xml";
+	private static final String CATALOG_NAMESPACE = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	static class Manifest {
+		String coreFile;
+		String coreIRI;
+		int coreAxioms;
+		List<Shard> shards = new ArrayList<Shard>();
+	}
+
+	static class Shard {
+		String name;
+		String file;
+		String iri;
+		int axioms;
+		List<String> signature;
+	}
+
+	private OntologyPartitioner() {
+	}
+
+	public static Map<String, Integer> write(OWLOntology ontology, Map<String, ? extends Collection<String>> shardEntities, String outputDirectory,
+			String partitionPrefix) throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
+		File directory = new File(outputDirectory);
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Error: Could not create partition directory " + outputDirectory);
+		}
+		// Owner of every entity given; an entity claimed by two shards belongs to neither
+		List<String> names = new ArrayList<String>(shardEntities.keySet());
+		Map<IRI, Integer> owners = new HashMap<IRI, Integer>();
+		for (int shard = 0; shard < names.size(); shard++) {
+			for (String entity : shardEntities.get(names.get(shard))) {
+				Integer previous = owners.putIfAbsent(IRI.create(entity), shard);
+				if (previous != null && previous != shard)
+					owners.put(IRI.create(entity), -1);
+			}
+		}
+
+		List<OWLAxiom> coreAxioms = new ArrayList<OWLAxiom>();
+		List<List<OWLAxiom>> shardAxioms = new ArrayList<List<OWLAxiom>>();
+		for (int shard = 0; shard < names.size(); shard++)
+			shardAxioms.add(new ArrayList<OWLAxiom>());
+		ontology.axioms().forEach(axiom -> {
+			int shard = ownerOf(axiom, owners);
+			if (shard >= 0)
+				shardAxioms.get(shard).add(axiom);
+			else
+				coreAxioms.add(axiom);
+		});
+
+		OWLOntologyManager sourceManager = ontology.getOWLOntologyManager();
+		OWLDocumentFormat format = SnapshotSaver.copyFormat(sourceManager.getOntologyFormat(ontology));
+		IRI coreIRI = ontology.getOntologyID().getOntologyIRI().orElse(IRI.create(partitionPrefix + "core"));
+		// A manager of its own, so that the shards importing the core do not resolve anything while they are written
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLOntology core = manager.createOntology(ontology.getOntologyID().getOntologyIRI().isPresent() ? ontology.getOntologyID() : new OWLOntologyID(coreIRI));
+		ontology.importsDeclarations().forEach(declaration -> manager.applyChange(new AddImport(core, declaration)));
+		ontology.annotations().forEach(annotation -> manager.applyChange(new AddOntologyAnnotation(core, annotation)));
+		manager.addAxioms(core, coreAxioms.stream());
+		save(manager, core, format, new File(directory, CORE_FILE));
+		Set<IRI> coreSignature = new HashSet<IRI>();
+		core.signature().forEach(entity -> coreSignature.add(entity.getIRI()));
+		manager.removeOntology(core);
+
+		Manifest manifest = new Manifest();
+		manifest.coreFile = CORE_FILE;
+		manifest.coreIRI = coreIRI.toString();
+		manifest.coreAxioms = coreAxioms.size();
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		counts.put("core", coreAxioms.size());
+		Set<String> files = new HashSet<String>();
+		for (int index = 0; index < names.size(); index++) {
+			String slug = slug(names.get(index));
+			String fileName = slug + ".owl";
+			for (int suffix = 2; !files.add(fileName); suffix++)
+				fileName = slug + "-" + suffix + ".owl";
+			OWLOntology shard = manager.createOntology(IRI.create(partitionPrefix + fileName.substring(0, fileName.length() - 4)));
+			manager.applyChange(new AddImport(shard, manager.getOWLDataFactory().getOWLImportsDeclaration(coreIRI)));
+			manager.addAxioms(shard, shardAxioms.get(index).stream());
+			save(manager, shard, format, new File(directory, fileName));
+			Set<String> signature = new TreeSet<String>();
+			final int owner = index;
+			shard.signature().forEach(entity -> {
+				// An entity owned here stays in the signature even if the core mentions it, e.g. as the object of an assertion about a core entity
+				if (!coreSignature.contains(entity.getIRI()) || Integer.valueOf(owner).equals(owners.get(entity.getIRI())))
+					signature.add(entity.getIRI().toString());
+			});
+			Shard entry = new Shard();
+			entry.name = names.get(index);
+			entry.file = fileName;
+			entry.iri = shard.getOntologyID().getOntologyIRI().get().toString();
+			entry.axioms = shardAxioms.get(index).size();
+			entry.signature = new ArrayList<String>(signature);
+			manifest.shards.add(entry);
+			counts.put(names.get(index), entry.axioms);
+			manager.removeOntology(shard);
+		}
+		try (Writer out = Files.newBufferedWriter(new File(directory, MANIFEST_FILE).toPath(), StandardCharsets.UTF_8)) {
+			GSON.toJson(manifest, out);
+		}
+		writeCatalog(directory, manifest);
+		return counts;
+	}
+
+	private static void writeCatalog(File directory, Manifest manifest) throws IOException {
+		// The core is imported by its ontology IRI, which is that of the whole ontology, so it has to be mapped to core.owl
+		File file = new File(directory, CATALOG_FILE);
+		try {
+			Document catalog = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			Element root = catalog.createElementNS(CATALOG_NAMESPACE, "catalog");
+			root.setAttribute("prefer", "public");
+			catalog.appendChild(root);
+			Map<String, String> documents = new LinkedHashMap<String, String>();
+			documents.put(manifest.coreIRI, manifest.coreFile);
+			for (Shard shard : manifest.shards)
+				documents.put(shard.iri, shard.file);
+			for (Map.Entry<String, String> document : documents.entrySet()) {
+				Element entry = catalog.createElementNS(CATALOG_NAMESPACE, "uri");
+				entry.setAttribute("id", "Module of the partition");
+				entry.setAttribute("name", document.getKey());
+				entry.setAttribute("uri", document.getValue());
+				root.appendChild(entry);
+			}
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			transformer.transform(new DOMSource(catalog), new StreamResult(file));
+		} catch (Exception e) {
+			throw new IOException("Error: Could not write the catalog " + file + ".", e);
+		}
+	}
+
+	private static int ownerOf(OWLAxiom axiom, Map<IRI, Integer> owners) {
+		// The shard owning the subject of an assertion, or else the one shard owning entities of the axiom; -1 for the core
+		IRI subject = subjectOf(axiom);
+		if (subject != null) {
+			Integer shard = owners.get(subject);
+			return shard == null ? -1 : shard;
+		}
+		int owner = -1;
+		List<IRI> mentioned = new ArrayList<IRI>();
+		axiom.signature().forEach(entity -> mentioned.add(entity.getIRI()));
+		for (IRI iri : mentioned) {
+			Integer shard = owners.get(iri);
+			if (shard == null)
+				continue;
+			if (shard < 0 || (owner >= 0 && owner != shard))
+				return -1;
+			owner = shard;
+		}
+		return owner;
+	}
+
+	private static IRI subjectOf(OWLAxiom axiom) {
+		// The named subject of a class, property or annotation assertion, null for any other axiom
+		OWLIndividual individual = null;
+		if (axiom instanceof OWLClassAssertionAxiom)
+			individual = ((OWLClassAssertionAxiom) axiom).getIndividual();
+		else if (axiom instanceof OWLPropertyAssertionAxiom)
+			individual = ((OWLPropertyAssertionAxiom<?, ?>) axiom).getSubject();
+		else if (axiom instanceof OWLAnnotationAssertionAxiom) {
+			OWLAnnotationSubject subject = ((OWLAnnotationAssertionAxiom) axiom).getSubject();
+			return subject instanceof IRI ? (IRI) subject : null;
+		}
+		return individual != null && individual.isNamed() ? individual.asOWLNamedIndividual().getIRI() : null;
+	}
+
+	private static String slug(String name) {
+		String slug = name.toLowerCase().replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+		return slug.isEmpty() || slug.equals("core") || slug.equals("manifest") ? "shard-" + slug : slug;
+	}
+
+	private static void save(OWLOntologyManager manager, OWLOntology module, OWLDocumentFormat format, File file)
+			throws OWLOntologyStorageException, IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			if (format != null)
+				manager.saveOntology(module, format, out);
+			else
+				manager.saveOntology(module, out);
+		}
+	}
+
+	static Manifest readManifest(File directory) throws IOException {
+		File file = new File(directory, MANIFEST_FILE);
+		try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			Manifest manifest = GSON.fromJson(in, Manifest.class);
+			if (manifest == null || manifest.shards == null)
+				throw new IOException("Error: " + file + " is not a partition manifest.");
+			return manifest;
+		}
+	}
+}
\ No newline at end of file
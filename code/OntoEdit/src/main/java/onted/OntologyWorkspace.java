@@ -0,0 +1,140 @@
+/* A set of ontology modules sharing one OWLOntologyManager and data factory. The base ontology (LMSS/SALI) is loaded once and left unchanged, and
+ * the additions go to an extension module which owl:imports it, so that saving writes only the additions and the base file is never rewritten.
+ * Lookups made through the MyOntology of an extension (labels, subclasses, IRI collisions) still see the base through the imports closure.
+ * writeCatalog() records where every module of the workspace is stored, so that Protege and the OWL API find the base from the extension offline.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OntologyWorkspace {
+	private static final String CATALOG_NAMESPACE = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+	private final OWLOntologyManager manager;
+	private final OWLDataFactory factory;
+	// Ontology IRI of every module loaded or saved, with the file it is stored in
+	private final Map<IRI, File> documents = new LinkedHashMap<IRI, File>();
+
+	public OntologyWorkspace() {
+		manager = OWLManager.createOWLOntologyManager();
+		factory = manager.getOWLDataFactory();
+	}
+
+	public OWLOntologyManager getManager() {
+		return manager;
+	}
+
+	public OWLDataFactory getFactory() {
+		return factory;
+	}
+
+	public OWLOntology loadModule(String owlFile) throws OWLOntologyCreationException {
+		// A module already loaded from the same file is returned as it is
+		File file = new File(owlFile);
+		for (Map.Entry<IRI, File> document : documents.entrySet()) {
+			if (document.getValue().getAbsoluteFile().equals(file.getAbsoluteFile()) && manager.getOntology(document.getKey()) != null)
+				return manager.getOntology(document.getKey());
+		}
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
+		OWLOntology module = manager.loadOntologyFromOntologyDocument(file);
+		event.operation = "load";
+		event.file = owlFile;
+		event.entities = module.getAxiomCount();
+		event.bytes = file.length();
+		event.commit();
+		documents.put(moduleIRI(module), file);
+		return module;
+	}
+
+	public MyOntology openExtension(String baseFile, String extensionIRIString, String IRIPrefix) throws OWLOntologyCreationException {
+		// New, empty extension module importing the base
+		OWLOntology base = loadModule(baseFile);
+		IRI extensionIRI = IRI.create(extensionIRIString);
+		if (manager.contains(extensionIRI)) {
+			throw new RuntimeException("Error: The workspace already has a module " + extensionIRIString + ".");
+		}
+		OWLOntology extension = manager.createOntology(extensionIRI);
+		manager.applyChange(new AddImport(extension, factory.getOWLImportsDeclaration(moduleIRI(base))));
+		return new MyOntology(manager, extension, IRIPrefix);
+	}
+
+	public MyOntology openModule(String owlFile, String IRIPrefix) throws OWLOntologyCreationException {
+		// An extension saved earlier, to be extended further. Its base has to be loaded into the workspace first (or be found through the catalog)
+		return new MyOntology(manager, loadModule(owlFile), IRIPrefix);
+	}
+
+	public void saveModule(MyOntology module, String owlFile) throws OWLOntologyStorageException, IOException {
+		module.saveOntology(owlFile);
+		documents.put(moduleIRI(module.getOntology()), new File(owlFile));
+	}
+
+	private IRI moduleIRI(OWLOntology module) {
+		// Anonymous ontologies are imported by their document IRI
+		return module.getOntologyID().getOntologyIRI().orElse(manager.getOntologyDocumentIRI(module));
+	}
+
+	public void writeCatalog(String catalogFile) throws IOException {
+		// The entries already in the catalog (such as those of a Protege folder repository) are kept, except those for the modules of the workspace
+		File file = new File(catalogFile);
+		Path directory = file.getAbsoluteFile().getParentFile().toPath();
+		try {
+			DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+			builderFactory.setNamespaceAware(true);
+			DocumentBuilder builder = builderFactory.newDocumentBuilder();
+			Document catalog;
+			if (file.exists()) {
+				catalog = builder.parse(file);
+			} else {
+				catalog = builder.newDocument();
+				Element root = catalog.createElementNS(CATALOG_NAMESPACE, "catalog");
+				root.setAttribute("prefer", "public");
+				catalog.appendChild(root);
+			}
+			Element root = catalog.getDocumentElement();
+			NodeList entries = catalog.getElementsByTagNameNS("*", "uri");
+			List<Element> replaced = new ArrayList<Element>();
+			for (int i = 0; i < entries.getLength(); i++) {
+				Element entry = (Element) entries.item(i);
+				if (documents.containsKey(IRI.create(entry.getAttribute("name"))))
+					replaced.add(entry);
+			}
+			for (Element entry : replaced)
+				entry.getParentNode().removeChild(entry);
+			for (Map.Entry<IRI, File> document : documents.entrySet()) {
+				Element entry = catalog.createElementNS(CATALOG_NAMESPACE, "uri");
+				entry.setAttribute("id", "Module of the ontology workspace");
+				entry.setAttribute("name", document.getKey().toString());
+				entry.setAttribute("uri", directory.relativize(document.getValue().getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/'));
+				root.appendChild(entry);
+			}
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			transformer.transform(new DOMSource(catalog), new StreamResult(file));
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Error: Could not write the catalog " + catalogFile + ".", e);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+/* A small LRU cache of memory-mapped file pages shared by all the files of a DiskTripleStore. Each PagedFile is split into fixed size pages which are mapped
+ * on first access and kept in the cache. Once the cache holds more than the configured number of pages, the least recently used page is forced to disk
+ * and dropped, which bounds the pages the store holds on to. A dropped page stays mapped until its buffer is garbage collected (the JDK has no supported
+ * way to unmap it), so the address space in use can briefly exceed the cache size after heavy eviction.
+ */
+
+package onted;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PageCache {
+	private final int maxPages;
+	private final LinkedHashMap<PageKey, MappedByteBuffer> pages;
+
+	public PageCache(int maxPages) {
+		this.maxPages = maxPages;
+		// Access ordered map, the eldest entry is always the least recently used page
+		this.pages = new LinkedHashMap<PageKey, MappedByteBuffer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PageKey, MappedByteBuffer> eldest) {
+				if (size() > PageCache.this.maxPages) {
+					eldest.getValue().force();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public synchronized MappedByteBuffer getPage(PagedFile file, long pageNo) {
+		PageKey key = new PageKey(file, pageNo);
+		MappedByteBuffer page = pages.get(key);
+		if (page != null)
+			return page;
+		try {
+			// Mapping a region beyond the end of the file grows the file to cover it
+			page = file.getChannel().map(FileChannel.MapMode.READ_WRITE, pageNo * file.getPageSize(), file.getPageSize());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		pages.put(key, page);
+		return page;
+	}
+
+	public synchronized void flush(PagedFile file) {
+		for (Map.Entry<PageKey, MappedByteBuffer> entry : pages.entrySet()) {
+			if (file == null || entry.getKey().file == file) {
+				entry.getValue().force();
+			}
+		}
+	}
+
+	public synchronized void evict(PagedFile file) {
+		Iterator<Map.Entry<PageKey, MappedByteBuffer>> it = pages.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<PageKey, MappedByteBuffer> entry = it.next();
+			if (entry.getKey().file == file) {
+				entry.getValue().force();
+				it.remove();
+			}
+		}
+	}
+
+	private static final class PageKey {
+		private final PagedFile file;
+		private final long pageNo;
+
+		PageKey(PagedFile file, long pageNo) {
+			this.file = file;
+			this.pageNo = pageNo;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof PageKey))
+				return false;
+			PageKey key = (PageKey) other;
+			return key.file == file && key.pageNo == pageNo;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(file) * 31 + Long.hashCode(pageNo);
+		}
+	}
+}
\ No newline at end of file
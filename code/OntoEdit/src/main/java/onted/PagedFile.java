@@ -0,0 +1,94 @@
+/* A file of fixed size pages accessed through the shared PageCache. Provides positional reads and writes of ints, longs and byte ranges; values of fixed
+ * width never straddle a page as long as the page size is a multiple of the record size used by the caller, while byte ranges may cross pages freely.
+ * Pages are mapped read-write and grow the file on demand, the logical length of the content is tracked by the owner of the file.
+ */
+
+package onted;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class PagedFile implements Closeable {
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final PageCache cache;
+	private final int pageSize;
+
+	public PagedFile(File path, int pageSize, PageCache cache) throws IOException {
+		this.file = new RandomAccessFile(path, "rw");
+		this.channel = file.getChannel();
+		this.pageSize = pageSize;
+		this.cache = cache;
+	}
+
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	private MappedByteBuffer page(long position) {
+		return cache.getPage(this, position / pageSize);
+	}
+
+	public int readInt(long position) {
+		return page(position).getInt((int) (position % pageSize));
+	}
+
+	public void writeInt(long position, int value) {
+		page(position).putInt((int) (position % pageSize), value);
+	}
+
+	public long readLong(long position) {
+		return page(position).getLong((int) (position % pageSize));
+	}
+
+	public void writeLong(long position, long value) {
+		page(position).putLong((int) (position % pageSize), value);
+	}
+
+	public void read(long position, byte[] dst, int offset, int length) {
+		while (length > 0) {
+			int inPage = (int) (position % pageSize);
+			int chunk = Math.min(length, pageSize - inPage);
+			MappedByteBuffer page = page(position);
+			for (int i = 0; i < chunk; i++) {
+				dst[offset + i] = page.get(inPage + i);
+			}
+			position += chunk;
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	public void write(long position, byte[] src, int offset, int length) {
+		while (length > 0) {
+			int inPage = (int) (position % pageSize);
+			int chunk = Math.min(length, pageSize - inPage);
+			MappedByteBuffer page = page(position);
+			for (int i = 0; i < chunk; i++) {
+				page.put(inPage + i, src[offset + i]);
+			}
+			position += chunk;
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	public void flush() {
+		cache.flush(this);
+	}
+
+	@Override
+	public void close() throws IOException {
+		cache.evict(this);
+		channel.close();
+		file.close();
+	}
+}
\ No newline at end of file
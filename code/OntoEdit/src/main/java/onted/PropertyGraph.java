@@ -0,0 +1,190 @@
+/* Adjacency index over the object property assertions between named individuals, used to evaluate PropertyPath queries without going through the
+ * OWL API axiom indexes. Individuals get dense int ids, and every property keeps a forward and a reverse adjacency list per individual as plain int
+ * arrays, so a step of a path is a walk over int arrays and the set of nodes reached is a BitSet. Closures are evaluated breadth first with the
+ * nodes already reached pruned, so p+ terminates on cycles and a depth bound stops after that many repetitions. Queries from several sources are
+ * evaluated independently on the fork-join pool; they take a read lock, and the axioms added or removed through MyOntology take the write lock.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class PropertyGraph implements AxiomListener {
+	// Adjacency lists of one direction of a property, indexed by node id; sizes[n] entries of lists[n] are used
+	private static class Adjacency {
+		int[][] lists = new int[16][];
+		int[] sizes = new int[16];
+
+		void add(int from, int to) {
+			if (from >= lists.length) {
+				int capacity = Math.max(from + 1, lists.length * 2);
+				lists = Arrays.copyOf(lists, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+			}
+			int[] list = lists[from];
+			if (list == null) {
+				list = new int[2];
+				lists[from] = list;
+			} else if (sizes[from] == list.length) {
+				list = Arrays.copyOf(list, list.length * 2);
+				lists[from] = list;
+			}
+			list[sizes[from]++] = to;
+		}
+
+		void remove(int from, int to) {
+			// The order of a list does not matter, the last entry takes the place of the removed one
+			if (from >= lists.length || lists[from] == null)
+				return;
+			int[] list = lists[from];
+			for (int i = 0; i < sizes[from]; i++) {
+				if (list[i] == to) {
+					list[i] = list[--sizes[from]];
+					return;
+				}
+			}
+		}
+
+		void forEach(int from, BitSet target) {
+			if (from < lists.length && lists[from] != null) {
+				int[] list = lists[from];
+				for (int i = 0; i < sizes[from]; i++)
+					target.set(list[i]);
+			}
+		}
+	}
+
+	private final List<String> iris = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final Map<String, Adjacency> forward = new HashMap<String, Adjacency>();
+	private final Map<String, Adjacency> reverse = new HashMap<String, Adjacency>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public PropertyGraph(OWLOntology ontology) {
+		ontology.axioms(AxiomType.OBJECT_PROPERTY_ASSERTION, Imports.INCLUDED).forEach(this::axiomAdded);
+	}
+
+	@Override
+	public void axiomAdded(OWLAxiom axiom) {
+		update(axiom, true);
+	}
+
+	@Override
+	public void axiomRemoved(OWLAxiom axiom) {
+		update(axiom, false);
+	}
+
+	private void update(OWLAxiom axiom, boolean added) {
+		if (!(axiom instanceof OWLObjectPropertyAssertionAxiom))
+			return;
+		OWLObjectPropertyAssertionAxiom assertion = (OWLObjectPropertyAssertionAxiom) axiom;
+		if (!assertion.getSubject().isNamed() || !assertion.getObject().isNamed())
+			return;
+		// An assertion on an inverse property expression is stored as the assertion on the named property it inverts
+		OWLObjectPropertyExpression expression = assertion.getProperty();
+		boolean inverted = expression.isAnonymous();
+		String property = expression.getNamedProperty().getIRI().toString();
+		String subject = assertion.getSubject().asOWLNamedIndividual().getIRI().toString();
+		String object = assertion.getObject().asOWLNamedIndividual().getIRI().toString();
+		lock.writeLock().lock();
+		try {
+			int from = idOf(inverted ? object : subject);
+			int to = idOf(inverted ? subject : object);
+			if (added) {
+				forward.computeIfAbsent(property, key -> new Adjacency()).add(from, to);
+				reverse.computeIfAbsent(property, key -> new Adjacency()).add(to, from);
+			} else if (forward.containsKey(property)) {
+				forward.get(property).remove(from, to);
+				reverse.get(property).remove(to, from);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int idOf(String individual) {
+		Integer id = ids.get(individual);
+		if (id == null) {
+			id = iris.size();
+			iris.add(individual);
+			ids.put(individual, id);
+		}
+		return id;
+	}
+
+	public List<String> traverse(String source, PropertyPath path) {
+		lock.readLock().lock();
+		try {
+			Integer id = ids.get(source);
+			if (id == null)
+				return path.kind == PropertyPath.Kind.CLOSURE && path.includeSelf ? Arrays.asList(source) : new ArrayList<String>();
+			BitSet start = new BitSet();
+			start.set(id);
+			return toIRIs(evaluate(path, start));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Map<String, List<String>> traverse(Collection<String> sources, PropertyPath path) {
+		// Every source is answered on its own (in parallel), the results keep the order of the sources
+		Map<String, List<String>> answers = new ConcurrentHashMap<String, List<String>>();
+		sources.parallelStream().distinct().forEach(source -> answers.put(source, traverse(source, path)));
+		Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+		for (String source : sources)
+			result.put(source, answers.get(source));
+		return result;
+	}
+
+	private BitSet evaluate(PropertyPath path, BitSet sources) {
+		switch (path.kind) {
+		case STEP:
+			BitSet next = new BitSet();
+			Adjacency adjacency = (path.inverse ? reverse : forward).get(path.property);
+			if (adjacency != null) {
+				for (int node = sources.nextSetBit(0); node >= 0; node = sources.nextSetBit(node + 1))
+					adjacency.forEach(node, next);
+			}
+			return next;
+		case SEQUENCE:
+			BitSet current = sources;
+			for (PropertyPath part : path.parts) {
+				if (current.isEmpty())
+					break;
+				current = evaluate(part, current);
+			}
+			return current;
+		default:
+			// Breadth first: every round expands only the nodes reached for the first time in the round before
+			BitSet reached = path.includeSelf ? (BitSet) sources.clone() : new BitSet();
+			BitSet frontier = sources;
+			for (int depth = 0; depth < path.maxDepth && !frontier.isEmpty(); depth++) {
+				BitSet expanded = evaluate(path.inner, frontier);
+				expanded.andNot(reached);
+				reached.or(expanded);
+				frontier = expanded;
+			}
+			return reached;
+		}
+	}
+
+	private List<String> toIRIs(BitSet nodes) {
+		List<String> result = new ArrayList<String>(nodes.cardinality());
+		for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1))
+			result.add(iris.get(node));
+		return result;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+/* A path over object property assertions, in the manner of SPARQL property paths: a single property, its inverse (^p), a sequence (p/q) and the
+ * transitive closures p+ and p*, optionally bounded to a maximum number of repetitions. Paths are immutable and are built from the static factory
+ * and the combinators, for instance the state containing the district a court is located in is
+ *     PropertyPath.of(locatedIn).then(PropertyPath.of(containsPlace).inverse())
+ * and the appeal chain above a court is PropertyPath.of(precededBy).oneOrMore(). They are evaluated by PropertyGraph.
+ */
+
+package onted;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class PropertyPath {
+	enum Kind { STEP, SEQUENCE, CLOSURE }
+
+	final Kind kind;
+	final String property;
+	final boolean inverse;
+	final List<PropertyPath> parts;
+	final PropertyPath inner;
+	final boolean includeSelf;
+	final int maxDepth;
+
+	private PropertyPath(Kind kind, String property, boolean inverse, List<PropertyPath> parts, PropertyPath inner, boolean includeSelf, int maxDepth) {
+		this.kind = kind;
+		this.property = property;
+		this.inverse = inverse;
+		this.parts = parts;
+		this.inner = inner;
+		this.includeSelf = includeSelf;
+		this.maxDepth = maxDepth;
+	}
+
+	public static PropertyPath of(String propertyIRI) {
+		return new PropertyPath(Kind.STEP, propertyIRI, false, null, null, false, 1);
+	}
+
+	public PropertyPath inverse() {
+		// ^(p/q) is ^q/^p, and the inverse of a closure is the closure of the inverse
+		switch (kind) {
+		case STEP:
+			return new PropertyPath(Kind.STEP, property, !inverse, null, null, false, 1);
+		case SEQUENCE:
+			List<PropertyPath> inverted = new ArrayList<PropertyPath>();
+			for (PropertyPath part : parts)
+				inverted.add(0, part.inverse());
+			return new PropertyPath(Kind.SEQUENCE, null, false, Collections.unmodifiableList(inverted), null, false, 1);
+		default:
+			return new PropertyPath(Kind.CLOSURE, null, false, null, inner.inverse(), includeSelf, maxDepth);
+		}
+	}
+
+	public PropertyPath then(PropertyPath next) {
+		List<PropertyPath> sequence = new ArrayList<PropertyPath>();
+		for (PropertyPath path : new PropertyPath[] { this, next }) {
+			if (path.kind == Kind.SEQUENCE)
+				sequence.addAll(path.parts);
+			else
+				sequence.add(path);
+		}
+		return new PropertyPath(Kind.SEQUENCE, null, false, Collections.unmodifiableList(sequence), null, false, 1);
+	}
+
+	public PropertyPath then(String propertyIRI) {
+		return then(of(propertyIRI));
+	}
+
+	public PropertyPath oneOrMore() {
+		return closure(false, Integer.MAX_VALUE);
+	}
+
+	public PropertyPath zeroOrMore() {
+		return closure(true, Integer.MAX_VALUE);
+	}
+
+	public PropertyPath upTo(int maxDepth) {
+		// Between one and maxDepth repetitions; on a closure, bounds it
+		if (maxDepth < 1)
+			throw new RuntimeException("Error: The depth of a path must be at least 1.");
+		return kind == Kind.CLOSURE ? new PropertyPath(Kind.CLOSURE, null, false, null, inner, includeSelf, maxDepth) : closure(false, maxDepth);
+	}
+
+	private PropertyPath closure(boolean includeSelf, int maxDepth) {
+		PropertyPath repeated = kind == Kind.CLOSURE ? inner : this;
+		return new PropertyPath(Kind.CLOSURE, null, false, null, repeated, includeSelf, maxDepth);
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case STEP:
+			return (inverse ? "^<" : "<") + property + ">";
+		case SEQUENCE:
+			StringBuilder text = new StringBuilder();
+			for (PropertyPath part : parts)
+				text.append(text.length() == 0 ? "" : "/").append(part);
+			return text.toString();
+		default:
+			String operand = inner.kind == Kind.SEQUENCE ? "(" + inner + ")" : inner.toString();
+			if (maxDepth == Integer.MAX_VALUE)
+				return operand + (includeSelf ? "*" : "+");
+			return operand + "{" + (includeSelf ? 0 : 1) + "," + maxDepth + "}";
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+/* Loads the shards of a partitioned ontology (see OntologyPartitioner) on demand. Only manifest.json is read up front; the entities of every shard's
+ * signature then point to their shard, and a shard is parsed into the manager the first time a lookup touches one of them, or when it is asked for
+ * by name. A loaded shard is added to the imports of the core in memory, so the lookups through the imports closure see its axioms. Only lookups of
+ * a given entity load a shard: the searches over the whole ontology (MyOntology.getIndividuals, getClassesByLabel, the parts of a path beyond its
+ * start) see only the shards loaded so far, so a caller needing all of them loads them first with MyOntology.loadShard.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ShardLoader {
+	private final File directory;
+	private final IRI coreIRI;
+	private final Map<String, OntologyPartitioner.Shard> shards = new LinkedHashMap<String, OntologyPartitioner.Shard>();
+	// Entity IRI -> shard declaring it, only for shards not loaded yet. Concurrent, so that the lookups do not wait for a load
+	private final Map<IRI, String> pendingEntities = new ConcurrentHashMap<IRI, String>();
+	private final Map<String, OWLOntology> loaded = new LinkedHashMap<String, OWLOntology>();
+
+	public ShardLoader(String partitionDirectory) throws IOException {
+		directory = new File(partitionDirectory);
+		OntologyPartitioner.Manifest manifest = OntologyPartitioner.readManifest(directory);
+		coreIRI = IRI.create(manifest.coreIRI);
+		for (OntologyPartitioner.Shard shard : manifest.shards) {
+			shards.put(shard.name, shard);
+			for (String entity : shard.signature)
+				pendingEntities.putIfAbsent(IRI.create(entity), shard.name);
+		}
+	}
+
+	public IRI getCoreIRI() {
+		return coreIRI;
+	}
+
+	public synchronized List<String> getShardNames() {
+		return new ArrayList<String>(shards.keySet());
+	}
+
+	public String shardDeclaring(IRI entityIRI) {
+		return pendingEntities.get(entityIRI);
+	}
+
+	public synchronized boolean isLoaded(String name) {
+		return loaded.containsKey(name);
+	}
+
+	public synchronized OWLOntology load(String name, OWLOntologyManager manager, OWLOntology core) throws OWLOntologyCreationException {
+		OWLOntology shard = loaded.get(name);
+		if (shard != null)
+			return shard;
+		OntologyPartitioner.Shard entry = shards.get(name);
+		if (entry == null)
+			throw new RuntimeException("Error: The partition has no shard " + name + ".");
+		File file = new File(directory, entry.file);
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
+		// The core the shard imports is already in the manager, nothing else is resolved
+		shard = manager.loadOntologyFromOntologyDocument(file);
+		manager.applyChange(new AddImport(core, manager.getOWLDataFactory().getOWLImportsDeclaration(IRI.create(entry.iri))));
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = "shard load";
+			event.file = file.getPath();
+			event.entities = shard.getAxiomCount();
+			event.bytes = file.length();
+			event.commit();
+		}
+		loaded.put(name, shard);
+		for (String entity : entry.signature)
+			pendingEntities.remove(IRI.create(entity), name);
+		return shard;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+/* Saves of an in-memory ontology that do not hold up the caller. The snapshot (ontology ID, imports, annotations, axioms and document format) is
+ * taken in the calling thread, which only copies references to the immutable axioms, and a background thread builds an ontology of its own from it
+ * and serializes that to a temporary file, renamed into place once complete. Changes made after save() returns are not in the file.
+ * This is not copy-on-write: taking the snapshot walks every axiom on the caller thread, and the background ontology keeps indexes of its own over
+ * all of them, so the heap holds about two ontologies until the save is done. The storers of the OWL API only write an OWLOntology, and the live
+ * one cannot be frozen while the caller changes it, so this is the price of saving while the changes go on. A save after the last change gains
+ * nothing from it and should use MyOntology.saveOntology instead.
+ * At most maxPending saves are queued or running; a further save() waits for the oldest to finish, so checkpoints requested faster than they can
+ * be written slow the build down instead of piling up snapshots in memory. close() waits for the saves still pending.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class SnapshotSaver implements Closeable {
+	private final Semaphore pending;
+	private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "snapshot-save");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public SnapshotSaver(int maxPending) {
+		if (maxPending < 1)
+			throw new RuntimeException("Error: At least one pending save must be allowed.");
+		this.pending = new Semaphore(maxPending);
+	}
+
+	public Future<File> save(OWLOntology ontology, String myFile) throws InterruptedException {
+		// Backpressure: wait here until one of the pending saves is done
+		pending.acquire();
+		try {
+			OWLOntologyManager manager = ontology.getOWLOntologyManager();
+			final OWLOntologyID ontologyID = ontology.getOntologyID();
+			final List<OWLImportsDeclaration> imports = ontology.importsDeclarations().collect(Collectors.toList());
+			final List<OWLAnnotation> annotations = ontology.annotations().collect(Collectors.toList());
+			final List<OWLAxiom> axioms = ontology.axioms().collect(Collectors.toList());
+			final OWLDocumentFormat format = copyFormat(manager.getOntologyFormat(ontology));
+			return saveExecutor.submit(() -> {
+				try {
+					return write(ontologyID, imports, annotations, axioms, format, new File(myFile));
+				} finally {
+					pending.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			pending.release();
+			throw e;
+		}
+	}
+
+	static OWLDocumentFormat copyFormat(OWLDocumentFormat format) {
+		// The prefixes of the format may still change in the foreground, the copy keeps those of the snapshot
+		if (format == null)
+			return null;
+		try {
+			OWLDocumentFormat copy = format.getClass().getDeclaredConstructor().newInstance();
+			if (format.isPrefixOWLDocumentFormat())
+				copy.asPrefixOWLDocumentFormat().copyPrefixesFrom(format.asPrefixOWLDocumentFormat());
+			return copy;
+		} catch (ReflectiveOperationException e) {
+			return format;
+		}
+	}
+
+	private static File write(OWLOntologyID ontologyID, List<OWLImportsDeclaration> imports, List<OWLAnnotation> annotations, List<OWLAxiom> axioms,
+			OWLDocumentFormat format, File file) throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
+		OntologyEvents.SaveLoad event = new OntologyEvents.SaveLoad();
+		event.begin();
+		// A manager of its own, which does not resolve the imports: only the declarations are written
+		OWLOntologyManager snapshotManager = OWLManager.createOWLOntologyManager();
+		OWLOntology snapshot = snapshotManager.createOntology(ontologyID);
+		for (OWLImportsDeclaration declaration : imports)
+			snapshotManager.applyChange(new AddImport(snapshot, declaration));
+		for (OWLAnnotation annotation : annotations)
+			snapshotManager.applyChange(new AddOntologyAnnotation(snapshot, annotation));
+		snapshotManager.addAxioms(snapshot, axioms.stream());
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+			if (format != null)
+				snapshotManager.saveOntology(snapshot, format, out);
+			else
+				snapshotManager.saveOntology(snapshot, out);
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = "snapshot save";
+			event.file = file.getPath();
+			event.entities = axioms.size();
+			event.bytes = file.length();
+			event.commit();
+		}
+		return file;
+	}
+
+	@Override
+	public void close() {
+		saveExecutor.shutdown();
+		try {
+			saveExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,296 @@
+/* Index of the named class hierarchy (SubClassOf and EquivalentClasses between named classes) answering subsumption, depth and common ancestor
+ * queries without a reasoner. Classes get dense ids, and a breadth first walk down from owl:Thing gives every class its depth (the shortest path
+ * from owl:Thing) and a spanning tree, which is numbered in pre and post order. A class is below another along the tree exactly when its interval
+ * lies within the other's, a constant time test. Classes with more than one parent somewhere above them also keep the sorted array of all their
+ * ancestors, searched when the interval test fails, so isSubClassOf stays exact on the whole DAG; for the others the interval test is the answer.
+ * Changes to the hierarchy only mark the index stale, and it is rebuilt (linear in the classes and links) on the next query, so a batch of
+ * addSubClass calls costs one rebuild. Classes without a named superclass are taken to be direct subclasses of owl:Thing.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class SubsumptionIndex implements AxiomListener {
+	private static final String OWL_THING = "http://www.w3.org/2002/07/owl#Thing";
+	private static final int[] NONE = new int[0];
+
+	// The hierarchy as asserted, kept up to date by the listener
+	private final Map<String, Set<String>> superClasses = new HashMap<String, Set<String>>();
+	private boolean stale = true;
+
+	// Built from the hierarchy when stale; ids index the arrays, owl:Thing is 0
+	private final List<String> iris = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private int[] depth;
+	private int[] treeParent;
+	private int[] pre;
+	private int[] post;
+	// All the ancestors (sorted ids), only for classes having some ancestor that is not on their tree path
+	private int[][] ancestors;
+
+	public SubsumptionIndex(OWLOntology ontology) {
+		ontology.axioms(AxiomType.DECLARATION, Imports.INCLUDED).forEach(this::axiomAdded);
+		ontology.axioms(AxiomType.SUBCLASS_OF, Imports.INCLUDED).forEach(this::axiomAdded);
+		ontology.axioms(AxiomType.EQUIVALENT_CLASSES, Imports.INCLUDED).forEach(this::axiomAdded);
+	}
+
+	@Override
+	public synchronized void axiomAdded(OWLAxiom axiom) {
+		update(axiom, true);
+	}
+
+	@Override
+	public synchronized void axiomRemoved(OWLAxiom axiom) {
+		update(axiom, false);
+	}
+
+	private void update(OWLAxiom axiom, boolean added) {
+		if (axiom instanceof OWLDeclarationAxiom) {
+			OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+			if (added && entity.isOWLClass() && !superClasses.containsKey(entity.getIRI().toString())) {
+				superClasses.put(entity.getIRI().toString(), new LinkedHashSet<String>());
+				stale = true;
+			}
+		}
+		else if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			if (!subClassOf.getSubClass().isAnonymous() && !subClassOf.getSuperClass().isAnonymous())
+				link(subClassOf.getSubClass().asOWLClass(), subClassOf.getSuperClass().asOWLClass(), added);
+		}
+		else if (axiom instanceof OWLEquivalentClassesAxiom) {
+			List<OWLClass> named = ((OWLEquivalentClassesAxiom) axiom).namedClasses().collect(Collectors.toList());
+			for (OWLClass first : named) {
+				for (OWLClass second : named) {
+					if (!first.equals(second))
+						link(first, second, added);
+				}
+			}
+		}
+	}
+
+	private void link(OWLClass subClass, OWLClass superClass, boolean added) {
+		String subIRI = subClass.getIRI().toString();
+		String superIRI = superClass.getIRI().toString();
+		if (superClass.isOWLNothing() || subClass.isOWLNothing() || subClass.isOWLThing())
+			return;
+		superClasses.computeIfAbsent(superIRI, key -> new LinkedHashSet<String>());
+		Set<String> parents = superClasses.computeIfAbsent(subIRI, key -> new LinkedHashSet<String>());
+		if (added ? parents.add(superIRI) : parents.remove(superIRI))
+			stale = true;
+	}
+
+	private void rebuildIfStale() {
+		if (!stale)
+			return;
+		stale = false;
+		iris.clear();
+		ids.clear();
+		iris.add(OWL_THING);
+		ids.put(OWL_THING, 0);
+		for (String owlClass : superClasses.keySet()) {
+			if (!owlClass.equals(OWL_THING)) {
+				ids.put(owlClass, iris.size());
+				iris.add(owlClass);
+			}
+		}
+		int count = iris.size();
+
+		// Parents and children as id arrays; a class without a named superclass hangs below owl:Thing
+		int[][] parents = new int[count][];
+		int[] childCounts = new int[count];
+		parents[0] = NONE;
+		for (int id = 1; id < count; id++) {
+			Set<String> named = superClasses.get(iris.get(id));
+			int[] list = new int[Math.max(1, named.size())];
+			int size = 0;
+			for (String parent : named) {
+				Integer parentId = ids.get(parent);
+				if (parentId != null && parentId != id)
+					list[size++] = parentId;
+			}
+			if (size == 0)
+				list[size++] = 0;
+			parents[id] = Arrays.copyOf(list, size);
+			for (int parent : parents[id])
+				childCounts[parent]++;
+		}
+		int[][] children = new int[count][];
+		for (int id = 0; id < count; id++)
+			children[id] = new int[childCounts[id]];
+		int[] filled = new int[count];
+		for (int id = 1; id < count; id++) {
+			for (int parent : parents[id])
+				children[parent][filled[parent]++] = id;
+		}
+
+		// Breadth first from owl:Thing: depths and the spanning tree. Classes only reachable through an equivalence cycle are attached to owl:Thing
+		depth = new int[count];
+		Arrays.fill(depth, -1);
+		treeParent = new int[count];
+		int[] queue = new int[count];
+		int head = 0, tail = 0;
+		depth[0] = 0;
+		treeParent[0] = -1;
+		queue[tail++] = 0;
+		int next = 1;
+		while (true) {
+			while (head < tail) {
+				int owlClass = queue[head++];
+				for (int child : children[owlClass]) {
+					if (depth[child] < 0) {
+						depth[child] = depth[owlClass] + 1;
+						treeParent[child] = owlClass;
+						queue[tail++] = child;
+					}
+				}
+			}
+			while (next < count && depth[next] >= 0)
+				next++;
+			if (next == count)
+				break;
+			depth[next] = 1;
+			treeParent[next] = 0;
+			queue[tail++] = next;
+		}
+
+		// Pre and post order numbers over the tree, without recursion (the hierarchy can be deep)
+		int[] treeChildCounts = new int[count];
+		for (int id = 1; id < count; id++)
+			treeChildCounts[treeParent[id]]++;
+		int[][] treeChildren = new int[count][];
+		for (int id = 0; id < count; id++)
+			treeChildren[id] = new int[treeChildCounts[id]];
+		Arrays.fill(filled, 0);
+		for (int id = 1; id < count; id++)
+			treeChildren[treeParent[id]][filled[treeParent[id]]++] = id;
+		pre = new int[count];
+		post = new int[count];
+		int[] stack = new int[count];
+		int[] position = new int[count];
+		int top = 0, preCounter = 0, postCounter = 0;
+		stack[top++] = 0;
+		pre[0] = preCounter++;
+		while (top > 0) {
+			int owlClass = stack[top - 1];
+			if (position[owlClass] < treeChildren[owlClass].length) {
+				int child = treeChildren[owlClass][position[owlClass]++];
+				pre[child] = preCounter++;
+				stack[top++] = child;
+			} else {
+				post[owlClass] = postCounter++;
+				top--;
+			}
+		}
+
+		// The ancestors of every class, walking up from it; kept only where some of them are off the tree path (whose length is the depth)
+		ancestors = new int[count][];
+		int[] seen = new int[count];
+		int[] found = new int[count];
+		for (int id = 1; id < count; id++) {
+			int size = 0;
+			head = 0;
+			tail = 0;
+			queue[tail++] = id;
+			seen[id] = id;
+			while (head < tail) {
+				for (int parent : parents[queue[head++]]) {
+					if (seen[parent] != id) {
+						seen[parent] = id;
+						queue[tail++] = parent;
+						found[size++] = parent;
+					}
+				}
+			}
+			if (seen[0] != id)
+				found[size++] = 0;
+			if (size > depth[id]) {
+				int[] sorted = Arrays.copyOf(found, size);
+				Arrays.sort(sorted);
+				ancestors[id] = sorted;
+			}
+		}
+	}
+
+	private int idOf(String classIRI) {
+		Integer id = ids.get(classIRI);
+		if (id == null)
+			throw new RuntimeException("Error: Class IRI not found in the ontology.");
+		return id;
+	}
+
+	public synchronized boolean isClass(String classIRI) {
+		rebuildIfStale();
+		return ids.containsKey(classIRI);
+	}
+
+	public synchronized boolean isSubClassOf(String subClassIRI, String superClassIRI) {
+		// Reflexive, as in OWL: every class is a subclass of itself
+		rebuildIfStale();
+		return isSubClassOf(idOf(subClassIRI), idOf(superClassIRI));
+	}
+
+	private boolean isSubClassOf(int subClass, int superClass) {
+		if (subClass == superClass || superClass == 0)
+			return true;
+		if (pre[superClass] <= pre[subClass] && post[subClass] <= post[superClass])
+			return true;
+		return ancestors[subClass] != null && Arrays.binarySearch(ancestors[subClass], superClass) >= 0;
+	}
+
+	public synchronized int depth(String classIRI) {
+		rebuildIfStale();
+		return depth[idOf(classIRI)];
+	}
+
+	public synchronized List<String> lowestCommonAncestors(String firstIRI, String secondIRI) {
+		// The common ancestors (a class counts as its own ancestor) that have no common ancestor below them
+		rebuildIfStale();
+		int first = idOf(firstIRI);
+		int second = idOf(secondIRI);
+		List<Integer> common = new ArrayList<Integer>();
+		for (int candidate : ancestorsOrSelf(first)) {
+			if (isSubClassOf(second, candidate))
+				common.add(candidate);
+		}
+		List<String> lowest = new ArrayList<String>();
+		for (int candidate : common) {
+			boolean hasLower = false;
+			for (int other : common) {
+				if (other != candidate && isSubClassOf(other, candidate) && !isSubClassOf(candidate, other)) {
+					hasLower = true;
+					break;
+				}
+			}
+			if (!hasLower)
+				lowest.add(iris.get(candidate));
+		}
+		Collections.sort(lowest);
+		return lowest;
+	}
+
+	private int[] ancestorsOrSelf(int owlClass) {
+		if (ancestors[owlClass] != null) {
+			int[] result = Arrays.copyOf(ancestors[owlClass], ancestors[owlClass].length + 1);
+			result[result.length - 1] = owlClass;
+			return result;
+		}
+		// All of them are on the tree path
+		int[] result = new int[depth[owlClass] + 1];
+		int size = 0;
+		for (int id = owlClass; id >= 0; id = treeParent[id])
+			result[size++] = id;
+		return result;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+/* Dictionary encoding of RDF terms (IRIs, blank nodes and literals written in N-Triples syntax) to dense integer ids for the DiskTripleStore.
+ * Terms are appended to a term file, an offsets file maps an id to the position of its term and an open addressing hash table on disk maps a term back
+ * to its id. All three files live outside the heap, only a bounded LRU cache of recently used terms is kept in memory. Ids start from 1, 0 means "no term".
+ */
+
+package onted;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TermDictionary {
+	private static final int PAGE_SIZE = 1 << 22;
+	private static final int CACHE_SIZE = 100000;
+
+	private final File directory;
+	private final PageCache pageCache;
+	private PagedFile terms;
+	private PagedFile offsets;
+	private PagedFile hashTable;
+	private int count;
+	private long termsLength;
+	private long capacity;
+	private final LinkedHashMap<String, Integer> idCache;
+	private final LinkedHashMap<Integer, String> termCache;
+
+	public TermDictionary(File directory, PageCache pageCache) throws IOException {
+		this.directory = directory;
+		this.pageCache = pageCache;
+		this.idCache = lruCache();
+		this.termCache = lruCache();
+		File meta = new File(directory, "dictionary.meta");
+		if (meta.exists()) {
+			try (DataInputStream in = new DataInputStream(new FileInputStream(meta))) {
+				count = in.readInt();
+				termsLength = in.readLong();
+				capacity = in.readLong();
+			}
+		} else {
+			capacity = 1 << 16;
+		}
+		terms = new PagedFile(new File(directory, "terms.dat"), PAGE_SIZE, pageCache);
+		offsets = new PagedFile(new File(directory, "offsets.dat"), PAGE_SIZE, pageCache);
+		hashTable = new PagedFile(new File(directory, "terms.hash"), PAGE_SIZE, pageCache);
+	}
+
+	private static <K, V> LinkedHashMap<K, V> lruCache() {
+		return new LinkedHashMap<K, V>(1024, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int lookup(String term) {
+		Integer cached = idCache.get(term);
+		if (cached != null)
+			return cached;
+		int hash = hash(term);
+		long slot = hash & (capacity - 1);
+		while (true) {
+			long entry = hashTable.readLong(slot * 8);
+			if (entry == 0)
+				return 0;
+			int id = (int) entry;
+			if ((int) (entry >>> 32) == hash && term.equals(getTerm(id))) {
+				idCache.put(term, id);
+				return id;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+	}
+
+	public int intern(String term) {
+		int id = lookup(term);
+		if (id != 0)
+			return id;
+		// Append the term and its offset, then register it in the hash table
+		byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+		id = ++count;
+		offsets.writeLong((long) id * 8, termsLength);
+		byte[] length = new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length };
+		terms.write(termsLength, length, 0, 4);
+		terms.write(termsLength + 4, bytes, 0, bytes.length);
+		termsLength += 4 + bytes.length;
+		if (count * 2L > capacity) {
+			rehash(capacity * 2);
+		}
+		insert(hashTable, capacity, hash(term), id);
+		idCache.put(term, id);
+		return id;
+	}
+
+	public String getTerm(int id) {
+		if (id <= 0 || id > count)
+			throw new RuntimeException("Error: Unknown term id " + id + ".");
+		String cached = termCache.get(id);
+		if (cached != null)
+			return cached;
+		long offset = offsets.readLong((long) id * 8);
+		byte[] length = new byte[4];
+		terms.read(offset, length, 0, 4);
+		int len = ((length[0] & 0xff) << 24) | ((length[1] & 0xff) << 16) | ((length[2] & 0xff) << 8) | (length[3] & 0xff);
+		byte[] bytes = new byte[len];
+		terms.read(offset + 4, bytes, 0, len);
+		String term = new String(bytes, StandardCharsets.UTF_8);
+		termCache.put(id, term);
+		return term;
+	}
+
+	private static int hash(String term) {
+		int h = term.hashCode();
+		// Spread the bits so that IRIs sharing a long prefix do not cluster
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private static void insert(PagedFile table, long tableCapacity, int hash, int id) {
+		long slot = hash & (tableCapacity - 1);
+		while (table.readLong(slot * 8) != 0) {
+			slot = (slot + 1) & (tableCapacity - 1);
+		}
+		table.writeLong(slot * 8, ((long) hash << 32) | (id & 0xffffffffL));
+	}
+
+	private void rehash(long newCapacity) {
+		try {
+			File tmpFile = new File(directory, "terms.hash.tmp");
+			Files.deleteIfExists(tmpFile.toPath());
+			PagedFile newTable = new PagedFile(tmpFile, PAGE_SIZE, pageCache);
+			for (long slot = 0; slot < capacity; slot++) {
+				long entry = hashTable.readLong(slot * 8);
+				if (entry != 0) {
+					insert(newTable, newCapacity, (int) (entry >>> 32), (int) entry);
+				}
+			}
+			newTable.close();
+			hashTable.close();
+			Files.move(tmpFile.toPath(), new File(directory, "terms.hash").toPath(), StandardCopyOption.REPLACE_EXISTING);
+			hashTable = new PagedFile(new File(directory, "terms.hash"), PAGE_SIZE, pageCache);
+			capacity = newCapacity;
+		} catch (IOException e) {
+			throw new RuntimeException("Error: Could not grow the term dictionary.", e);
+		}
+	}
+
+	public void flush() throws IOException {
+		terms.flush();
+		offsets.flush();
+		hashTable.flush();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, "dictionary.meta")))) {
+			out.writeInt(count);
+			out.writeLong(termsLength);
+			out.writeLong(capacity);
+		}
+	}
+
+	public void close() throws IOException {
+		flush();
+		terms.close();
+		offsets.close();
+		hashTable.close();
+	}
+}
\ No newline at end of file
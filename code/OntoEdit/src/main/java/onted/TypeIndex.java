@@ -0,0 +1,218 @@
+/* Index of the individuals of every class, kept up to date as axioms are added and removed through MyOntology. Individuals get dense int ids in the order the
+ * index first sees them (results come out in that order, so pages stay stable) and every class a CompressedBitmap of its direct instances.
+ * The named class hierarchy (SubClassOf and EquivalentClasses between named classes) is kept alongside, and the instances of a class including
+ * those of its subclasses are the union of the bitmaps of the class and everything below it. Every individual is an instance of owl:Thing.
+ * The index starts from the axioms of the ontology and of the imports loaded when it is built.
+ */
+
+package onted;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class TypeIndex implements AxiomListener {
+	private static final String OWL_THING = "http://www.w3.org/2002/07/owl#Thing";
+
+	private final List<String> iris = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final CompressedBitmap allIndividuals = new CompressedBitmap();
+	private final Map<String, CompressedBitmap> directInstances = new HashMap<String, CompressedBitmap>();
+	private final Map<String, Set<String>> subClasses = new HashMap<String, Set<String>>();
+	private final Set<String> classes = new HashSet<String>();
+	// Declarations and class assertions of every individual, it is no longer an instance of owl:Thing once none is left
+	private int[] references = new int[16];
+
+	public TypeIndex(OWLOntology ontology) {
+		ontology.axioms(AxiomType.DECLARATION, Imports.INCLUDED).forEach(this::axiomAdded);
+		ontology.axioms(AxiomType.SUBCLASS_OF, Imports.INCLUDED).forEach(this::axiomAdded);
+		ontology.axioms(AxiomType.EQUIVALENT_CLASSES, Imports.INCLUDED).forEach(this::axiomAdded);
+		ontology.axioms(AxiomType.CLASS_ASSERTION, Imports.INCLUDED).forEach(this::axiomAdded);
+	}
+
+	@Override
+	public synchronized void axiomAdded(OWLAxiom axiom) {
+		if (axiom instanceof OWLClassAssertionAxiom) {
+			OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+			if (assertion.getClassExpression().isAnonymous() || !assertion.getIndividual().isNamed())
+				return;
+			String owlClass = assertion.getClassExpression().asOWLClass().getIRI().toString();
+			int id = reference(assertion.getIndividual().asOWLNamedIndividual().getIRI().toString());
+			classes.add(owlClass);
+			directInstances.computeIfAbsent(owlClass, key -> new CompressedBitmap()).add(id);
+		}
+		else if (axiom instanceof OWLDeclarationAxiom) {
+			OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+			if (entity.isOWLClass())
+				classes.add(entity.getIRI().toString());
+			else if (entity.isOWLNamedIndividual())
+				reference(entity.getIRI().toString());
+		}
+		else if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			if (!subClassOf.getSubClass().isAnonymous() && !subClassOf.getSuperClass().isAnonymous())
+				link(subClassOf.getSuperClass().asOWLClass(), subClassOf.getSubClass().asOWLClass());
+		}
+		else if (axiom instanceof OWLEquivalentClassesAxiom) {
+			List<OWLClass> named = ((OWLEquivalentClassesAxiom) axiom).namedClasses().collect(Collectors.toList());
+			for (OWLClass first : named) {
+				for (OWLClass second : named) {
+					if (!first.equals(second))
+						link(first, second);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void axiomRemoved(OWLAxiom axiom) {
+		// The classes stay known, only the memberships and links are undone
+		if (axiom instanceof OWLClassAssertionAxiom) {
+			OWLClassAssertionAxiom assertion = (OWLClassAssertionAxiom) axiom;
+			if (assertion.getClassExpression().isAnonymous() || !assertion.getIndividual().isNamed())
+				return;
+			String individual = assertion.getIndividual().asOWLNamedIndividual().getIRI().toString();
+			CompressedBitmap own = directInstances.get(assertion.getClassExpression().asOWLClass().getIRI().toString());
+			if (own != null && ids.containsKey(individual))
+				own.remove(ids.get(individual));
+			release(individual);
+		}
+		else if (axiom instanceof OWLDeclarationAxiom) {
+			OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+			if (entity.isOWLNamedIndividual())
+				release(entity.getIRI().toString());
+		}
+		else if (axiom instanceof OWLSubClassOfAxiom) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			if (!subClassOf.getSubClass().isAnonymous() && !subClassOf.getSuperClass().isAnonymous())
+				unlink(subClassOf.getSuperClass().asOWLClass(), subClassOf.getSubClass().asOWLClass());
+		}
+		else if (axiom instanceof OWLEquivalentClassesAxiom) {
+			List<OWLClass> named = ((OWLEquivalentClassesAxiom) axiom).namedClasses().collect(Collectors.toList());
+			for (OWLClass first : named) {
+				for (OWLClass second : named) {
+					if (!first.equals(second))
+						unlink(first, second);
+				}
+			}
+		}
+	}
+
+	private void link(OWLClass superClass, OWLClass subClass) {
+		String superIRI = superClass.getIRI().toString();
+		String subIRI = subClass.getIRI().toString();
+		classes.add(superIRI);
+		classes.add(subIRI);
+		subClasses.computeIfAbsent(superIRI, key -> new LinkedHashSet<String>()).add(subIRI);
+	}
+
+	private void unlink(OWLClass superClass, OWLClass subClass) {
+		Set<String> subs = subClasses.get(superClass.getIRI().toString());
+		if (subs != null)
+			subs.remove(subClass.getIRI().toString());
+	}
+
+	private int reference(String individual) {
+		Integer id = ids.get(individual);
+		if (id == null) {
+			id = iris.size();
+			iris.add(individual);
+			ids.put(individual, id);
+			if (id == references.length)
+				references = Arrays.copyOf(references, id * 2);
+		}
+		if (references[id]++ == 0)
+			allIndividuals.add(id);
+		return id;
+	}
+
+	private void release(String individual) {
+		Integer id = ids.get(individual);
+		if (id != null && references[id] > 0 && --references[id] == 0)
+			allIndividuals.remove(id);
+	}
+
+	public synchronized boolean isClass(String classIRI) {
+		return classes.contains(classIRI) || classIRI.equals(OWL_THING);
+	}
+
+	public synchronized CompressedBitmap instances(String classIRI, boolean direct) {
+		// The result is a copy, later changes to the index do not show in it
+		if (!direct && classIRI.equals(OWL_THING))
+			return allIndividuals.or(new CompressedBitmap());
+		CompressedBitmap result = new CompressedBitmap();
+		if (direct) {
+			CompressedBitmap own = directInstances.get(classIRI);
+			return own == null ? result : own.or(result);
+		}
+		// Breadth first over the subclasses, each class once (equivalent classes link both ways)
+		Set<String> visited = new HashSet<String>();
+		Deque<String> queue = new ArrayDeque<String>();
+		queue.add(classIRI);
+		visited.add(classIRI);
+		while (!queue.isEmpty()) {
+			String owlClass = queue.poll();
+			CompressedBitmap own = directInstances.get(owlClass);
+			if (own != null)
+				result = result.or(own);
+			for (String subClass : subClasses.getOrDefault(owlClass, Collections.emptySet())) {
+				if (visited.add(subClass))
+					queue.add(subClass);
+			}
+		}
+		return result;
+	}
+
+	public synchronized int count(String classIRI, boolean direct) {
+		return instances(classIRI, direct).cardinality();
+	}
+
+	public synchronized List<String> getIndividuals(String classIRI, boolean direct, int offset, int limit) {
+		int[] page = instances(classIRI, direct).toArray();
+		List<String> result = new ArrayList<String>();
+		for (int i = Math.max(0, offset); i < page.length && result.size() < limit; i++)
+			result.add(iris.get(page[i]));
+		return result;
+	}
+
+	public Iterator<List<String>> pages(String classIRI, boolean direct, int pageSize) {
+		// The instances are taken when the iteration starts, the pages are then resolved to IRIs one at a time
+		if (pageSize <= 0)
+			throw new RuntimeException("Error: The page size must be positive.");
+		int[] members = instances(classIRI, direct).toArray();
+		return new Iterator<List<String>>() {
+			private int position;
+
+			@Override
+			public boolean hasNext() {
+				return position < members.length;
+			}
+
+			@Override
+			public List<String> next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				List<String> page = new ArrayList<String>(Math.min(pageSize, members.length - position));
+				synchronized (TypeIndex.this) {
+					for (int end = Math.min(members.length, position + pageSize); position < end; position++)
+						page.add(iris.get(members[position]));
+				}
+				return page;
+			}
+		};
+	}
+}
\ No newline at end of file
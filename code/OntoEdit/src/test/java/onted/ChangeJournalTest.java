@@ -0,0 +1,188 @@
+/* Tests of ChangeJournal recovery: replay of the segments, a record torn by a crash, a checkpoint holding only the changes made on top of the base
+ * ontology, and a journal retired by a run that stopped while deleting it. Closing a journal without retiring it leaves the same files as a crash
+ * after its last sync.
+ */
+
+package onted;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+public class ChangeJournalTest {
+	private static final String NS = "http://example.org/test#";
+
+	@TempDir
+	Path directory;
+
+	private OWLOntologyManager manager;
+	private OWLDataFactory factory;
+	private String journalDirectory;
+
+	@BeforeEach
+	public void createManager() {
+		manager = OWLManager.createOWLOntologyManager();
+		factory = manager.getOWLDataFactory();
+		journalDirectory = directory.resolve("journal").toString();
+	}
+
+	private OWLAxiom subClass(int i) {
+		return factory.getOWLSubClassOfAxiom(factory.getOWLClass(IRI.create(NS + "C" + i)), factory.getOWLClass(IRI.create(NS + "Base")));
+	}
+
+	private OWLAxiom label(int i) {
+		return factory.getOWLAnnotationAssertionAxiom(IRI.create(NS + "C" + i), factory.getRDFSLabel(factory.getOWLLiteral("Class " + i, "en")));
+	}
+
+	private OWLOntology base() throws OWLOntologyCreationException {
+		// A fresh copy of the ontology a build starts from, as loaded again after a crash
+		for (OWLOntology loaded : manager.ontologies().toArray(OWLOntology[]::new))
+			manager.removeOntology(loaded);
+		OWLOntology ontology = manager.createOntology(IRI.create("http://example.org/test"));
+		for (int i = 1000; i < 1100; i++)
+			ontology.addAxiom(subClass(i));
+		return ontology;
+	}
+
+	private ChangeJournal open() throws IOException {
+		return new ChangeJournal(journalDirectory, factory, 1, 1L << 30);
+	}
+
+	private static void add(ChangeJournal journal, OWLOntology ontology, OWLAxiom axiom) throws IOException {
+		ontology.addAxiom(axiom);
+		journal.appendAxiom(axiom, true);
+	}
+
+	private File[] files() {
+		File[] files = new File(journalDirectory).listFiles();
+		Arrays.sort(files);
+		return files;
+	}
+
+	@Test
+	public void replaysSegmentsAfterACrash() throws Exception {
+		OWLOntology ontology = base();
+		ChangeJournal journal = open();
+		assertEquals(0, journal.recover(manager, ontology));
+		for (int i = 0; i < 50; i++) {
+			add(journal, ontology, subClass(i));
+			add(journal, ontology, label(i));
+		}
+		ontology.removeAxiom(subClass(1000));
+		journal.appendAxiom(subClass(1000), false);
+		journal.appendImport(IRI.create("http://example.org/imported"), true);
+		journal.close();
+
+		OWLOntology recovered = base();
+		ChangeJournal again = open();
+		assertEquals(102, again.recover(manager, recovered));
+		assertEquals(ontology.getAxiomCount(), recovered.getAxiomCount());
+		assertTrue(recovered.containsAxiom(label(49)));
+		assertFalse(recovered.containsAxiom(subClass(1000)));
+		assertEquals(1, recovered.importsDeclarations().count());
+		again.close();
+	}
+
+	@Test
+	public void truncatesATornRecord() throws Exception {
+		OWLOntology ontology = base();
+		ChangeJournal journal = open();
+		journal.recover(manager, ontology);
+		for (int i = 0; i < 10; i++)
+			add(journal, ontology, subClass(i));
+		journal.close();
+		// Half a record, as left by a crash in the middle of a write
+		File segment = files()[0];
+		long length = segment.length();
+		try (FileOutputStream out = new FileOutputStream(segment, true)) {
+			out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 5, 6 });
+		}
+
+		OWLOntology recovered = base();
+		ChangeJournal again = open();
+		assertEquals(10, again.recover(manager, recovered));
+		assertEquals(length, segment.length());
+		// Appending goes on from the end of the last whole record
+		add(again, recovered, subClass(10));
+		again.close();
+
+		OWLOntology third = base();
+		ChangeJournal last = open();
+		assertEquals(11, last.recover(manager, third));
+		assertTrue(third.containsAxiom(subClass(10)));
+		assertEquals(111, third.getAxiomCount());
+		last.close();
+	}
+
+	@Test
+	public void checkpointHoldsOnlyTheChangesOfTheBuild() throws Exception {
+		OWLOntology ontology = base();
+		ChangeJournal journal = open();
+		journal.recover(manager, ontology);
+		for (int i = 0; i < 20; i++)
+			add(journal, ontology, subClass(i));
+		// Removed and added back, so not a change at all
+		ontology.removeAxiom(subClass(1001));
+		journal.appendAxiom(subClass(1001), false);
+		add(journal, ontology, subClass(1001));
+		ontology.removeAxiom(subClass(1002));
+		journal.appendAxiom(subClass(1002), false);
+		journal.checkpoint().get();
+		// The checkpoint replaced the segment it covers
+		assertEquals(Arrays.asList("checkpoint.bin", "journal-24.log"), Arrays.stream(files()).map(File::getName).collect(Collectors.toList()));
+		for (int i = 20; i < 25; i++)
+			add(journal, ontology, subClass(i));
+		journal.close();
+
+		OWLOntology recovered = base();
+		ChangeJournal again = open();
+		assertEquals(28, again.recover(manager, recovered));
+		// Applied on top of the base: the base axioms are still there, except the one removed by the build
+		assertEquals(ontology.axioms().collect(Collectors.toSet()), recovered.axioms().collect(Collectors.toSet()));
+		assertFalse(recovered.containsAxiom(subClass(1002)));
+		assertTrue(recovered.containsAxiom(subClass(1001)));
+
+		// A second checkpoint keeps the changes of the first one
+		again.checkpoint().get();
+		again.close();
+		OWLOntology third = base();
+		ChangeJournal last = open();
+		assertEquals(28, last.recover(manager, third));
+		assertEquals(ontology.getAxiomCount(), third.getAxiomCount());
+		last.close();
+	}
+
+	@Test
+	public void retiredJournalIsNotRecovered() throws Exception {
+		OWLOntology ontology = base();
+		ChangeJournal journal = open();
+		journal.recover(manager, ontology);
+		add(journal, ontology, subClass(0));
+		journal.checkpoint().get();
+		add(journal, ontology, subClass(1));
+		journal.close();
+		// A crash after the marker was written, before the files were deleted
+		assertTrue(new File(journalDirectory, "retired").createNewFile());
+
+		OWLOntology recovered = base();
+		ChangeJournal again = open();
+		assertEquals(0, again.recover(manager, recovered));
+		assertEquals(100, recovered.getAxiomCount());
+		add(again, recovered, subClass(2));
+		again.retire();
+		assertEquals(0, files().length);
+	}
+}
\ No newline at end of file
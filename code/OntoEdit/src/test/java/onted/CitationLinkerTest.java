@@ -0,0 +1,87 @@
+/* Tests of the Aho-Corasick matching of CitationLinker: normalization, word boundaries, overlapping and nested labels, shared labels.
+ */
+
+package onted;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class CitationLinkerTest {
+
+	private static CitationLinker linker(String... entityLabels) {
+		// Pairs of entity and label
+		Map<String, List<String>> labels = new LinkedHashMap<String, List<String>>();
+		for (int i = 0; i < entityLabels.length; i += 2)
+			labels.computeIfAbsent(entityLabels[i], key -> new ArrayList<String>()).add(entityLabels[i + 1]);
+		return CitationLinker.compile(labels);
+	}
+
+	private static Set<String> set(String... entities) {
+		return new LinkedHashSet<String>(Arrays.asList(entities));
+	}
+
+	@Test
+	public void normalizesCaseAndPunctuation() {
+		assertEquals("code of criminal procedure 1973", CitationLinker.normalize("  Code of Criminal Procedure , 1973.\n"));
+		CitationLinker linker = linker("crpc", "Code of Criminal Procedure , 1973");
+		assertEquals(set("crpc"), linker.link("under the CODE OF CRIMINAL\r\nPROCEDURE, 1973 the court"));
+	}
+
+	@Test
+	public void matchesOnlyWholeWords() {
+		CitationLinker linker = linker("act", "Evidence Act", "ni", "Negotiable Instruments");
+		assertEquals(Collections.emptySet(), linker.link("the Evidence Actor and nonNegotiable Instruments"));
+		assertEquals(set("act"), linker.link("Evidence Act"));
+	}
+
+	@Test
+	public void dropsMatchesWithinLongerOnes() {
+		CitationLinker linker = linker("iea", "Indian Evidence Act, 1872", "ea", "Evidence Act", "bbea", "Bankers' Books Evidence Act, 1891");
+		assertEquals(set("iea"), linker.link("Section 65B of the Indian Evidence Act, 1872 applies"));
+		assertEquals(set("bbea", "ea"), linker.link("the Bankers' Books Evidence Act, 1891 and the Evidence Act"));
+	}
+
+	@Test
+	public void reportsOverlappingMatchesInOrder() {
+		// Neither label lies within the other, so both are cited, in the order in which they start
+		CitationLinker linker = linker("first", "rule of presumption", "second", "presumption of innocence");
+		assertEquals(Arrays.asList("first", "second"), new ArrayList<String>(linker.link("a rule of presumption of innocence")));
+	}
+
+	@Test
+	public void failureLinksFindSuffixLabels() {
+		// "ab ab c" has to fall back from the longer partial match to find "ab c"
+		CitationLinker linker = linker("long", "ab ab ab d", "short", "ab c");
+		assertEquals(set("short"), linker.link("ab ab ab c"));
+	}
+
+	@Test
+	public void sharedLabelsLinkEveryEntityAndShortLabelsAreSkipped() {
+		CitationLinker linker = linker("first", "Magistrate", "second", "magistrate", "tiny", "NI");
+		assertEquals(1, linker.size());
+		assertEquals(set("first", "second"), linker.link("before the Magistrate, NI"));
+	}
+
+	@Test
+	public void linkAllKeepsDocumentOrder() {
+		CitationLinker linker = linker("nia", "Negotiable Instruments Act");
+		Map<String, String> documents = new LinkedHashMap<String, String>();
+		for (int i = 0; i < 200; i++)
+			documents.put("judgment" + i, i % 2 == 0 ? "under the Negotiable Instruments Act" : "no citation");
+		Map<String, Set<String>> linked = linker.linkAll(documents);
+		assertEquals(new ArrayList<String>(documents.keySet()), new ArrayList<String>(linked.keySet()));
+		for (int i = 0; i < 200; i++)
+			assertTrue(linked.get("judgment" + i).isEmpty() == (i % 2 == 1));
+	}
+}
\ No newline at end of file
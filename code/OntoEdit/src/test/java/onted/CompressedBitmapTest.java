@@ -0,0 +1,96 @@
+/* Tests of CompressedBitmap against a TreeSet, across chunk boundaries and the switch between sparse and dense chunks.
+ */
+
+package onted;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+public class CompressedBitmapTest {
+
+	private static int[] toArray(TreeSet<Integer> set) {
+		return set.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static CompressedBitmap randomBitmap(Random random, TreeSet<Integer> expected, int count, int bound) {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		for (int i = 0; i < count; i++) {
+			int value = random.nextInt(bound);
+			assertEquals(expected.add(value), bitmap.add(value));
+		}
+		return bitmap;
+	}
+
+	@Test
+	public void addContainsAndRemoveAcrossChunks() {
+		CompressedBitmap bitmap = CompressedBitmap.of(0, 65535, 65536, 1 << 20, Integer.MAX_VALUE);
+		assertEquals(5, bitmap.cardinality());
+		assertTrue(bitmap.contains(65535));
+		assertTrue(bitmap.contains(65536));
+		assertFalse(bitmap.contains(65537));
+		assertFalse(bitmap.add(65536));
+		assertTrue(bitmap.remove(65536));
+		assertFalse(bitmap.remove(65536));
+		assertArrayEquals(new int[] { 0, 65535, 1 << 20, Integer.MAX_VALUE }, bitmap.toArray());
+	}
+
+	@Test
+	public void denseChunkTurnsSparseAgain() {
+		// More than 4096 values of one chunk make it dense, removing them brings it back under the threshold
+		CompressedBitmap bitmap = new CompressedBitmap();
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for (int value = 0; value < 10000; value += 2) {
+			bitmap.add(value);
+			expected.add(value);
+		}
+		assertEquals(5000, bitmap.cardinality());
+		for (int value = 0; value < 10000; value += 4) {
+			assertTrue(bitmap.remove(value));
+			expected.remove(value);
+		}
+		assertEquals(expected.size(), bitmap.cardinality());
+		assertArrayEquals(toArray(expected), bitmap.toArray());
+		for (int value = 0; value < 12; value++)
+			assertEquals(expected.contains(value), bitmap.contains(value));
+	}
+
+	@Test
+	public void andOrMatchSetOperations() {
+		Random random = new Random(42);
+		for (int[] shape : new int[][] { { 300, 1 << 18 }, { 20000, 1 << 16 }, { 30000, 3 << 16 } }) {
+			TreeSet<Integer> first = new TreeSet<Integer>();
+			TreeSet<Integer> second = new TreeSet<Integer>();
+			CompressedBitmap firstBitmap = randomBitmap(random, first, shape[0], shape[1]);
+			CompressedBitmap secondBitmap = randomBitmap(random, second, shape[0] / 2, shape[1]);
+
+			TreeSet<Integer> intersection = new TreeSet<Integer>(first);
+			intersection.retainAll(second);
+			TreeSet<Integer> union = new TreeSet<Integer>(first);
+			union.addAll(second);
+			assertArrayEquals(toArray(intersection), firstBitmap.and(secondBitmap).toArray());
+			assertEquals(intersection.size(), firstBitmap.andCardinality(secondBitmap));
+			assertArrayEquals(toArray(union), firstBitmap.or(secondBitmap).toArray());
+			assertEquals(union.size(), secondBitmap.or(firstBitmap).cardinality());
+			// The operands are left alone
+			assertArrayEquals(toArray(first), firstBitmap.toArray());
+			assertArrayEquals(toArray(second), secondBitmap.toArray());
+		}
+	}
+
+	@Test
+	public void forEachVisitsInOrder() {
+		CompressedBitmap bitmap = CompressedBitmap.of(70000, 3, 65536, 1);
+		StringBuilder visited = new StringBuilder();
+		bitmap.forEach(value -> visited.append(value).append(' '));
+		assertEquals("1 3 65536 70000 ", visited.toString());
+		assertTrue(new CompressedBitmap().isEmpty());
+		assertTrue(bitmap.and(CompressedBitmap.of(2, 4)).isEmpty());
+	}
+}
\ No newline at end of file
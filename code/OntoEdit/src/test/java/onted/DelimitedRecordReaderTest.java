@@ -0,0 +1,106 @@
+/* Tests of DelimitedRecordReader: quoted fields with delimiters, doubled quotes and line breaks, line numbers, column checks and split limits.
+ */
+
+package onted;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DelimitedRecordReaderTest {
+	@TempDir
+	Path directory;
+
+	private String write(String name, String content) throws IOException {
+		File file = directory.resolve(name).toFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file.getPath();
+	}
+
+	@Test
+	public void readsQuotedFields() throws IOException {
+		String file = write("quoted.csv", "\uFEFFlabel,definition,altLabels\r\n"
+				+ "Plain ,  trimmed value ,a|b\r\n"
+				+ "\"Comma, inside\", \"He said \"\"no\"\"\" ,\"\"\r\n"
+				+ "\"Two\nlines\",x,y\n");
+		try (DelimitedRecordReader reader = DelimitedRecordReader.forFile(file)) {
+			assertEquals(Arrays.asList("label", "definition", "altLabels"), reader.getHeader());
+			DelimitedRecordReader.Record record = reader.next();
+			assertEquals("Plain", record.get("label"));
+			assertEquals("trimmed value", record.get("definition"));
+			assertEquals(Arrays.asList("a", "b"), record.getList("altLabels", '|'));
+			assertEquals(2, record.getLineNumber());
+			record = reader.next();
+			assertEquals("Comma, inside", record.get("label"));
+			assertEquals("He said \"no\"", record.get("definition"));
+			assertEquals("", record.get("altLabels"));
+			assertTrue(!record.has("altLabels"));
+			record = reader.next();
+			assertEquals("Two\nlines", record.get(0));
+			assertEquals(4, record.getLineNumber());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void skipsBlankLinesAndKeepsLineNumbers() throws IOException {
+		String file = write("blank.tsv", "name\tcount\n\n\t\nfirst\t1\n\n\nsecond\t2");
+		List<Integer> lines = new ArrayList<Integer>();
+		List<String> names = new ArrayList<String>();
+		try (DelimitedRecordReader reader = DelimitedRecordReader.forFile(file)) {
+			for (DelimitedRecordReader.Record record : reader) {
+				lines.add(record.getLineNumber());
+				names.add(record.get("name"));
+			}
+		}
+		// The line holding only a tab is a record of two empty columns, not a blank line
+		assertEquals(Arrays.asList(3, 4, 7), lines);
+		assertEquals(Arrays.asList("", "first", "second"), names);
+	}
+
+	@Test
+	public void reportsMisalignedLines() throws IOException {
+		String file = write("short.tsv", "label\tdefinition\nfirst\tdone\nsecond\n");
+		try (DelimitedRecordReader reader = DelimitedRecordReader.forFile(file)) {
+			reader.next();
+			RuntimeException error = assertThrows(RuntimeException.class, reader::next);
+			assertTrue(error.getMessage().contains("line 3 has 1 columns, expected 2"), error.getMessage());
+		}
+	}
+
+	@Test
+	public void reportsMalformedQuotes() throws IOException {
+		String unterminated = write("unterminated.csv", "a,b\n\"open,x\n");
+		try (DelimitedRecordReader reader = DelimitedRecordReader.forFile(unterminated)) {
+			assertThrows(RuntimeException.class, reader::next);
+		}
+		String trailing = write("trailing.csv", "a,b\n\"closed\" text,x\n");
+		try (DelimitedRecordReader reader = DelimitedRecordReader.forFile(trailing)) {
+			RuntimeException error = assertThrows(RuntimeException.class, reader::next);
+			assertTrue(error.getMessage().contains("text after the closing quote"), error.getMessage());
+		}
+	}
+
+	@Test
+	public void splitLimitKeepsTheRestOfTheLine() throws IOException {
+		String file = write("pairs.txt", "Prayagraj:Uttar Pradesh:extra\n");
+		try (DelimitedRecordReader reader = new DelimitedRecordReader(file, ':', false).splitLimit(2)) {
+			DelimitedRecordReader.Record record = reader.next();
+			assertEquals(2, record.size());
+			assertEquals("Uttar Pradesh:extra", record.get(1));
+		}
+	}
+}
\ No newline at end of file
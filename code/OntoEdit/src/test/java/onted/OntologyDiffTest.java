@@ -0,0 +1,144 @@
+/* Tests of OntologyDiff: blank nodes fingerprinted by content, added and removed axioms, the changes turning the old build into the new one, and
+ * the matching of minted IRIs by label.
+ */
+
+package onted;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+
+public class OntologyDiffTest {
+	private static final String NS = "http://example.org/test#";
+
+	@TempDir
+	Path directory;
+
+	private OWLDataFactory factory;
+
+	@BeforeEach
+	public void createFactory() {
+		factory = OWLManager.getOWLDataFactory();
+	}
+
+	private OWLClass owlClass(String name) {
+		return factory.getOWLClass(IRI.create(NS + name));
+	}
+
+	private List<OWLAxiom> common() {
+		// Includes a restriction and a list, both written with blank nodes
+		OWLObjectProperty locatedIn = factory.getOWLObjectProperty(IRI.create(NS + "locatedIn"));
+		return Arrays.asList(
+				factory.getOWLSubClassOfAxiom(owlClass("DistrictCourt"), owlClass("Court")),
+				factory.getOWLSubClassOfAxiom(owlClass("DistrictCourt"), factory.getOWLObjectSomeValuesFrom(locatedIn, owlClass("District"))),
+				factory.getOWLEquivalentClassesAxiom(owlClass("Place"), factory.getOWLObjectUnionOf(owlClass("District"), owlClass("State"))),
+				factory.getOWLAnnotationAssertionAxiom(owlClass("Court").getIRI(), factory.getRDFSLabel(factory.getOWLLiteral("Court", "en"))));
+	}
+
+	private String save(String name, List<OWLAxiom> axioms) throws OWLOntologyCreationException, OWLOntologyStorageException, IOException {
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLOntology ontology = manager.createOntology(IRI.create("http://example.org/test"));
+		for (OWLAxiom axiom : axioms) {
+			ontology.addAxiom(axiom);
+			axiom.signature().forEach(entity -> ontology.addAxiom(factory.getOWLDeclarationAxiom(entity)));
+		}
+		File file = directory.resolve(name).toFile();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			manager.saveOntology(ontology, new RDFXMLDocumentFormat(), out);
+		}
+		return file.getPath();
+	}
+
+	private static <T> List<T> concat(List<T> first, List<T> second) {
+		List<T> all = new ArrayList<T>(first);
+		all.addAll(second);
+		return all;
+	}
+
+	@Test
+	public void sameAxiomsGiveNoChanges() throws Exception {
+		// Saved in another order, so the blank nodes get other ids
+		List<OWLAxiom> reversed = new ArrayList<OWLAxiom>(common());
+		Collections.reverse(reversed);
+		OntologyDiff diff = new OntologyDiff(false);
+		diff.compare(save("old.owl", common()), save("new.owl", reversed));
+		assertTrue(diff.getAddedAxioms().isEmpty(), diff.getAddedAxioms().toString());
+		assertTrue(diff.getRemovedAxioms().isEmpty(), diff.getRemovedAxioms().toString());
+	}
+
+	@Test
+	public void findsAddedAndRemovedAxioms() throws Exception {
+		OWLObjectProperty locatedIn = factory.getOWLObjectProperty(IRI.create(NS + "locatedIn"));
+		OWLAxiom removed = factory.getOWLSubClassOfAxiom(owlClass("HighCourt"), owlClass("Court"));
+		// Differs from a common axiom only inside its blank node
+		OWLAxiom added = factory.getOWLSubClassOfAxiom(owlClass("DistrictCourt"), factory.getOWLObjectSomeValuesFrom(locatedIn, owlClass("State")));
+		String oldFile = save("old.owl", concat(common(), Collections.singletonList(removed)));
+		String newFile = save("new.owl", concat(common(), Collections.singletonList(added)));
+		OntologyDiff diff = new OntologyDiff(false);
+		diff.compare(oldFile, newFile);
+		assertEquals(Collections.singletonList(added), diff.getAddedAxioms());
+		// The declaration of HighCourt went with its only axiom
+		assertEquals(new HashSet<OWLAxiom>(Arrays.asList(removed, factory.getOWLDeclarationAxiom(owlClass("HighCourt")))),
+				new HashSet<OWLAxiom>(diff.getRemovedAxioms()));
+
+		// Applied to the old build, the changes give the new one
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLOntology oldOntology = manager.loadOntologyFromOntologyDocument(new File(oldFile));
+		manager.applyChanges(diff.getChanges(oldOntology));
+		OWLOntology newOntology = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(new File(newFile));
+		assertEquals(newOntology.axioms().collect(Collectors.toSet()), oldOntology.axioms().collect(Collectors.toSet()));
+	}
+
+	@Test
+	public void matchesMintedIRIsByLabel() throws Exception {
+		// Two runs of the builder mint other IRIs for the same court
+		String oldFile = save("old.owl", concat(common(), court(UUID.randomUUID(), "Gurugram District Court")));
+		String newFile = save("new.owl", concat(common(), court(UUID.randomUUID(), "Gurugram District Court")));
+		OntologyDiff byIRI = new OntologyDiff(false);
+		byIRI.compare(oldFile, newFile);
+		assertEquals(3, byIRI.getAddedAxioms().size());
+		assertEquals(3, byIRI.getRemovedAxioms().size());
+		OntologyDiff byLabel = new OntologyDiff(true);
+		byLabel.compare(oldFile, newFile);
+		assertTrue(byLabel.getAddedAxioms().isEmpty(), byLabel.getAddedAxioms().toString());
+		assertTrue(byLabel.getRemovedAxioms().isEmpty(), byLabel.getRemovedAxioms().toString());
+
+		// A court added under a new label is still reported, named by its IRI in the new build
+		String thirdFile = save("third.owl", concat(concat(common(), court(UUID.randomUUID(), "Gurugram District Court")),
+				court(UUID.fromString("00000000-0000-0000-0000-000000000001"), "Faridabad District Court")));
+		byLabel.compare(oldFile, thirdFile);
+		assertEquals(3, byLabel.getAddedAxioms().size());
+		assertTrue(byLabel.getRemovedAxioms().isEmpty());
+		IRI faridabad = IRI.create(NS + "00000000-0000-0000-0000-000000000001");
+		for (OWLAxiom axiom : byLabel.getAddedAxioms()) {
+			if (axiom instanceof OWLAnnotationAssertionAxiom)
+				assertEquals(faridabad, ((OWLAnnotationAssertionAxiom) axiom).getSubject());
+			else
+				assertTrue(axiom.signature().anyMatch(entity -> entity.getIRI().equals(faridabad)), axiom.toString());
+		}
+	}
+
+	private List<OWLAxiom> court(UUID id, String label) {
+		OWLNamedIndividual court = factory.getOWLNamedIndividual(IRI.create(NS + id));
+		return Arrays.asList(factory.getOWLClassAssertionAxiom(owlClass("DistrictCourt"), court),
+				factory.getOWLAnnotationAssertionAxiom(court.getIRI(), factory.getRDFSLabel(factory.getOWLLiteral(label, "en"))));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+/* Tests of SubsumptionIndex on a small class DAG: the interval test on the spanning tree, the ancestor arrays of classes with several parents,
+ * depths, lowest common ancestors, equivalent classes, and the rebuild after changes.
+ */
+
+package onted;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+public class SubsumptionIndexTest {
+	private static final String NS = "http://example.org/test#";
+	private static final String THING = "http://www.w3.org/2002/07/owl#Thing";
+
+	private OWLDataFactory factory;
+	private OWLOntology ontology;
+
+	private OWLClass owlClass(String name) {
+		return factory.getOWLClass(IRI.create(NS + name));
+	}
+
+	private OWLAxiom subClassOf(String subClass, String superClass) {
+		return factory.getOWLSubClassOfAxiom(owlClass(subClass), owlClass(superClass));
+	}
+
+	@BeforeEach
+	public void createOntology() throws OWLOntologyCreationException {
+		// A under owl:Thing; B and C under A; D under both B and C; E under C; F equivalent to E; G declared only
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		factory = manager.getOWLDataFactory();
+		ontology = manager.createOntology(IRI.create("http://example.org/test"));
+		ontology.addAxiom(factory.getOWLSubClassOfAxiom(owlClass("A"), factory.getOWLThing()));
+		ontology.addAxiom(subClassOf("B", "A"));
+		ontology.addAxiom(subClassOf("C", "A"));
+		ontology.addAxiom(subClassOf("D", "B"));
+		ontology.addAxiom(subClassOf("D", "C"));
+		ontology.addAxiom(subClassOf("E", "C"));
+		ontology.addAxiom(factory.getOWLEquivalentClassesAxiom(owlClass("E"), owlClass("F")));
+		ontology.addAxiom(factory.getOWLDeclarationAxiom(owlClass("G")));
+		// Anonymous superclasses are not part of the named hierarchy
+		ontology.addAxiom(factory.getOWLSubClassOfAxiom(owlClass("B"),
+				factory.getOWLObjectSomeValuesFrom(factory.getOWLObjectProperty(IRI.create(NS + "p")), owlClass("E"))));
+	}
+
+	@Test
+	public void answersSubsumptionOnTheWholeDag() {
+		SubsumptionIndex index = new SubsumptionIndex(ontology);
+		// Only one of the two parents of D can be on its tree path, the other is found through its ancestor array
+		assertTrue(index.isSubClassOf(NS + "D", NS + "B"));
+		assertTrue(index.isSubClassOf(NS + "D", NS + "C"));
+		assertTrue(index.isSubClassOf(NS + "D", NS + "A"));
+		assertTrue(index.isSubClassOf(NS + "D", THING));
+		assertTrue(index.isSubClassOf(NS + "D", NS + "D"));
+		assertFalse(index.isSubClassOf(NS + "B", NS + "C"));
+		assertFalse(index.isSubClassOf(NS + "A", NS + "D"));
+		assertFalse(index.isSubClassOf(NS + "B", NS + "E"));
+		// Equivalent classes are subclasses of each other
+		assertTrue(index.isSubClassOf(NS + "F", NS + "E"));
+		assertTrue(index.isSubClassOf(NS + "E", NS + "F"));
+		assertTrue(index.isSubClassOf(NS + "F", NS + "C"));
+		assertTrue(index.isSubClassOf(NS + "G", THING));
+		assertFalse(index.isSubClassOf(NS + "G", NS + "A"));
+	}
+
+	@Test
+	public void depthIsTheShortestPath() {
+		SubsumptionIndex index = new SubsumptionIndex(ontology);
+		assertEquals(0, index.depth(THING));
+		assertEquals(1, index.depth(NS + "A"));
+		assertEquals(1, index.depth(NS + "G"));
+		assertEquals(3, index.depth(NS + "D"));
+		ontology.addAxiom(subClassOf("D", "G"));
+		index.axiomAdded(subClassOf("D", "G"));
+		assertEquals(2, index.depth(NS + "D"));
+	}
+
+	@Test
+	public void findsLowestCommonAncestors() {
+		SubsumptionIndex index = new SubsumptionIndex(ontology);
+		assertEquals(Collections.singletonList(NS + "C"), index.lowestCommonAncestors(NS + "D", NS + "E"));
+		assertEquals(Collections.singletonList(NS + "A"), index.lowestCommonAncestors(NS + "B", NS + "E"));
+		assertEquals(Collections.singletonList(NS + "B"), index.lowestCommonAncestors(NS + "D", NS + "B"));
+		assertEquals(Collections.singletonList(THING), index.lowestCommonAncestors(NS + "D", NS + "G"));
+		// Two incomparable common ancestors
+		index.axiomAdded(subClassOf("H", "B"));
+		index.axiomAdded(subClassOf("H", "C"));
+		assertEquals(Arrays.asList(NS + "B", NS + "C"), index.lowestCommonAncestors(NS + "D", NS + "H"));
+	}
+
+	@Test
+	public void rebuildsAfterChanges() {
+		SubsumptionIndex index = new SubsumptionIndex(ontology);
+		assertTrue(index.isSubClassOf(NS + "D", NS + "C"));
+		index.axiomRemoved(subClassOf("D", "C"));
+		assertFalse(index.isSubClassOf(NS + "D", NS + "C"));
+		assertTrue(index.isSubClassOf(NS + "D", NS + "A"));
+		index.axiomAdded(subClassOf("G", "E"));
+		assertTrue(index.isSubClassOf(NS + "G", NS + "A"));
+		assertEquals(4, index.depth(NS + "G"));
+		assertFalse(index.isClass(NS + "Unknown"));
+		assertThrows(RuntimeException.class, () -> index.isSubClassOf(NS + "Unknown", NS + "A"));
+	}
+}
\ No newline at end of file